@@ -0,0 +1,80 @@
+package com.google.alpollo.benchmarks;
+
+import com.google.alpollo.helpers.AnalysisHelper;
+import com.google.alpollo.model.SongEntity;
+import com.google.cloud.language.v1.Entity;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Processing of the Natural Language API results, which runs on every analysis that isn't cached. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalysisHelperBenchmark {
+  private List<Entity> apiEntities;
+
+  @Setup
+  public void setUp() {
+    apiEntities = BenchmarkData.apiEntities();
+  }
+
+  /** getFilteredTopEntities merges duplicates into its input, so every call gets a new list. */
+  @State(Scope.Thread)
+  public static class SimplifiedEntities {
+    List<SongEntity> entities;
+
+    @Setup(Level.Invocation)
+    public void setUp(AnalysisHelperBenchmark benchmark) {
+      entities = AnalysisHelper.getSimplifiedEntityList(benchmark.apiEntities);
+    }
+  }
+
+  @Benchmark
+  public List<SongEntity> getSimplifiedEntityList() {
+    return AnalysisHelper.getSimplifiedEntityList(apiEntities);
+  }
+
+  @Benchmark
+  public List<SongEntity> getFilteredTopEntities(SimplifiedEntities simplifiedEntities) {
+    return AnalysisHelper.getFilteredTopEntities(simplifiedEntities.entities);
+  }
+
+  /** Both steps, the way the servlets call them. */
+  @Benchmark
+  public List<SongEntity> simplifyAndFilter() {
+    return AnalysisHelper.getFilteredTopEntities(AnalysisHelper.getSimplifiedEntityList(apiEntities));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public String getInterpretation(Sentiments sentiments) {
+    return AnalysisHelper.getInterpretation(sentiments.next(), sentiments.next());
+  }
+
+  /** Scores and magnitudes from every branch of the interpretation. */
+  @State(Scope.Thread)
+  public static class Sentiments {
+    private static final double[] VALUES = {-0.8, 0.1, 0.0, 4.2, 0.6, 2.5, 0.3, 0.9};
+    private int index;
+
+    double next() {
+      index = (index + 1) % VALUES.length;
+      return VALUES[index];
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.google.alpollo.benchmarks;
+
+import com.google.alpollo.model.AnalysisInfo;
+import com.google.alpollo.model.Song;
+import com.google.alpollo.model.SongEntity;
+import com.google.alpollo.model.SongSentiment;
+import com.google.cloud.language.v1.Entity;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Data of the size the application sees: about 2 KB of lyrics, about 100 entities from the API
+ * (many of them repeated, like words in a chorus), 10 top entities and 5 videos.
+ */
+final class BenchmarkData {
+  private static final String VERSE = "Is this the real life? Is this just fantasy?\n"
+      + "Caught in a landslide, no escape from reality\n"
+      + "Open your eyes, look up to the skies and see\n\n";
+
+  private BenchmarkData() {}
+
+  static String lyrics() {
+    return Strings.repeat(VERSE, 15);
+  }
+
+  /** Entities as the Natural Language API returns them for the lyrics. */
+  static List<Entity> apiEntities() {
+    String[] names = {"life", "fantasy", "landslide", "reality", "eyes", "skies", "boy", "sympathy",
+        "Mama", "man", "gun", "head", "trigger", "Galileo", "Scaramouche", "fandango", "Beelzebub", "devil"};
+    Entity.Type[] types = {Entity.Type.OTHER, Entity.Type.PERSON, Entity.Type.LOCATION, Entity.Type.CONSUMER_GOOD};
+    List<Entity> entities = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Entity.Builder entity = Entity.newBuilder()
+          .setName(names[i % names.length])
+          .setSalience(0.2f / (i + 1))
+          .setType(types[i % types.length]);
+      if (i % 5 == 0) {
+        entity.putMetadata("wikipedia_url", "https://en.wikipedia.org/wiki/" + names[i % names.length]);
+      }
+      entities.add(entity.build());
+    }
+    return entities;
+  }
+
+  /** Different songs, as a user would search them. */
+  static Song[] songs(int count) {
+    Song[] songs = new Song[count];
+    for (int i = 0; i < count; i++) {
+      songs[i] = new Song("Artist " + (i % 37), "Song number " + i);
+    }
+    return songs;
+  }
+
+  static List<SongEntity> entities() {
+    List<SongEntity> entities = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      entities.add(new SongEntity("entity " + i, 0.5 / (i + 1), ImmutableSet.of("PERSON", "OTHER"),
+          i % 2 == 0 ? "https://en.wikipedia.org/wiki/Entity_" + i : null));
+    }
+    return entities;
+  }
+
+  static AnalysisInfo analysisInfo() {
+    return new AnalysisInfo(new Song("Queen", "Bohemian Rhapsody"), new SongSentiment(-0.1f, 3.4f), entities(),
+        lyrics(), Arrays.asList("fJ9rUzIMcZQ", "irp8CNj9qBI", "bSnlKl_PoQU", "t99KH0TR-J4", "ubTJI_UphPk"));
+  }
+}
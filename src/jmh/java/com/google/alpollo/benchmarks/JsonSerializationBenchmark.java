@@ -0,0 +1,88 @@
+package com.google.alpollo.benchmarks;
+
+import com.google.alpollo.helpers.JsonHelper;
+import com.google.alpollo.model.AnalysisInfo;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares how the servlets wrote an {@link AnalysisInfo} before (reflection, whole response
+ * built as a String, then printed) with the shared adapters writing to the response writer.
+ * Run with the GC profiler to see the allocation per operation, see the benchmarks profile in pom.xml.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+  private final Gson reflectionGson = new Gson();
+  private AnalysisInfo info;
+  private String infoJson;
+  private PrintWriter responseWriter;
+
+  @Setup
+  public void setUp(Blackhole blackhole) {
+    info = BenchmarkData.analysisInfo();
+    infoJson = JsonHelper.getGson().toJson(info);
+    responseWriter = new PrintWriter(new BlackholeWriter(blackhole));
+  }
+
+  @Benchmark
+  public void reflectionToString() {
+    responseWriter.println(reflectionGson.toJson(info));
+  }
+
+  @Benchmark
+  public void adaptersToWriter() throws IOException {
+    JsonHelper.writeJson(responseWriter, info);
+  }
+
+  /** Reading the analysis the client posts to /analysis-info. */
+  @Benchmark
+  public AnalysisInfo adaptersFromJson() {
+    return JsonHelper.getGson().fromJson(infoJson, AnalysisInfo.class);
+  }
+
+  /** Stands in for the response writer, the characters are only consumed. */
+  private static final class BlackholeWriter extends Writer {
+    private final Blackhole blackhole;
+
+    private BlackholeWriter(Blackhole blackhole) {
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+      blackhole.consume(chars);
+      blackhole.consume(length);
+    }
+
+    @Override
+    public void write(String string, int offset, int length) {
+      blackhole.consume(string);
+      blackhole.consume(length);
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,74 @@
+package com.google.alpollo.benchmarks;
+
+import com.google.alpollo.database.SongStringifier;
+import com.google.alpollo.model.SearchHistory;
+import com.google.alpollo.model.Song;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Model code that runs on every search: song ids, the user history and its database form. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModelBenchmark {
+  /** Number of different songs in the history of the user. */
+  @Param({"10", "100", "1000"})
+  public int historySize;
+
+  private final SongStringifier stringifier = new SongStringifier();
+  private Song[] songs;
+  private SearchHistory history;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    songs = BenchmarkData.songs(historySize);
+    history = new SearchHistory("user");
+    for (int i = 0; i < songs.length; i++) {
+      // Earlier songs are searched more often, like in a real history.
+      for (int searches = 0; searches <= songs.length / (i + 1); searches++) {
+        history.addSearchRequest(songs[i]);
+      }
+    }
+  }
+
+  private Song nextSong() {
+    index = (index + 1) % songs.length;
+    return songs[index];
+  }
+
+  @Benchmark
+  public Long songId() {
+    return nextSong().id();
+  }
+
+  @Benchmark
+  public Song stringifierRoundTrip() {
+    return stringifier.fromString(stringifier.toString(nextSong()));
+  }
+
+  @Benchmark
+  public SearchHistory addSearchRequest() {
+    history.addSearchRequest(nextSong());
+    return history;
+  }
+
+  @Benchmark
+  public List<Song> getHistory() {
+    return history.getHistory();
+  }
+}
@@ -0,0 +1,182 @@
+package com.google.alpollo.database;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.google.alpollo.helpers.AppMetrics;
+import com.google.alpollo.helpers.JsonHelper;
+import com.google.alpollo.model.AnalysisInfo;
+import com.google.alpollo.model.SongCounter;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.reflect.TypeToken;
+import com.googlecode.objectify.Key;
+
+/**
+ * Keeps a bounded number of AnalysisInfo entities in the database.
+ *
+ * Analyses are saved without looking at the other ones. Reads are recorded in memory, and the first
+ * read after the access flush interval passed moves them to a task of {@link #ACCESSES_TASK_URL}.
+ * Cron calls {@link #EVICTION_TASK_URL}, which deletes the least useful analyses according to
+ * the {@link EvictionPolicy} if there are more than the capacity.
+ */
+public final class AnalysisInfoStore {
+  /** How many analyses are kept by default. */
+  public static final int DEFAULT_CAPACITY = 1000;
+  /** How often the recorded reads are written by default. */
+  public static final int DEFAULT_ACCESS_FLUSH_INTERVAL_SECONDS = 60;
+  /** Path of the servlet that saves the reads of a task. */
+  public static final String ACCESSES_TASK_URL = "/tasks/analysis-accesses";
+  /** Path of the servlet that cron calls to trim the store, see cron.xml. */
+  public static final String EVICTION_TASK_URL = "/tasks/evict-analyses";
+  /** Datastore accepts at most 500 entities in one batch. */
+  private static final int MAX_BATCH_SIZE = 500;
+  private static final Type ACCESSES_TYPE = new TypeToken<Map<Long, Long>>() {}.getType();
+
+  /** Decides which analyses are deleted first when the store is full. */
+  public enum EvictionPolicy {
+    /** Least frequently used: analyses of the songs with the fewest searches. */
+    LFU("searchCounter"),
+    /** Least recently used: analyses that weren't saved or read for the longest time. */
+    LRU("lastAccessed");
+
+    /** Indexed AnalysisInfo property, the entities with the smallest values are deleted first. */
+    private final String property;
+
+    EvictionPolicy(String property) {
+      this.property = property;
+    }
+  }
+
+  /** Songs whose analyses were read since the last flush, with the time of the read in milliseconds. */
+  private static final Map<Long, Long> pendingAccesses = new ConcurrentHashMap<>();
+  private static volatile int capacity = DEFAULT_CAPACITY;
+  private static volatile EvictionPolicy evictionPolicy = EvictionPolicy.LFU;
+  private static volatile long flushIntervalNanos = TimeUnit.SECONDS.toNanos(DEFAULT_ACCESS_FLUSH_INTERVAL_SECONDS);
+  private static final AtomicLong nextFlushNanos = new AtomicLong(System.nanoTime() + flushIntervalNanos);
+
+  private AnalysisInfoStore() {}
+
+  /** Sets how often the reads are written, how many analyses are kept and which ones are deleted. */
+  public static void configure(int accessFlushIntervalSeconds, int maxAnalyses, EvictionPolicy policy) {
+    capacity = maxAnalyses;
+    evictionPolicy = policy;
+    flushIntervalNanos = TimeUnit.SECONDS.toNanos(accessFlushIntervalSeconds);
+    nextFlushNanos.set(System.nanoTime() + flushIntervalNanos);
+  }
+
+  /**
+   * Enqueues the reads that are still pending. The application is stopping, so it's best effort:
+   * without a request the queue isn't available and the reads are lost.
+   */
+  public static void stop() {
+    flushAccesses(QueueFactory.getDefaultQueue());
+  }
+
+  /** Saves the analysis of a song that was searched the given number of times. */
+  public static void save(AnalysisInfo info, int searchCounter) {
+    info.recordAccess(searchCounter, new Date());
+    AppMetrics.measureDatastore("saveAnalysisInfo", () -> OfyService.ofy().save().entity(info).now());
+  }
+
+  /** Returns the analysis of the song; {@code null} if it isn't saved. */
+  public static AnalysisInfo load(Long songId) {
+    AnalysisInfo info = AppMetrics.measureDatastore("loadAnalysisInfo",
+        () -> OfyService.ofy().load().type(AnalysisInfo.class).id(songId).now());
+    if (info != null) {
+      pendingAccesses.put(songId, System.currentTimeMillis());
+      flushAccessesIfDue();
+    }
+    return info;
+  }
+
+  /** Flushes the reads if the interval passed since the last flush, only on one thread. */
+  private static void flushAccessesIfDue() {
+    long due = nextFlushNanos.get();
+    long now = System.nanoTime();
+    if (now - due >= 0 && nextFlushNanos.compareAndSet(due, now + flushIntervalNanos)) {
+      flushAccesses(QueueFactory.getDefaultQueue());
+    }
+  }
+
+  /**
+   * Moves the recorded reads to tasks of the queue, a task for every batch of songs. A read stays
+   * pending until its task is enqueued, and a newer read of the song meanwhile isn't dropped.
+   */
+  static void flushAccesses(Queue queue) {
+    Map<Long, Long> batch = new HashMap<>();
+    for (Map.Entry<Long, Long> entry : pendingAccesses.entrySet()) {
+      batch.put(entry.getKey(), entry.getValue());
+      if (batch.size() == MAX_BATCH_SIZE) {
+        enqueueAccesses(queue, batch);
+        batch = new HashMap<>();
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      enqueueAccesses(queue, batch);
+    }
+  }
+
+  private static void enqueueAccesses(Queue queue, Map<Long, Long> batch) {
+    try {
+      byte[] payload = JsonHelper.getGson().toJson(batch, ACCESSES_TYPE).getBytes(StandardCharsets.UTF_8);
+      queue.add(TaskOptions.Builder.withUrl(ACCESSES_TASK_URL)
+          .payload(payload, "application/json; charset=UTF-8"));
+    } catch (RuntimeException queueException) {
+      // The reads stay pending, the next flush will try to enqueue them again.
+      return;
+    }
+    for (Map.Entry<Long, Long> entry : batch.entrySet()) {
+      pendingAccesses.remove(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Writes the reads of a task, with the current search counters of the songs. If they can't be
+   * written, the exception fails the task and the queue retries it.
+   */
+  public static void saveAccesses(String payload) {
+    Map<Long, Long> accesses = JsonHelper.getGson().fromJson(payload, ACCESSES_TYPE);
+    List<Long> songIds = new ArrayList<>(accesses.keySet());
+    Map<Long, AnalysisInfo> infos = AppMetrics.measureDatastore("loadAnalysisInfos",
+        () -> OfyService.ofy().load().type(AnalysisInfo.class).ids(songIds));
+    Map<Long, SongCounter> counters = AppMetrics.measureDatastore("loadSongCounters",
+        () -> OfyService.ofy().load().type(SongCounter.class).ids(songIds));
+    List<AnalysisInfo> updatedInfos = new ArrayList<>();
+    for (AnalysisInfo info : infos.values()) {
+      SongCounter counter = counters.get(info.getId());
+      info.recordAccess(counter == null ? 0 : counter.getSearchCounter(), new Date(accesses.get(info.getId())));
+      updatedInfos.add(info);
+    }
+    AppMetrics.measureDatastore("saveAnalysisInfos", () -> OfyService.ofy().save().entities(updatedInfos).now());
+  }
+
+  /**
+   * Deletes up to one batch of the least useful analyses if there are more than the capacity.
+   * Only up to a batch over the capacity is counted, so a run reads a bounded number of keys;
+   * a larger excess is deleted by the next runs.
+   */
+  public static void evict() {
+    int count = AppMetrics.measureDatastore("countAnalysisInfos",
+        () -> OfyService.ofy().load().type(AnalysisInfo.class).limit(capacity + MAX_BATCH_SIZE).count());
+    int excess = count - capacity;
+    if (excess <= 0) {
+      return;
+    }
+
+    // Only the keys are read, the victims are the first entities in the index of the policy.
+    List<Key<AnalysisInfo>> victims = AppMetrics.measureDatastore("queryEvictedAnalyses",
+        () -> OfyService.ofy().load().type(AnalysisInfo.class).order(evictionPolicy.property)
+            .limit(excess).keys().list());
+    AppMetrics.measureDatastore("deleteAnalysisInfos", () -> OfyService.ofy().delete().keys(victims).now());
+  }
+}
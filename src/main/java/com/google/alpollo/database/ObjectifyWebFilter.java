@@ -7,5 +7,5 @@ import com.googlecode.objectify.ObjectifyFilter;
  * Helper class for filtering data in a database. 
  * Requested by Objectify. 
  */
-@WebFilter(urlPatterns = {"/*"})
+@WebFilter(urlPatterns = {"/*"}, asyncSupported = true)
 public class ObjectifyWebFilter extends ObjectifyFilter {}
\ No newline at end of file
@@ -4,16 +4,24 @@ import com.googlecode.objectify.Objectify;
 import com.googlecode.objectify.ObjectifyFactory;
 import com.googlecode.objectify.ObjectifyService;
 import com.google.alpollo.model.AnalysisInfo;
+import com.google.alpollo.model.AppliedSearchBatch;
+import com.google.alpollo.model.CachedAnalysis;
+import com.google.alpollo.model.CachedLyrics;
 import com.google.alpollo.model.SongCounter;
+import com.google.alpollo.model.SongCounterShard;
 import com.google.alpollo.model.SearchHistory;
 
 /** Helper class to start running Objectify. */
 public class OfyService {
-  /** Registers SongCounter, AnalysisInfo and SearchHistory classes in Objectify. */
+  /** Registers the entity classes of the application in Objectify. */
   static {
     ObjectifyService.register(SongCounter.class);
     ObjectifyService.register(AnalysisInfo.class);
     ObjectifyService.register(SearchHistory.class);
+    ObjectifyService.register(CachedAnalysis.class);
+    ObjectifyService.register(SongCounterShard.class);
+    ObjectifyService.register(CachedLyrics.class);
+    ObjectifyService.register(AppliedSearchBatch.class);
   }
 
   /** Overrides the ofy method. */
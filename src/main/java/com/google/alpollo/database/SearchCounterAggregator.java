@@ -0,0 +1,320 @@
+package com.google.alpollo.database;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.google.alpollo.helpers.AppMetrics;
+import com.google.alpollo.helpers.JsonHelper;
+import com.google.alpollo.model.AppliedSearchBatch;
+import com.google.alpollo.model.Song;
+import com.google.alpollo.model.SongCounter;
+import com.google.alpollo.model.SongCounterShard;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.RetryOptions;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.googlecode.objectify.Key;
+
+/**
+ * Counts song searches in memory and writes them to the database in batches, through a task queue.
+ *
+ * The first search after the flush interval passed moves the counted searches to push tasks,
+ * which call {@link #TASK_URL}. The task adds the searches of each song to a random
+ * SongCounterShard, so a popular song is written at most once per flush by every instance,
+ * and instances rarely write the same entity. Then the total of the shards is copied
+ * to the SongCounter, which is used to sort the songs.
+ *
+ * The queue runs a task again when it fails, also after its shards were saved. So every batch
+ * has an id, and the transaction that saves the shards also saves an AppliedSearchBatch with it;
+ * a batch that already has one isn't added again. Cron calls {@link #EXPIRE_BATCHES_TASK_URL}
+ * to delete the markers of batches whose tasks can't run anymore.
+ *
+ * The count of a search is the last total this instance saved or loaded, plus the searches
+ * it didn't flush yet. The total of a song this instance doesn't know is loaded once.
+ */
+public final class SearchCounterAggregator {
+  /** Number of shards a song counter is split into by default. */
+  public static final int DEFAULT_SHARD_COUNT = 10;
+  /** How often counted searches are written to the database by default. */
+  public static final int DEFAULT_FLUSH_INTERVAL_SECONDS = 5;
+  /** Path of the servlet that saves the searches of a task. */
+  public static final String TASK_URL = "/tasks/search-counters";
+  /** Path of the servlet that deletes the markers of old batches. */
+  public static final String EXPIRE_BATCHES_TASK_URL = "/tasks/expire-search-batches";
+  /** Datastore allows at most 25 entity groups in one transaction, one of them is the batch marker. */
+  private static final int MAX_SONGS_PER_TRANSACTION = 24;
+  /** A task isn't retried after this time, so the marker of its batch isn't needed anymore. */
+  private static final long BATCH_AGE_LIMIT_SECONDS = TimeUnit.DAYS.toSeconds(1);
+  /** Datastore accepts at most 500 entities in one batch. */
+  private static final int MAX_DELETE_BATCH_SIZE = 500;
+  /** Number of songs whose saved total is remembered. */
+  private static final int SAVED_COUNTS_SIZE = 10000;
+
+  /** Searches of a song that weren't written to the database yet. */
+  private static final class PendingSearches {
+    private final Song song;
+    private final int count;
+
+    private PendingSearches(Song song, int count) {
+      this.song = song;
+      this.count = count;
+    }
+
+    private PendingSearches add(PendingSearches other) {
+      return new PendingSearches(song, count + other.count);
+    }
+  }
+
+  /** Payload of a task: the searches of some songs and the id that marks them as saved. */
+  private static final class SearchBatch {
+    private final String id;
+    private final List<PendingSearches> searches;
+
+    private SearchBatch(String id, List<PendingSearches> searches) {
+      this.id = id;
+      this.searches = searches;
+    }
+  }
+
+  /** Pending searches by song id. */
+  private static final ConcurrentHashMap<Long, PendingSearches> pendingSearches = new ConcurrentHashMap<>();
+  /** Last total saved or loaded by this instance, by song id. */
+  private static final Cache<Long, Integer> savedCounts =
+      CacheBuilder.newBuilder().maximumSize(SAVED_COUNTS_SIZE).build();
+  private static volatile int shardCount = DEFAULT_SHARD_COUNT;
+  private static volatile long flushIntervalNanos = TimeUnit.SECONDS.toNanos(DEFAULT_FLUSH_INTERVAL_SECONDS);
+  private static final AtomicLong nextFlushNanos = new AtomicLong(System.nanoTime() + flushIntervalNanos);
+
+  private SearchCounterAggregator() {}
+
+  /**
+   * Sets how often the searches are flushed and into how many shards.
+   * The number of shards may only grow, because the total only sums the shards that exist now.
+   */
+  public static void configure(int flushIntervalSeconds, int shards) {
+    shardCount = shards;
+    flushIntervalNanos = TimeUnit.SECONDS.toNanos(flushIntervalSeconds);
+    nextFlushNanos.set(System.nanoTime() + flushIntervalNanos);
+  }
+
+  /** Counts one search of the song and flushes the counted searches if the interval passed. */
+  public static void increment(Song song) {
+    pendingSearches.merge(song.id(), new PendingSearches(song, 1), PendingSearches::add);
+    flushIfDue();
+  }
+
+  /** Returns the number of searches of the song that this instance didn't write yet. */
+  public static int getPendingCount(Long songId) {
+    PendingSearches pending = pendingSearches.get(songId);
+    return pending == null ? 0 : pending.count;
+  }
+
+  /**
+   * Returns the last total of the song that this instance saved or loaded. A total it doesn't know
+   * is loaded from the SongCounter and remembered; 0 if the song has no counter or it can't be loaded.
+   */
+  public static int getSavedCount(Long songId) {
+    Integer savedCount = savedCounts.getIfPresent(songId);
+    if (savedCount != null) {
+      return savedCount;
+    }
+
+    SongCounter counter;
+    try {
+      counter = AppMetrics.measureDatastore("loadSongCounter",
+          () -> OfyService.ofy().load().type(SongCounter.class).id(songId).now());
+    } catch (RuntimeException databaseException) {
+      // Don't remember the missing total, the next search of the song loads it again.
+      return 0;
+    }
+    int loadedCount = counter == null ? 0 : counter.getSearchCounter();
+    // A concurrent task may have saved a larger total meanwhile.
+    return savedCounts.asMap().merge(songId, loadedCount, Math::max);
+  }
+
+  /** Remembers the totals of the loaded counters. */
+  static void recordSavedCounts(List<SongCounter> songCounters) {
+    for (SongCounter songCounter : songCounters) {
+      savedCounts.asMap().merge(songCounter.getId(), songCounter.getSearchCounter(), Math::max);
+    }
+  }
+
+  /** Flushes the searches if the interval passed since the last flush, only on one thread. */
+  private static void flushIfDue() {
+    long due = nextFlushNanos.get();
+    long now = System.nanoTime();
+    if (now - due >= 0 && nextFlushNanos.compareAndSet(due, now + flushIntervalNanos)) {
+      flush();
+    }
+  }
+
+  /**
+   * Enqueues the searches that are still pending. The application is stopping, so it's best effort:
+   * without a request the queue isn't available and the searches are lost.
+   */
+  public static void stop() {
+    flush();
+  }
+
+  /** Moves all pending searches to tasks of the default queue. */
+  public static void flush() {
+    flush(QueueFactory.getDefaultQueue());
+  }
+
+  /** Moves all pending searches to tasks of the queue, a task for every batch of songs. */
+  static void flush(Queue queue) {
+    List<PendingSearches> batch = new ArrayList<>();
+    for (Long songId : pendingSearches.keySet()) {
+      // Searches counted after the removal start a new entry and wait for the next flush.
+      PendingSearches pending = pendingSearches.remove(songId);
+      if (pending == null) {
+        continue;
+      }
+      batch.add(pending);
+      if (batch.size() == MAX_SONGS_PER_TRANSACTION) {
+        enqueue(queue, batch);
+        batch = new ArrayList<>();
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      enqueue(queue, batch);
+    }
+  }
+
+  private static void enqueue(Queue queue, List<PendingSearches> batch) {
+    try {
+      SearchBatch searchBatch = new SearchBatch(UUID.randomUUID().toString(), batch);
+      byte[] payload = JsonHelper.getGson().toJson(searchBatch).getBytes(StandardCharsets.UTF_8);
+      queue.add(TaskOptions.Builder.withUrl(TASK_URL).payload(payload, "application/json; charset=UTF-8")
+          .retryOptions(RetryOptions.Builder.withTaskAgeLimitSeconds(BATCH_AGE_LIMIT_SECONDS)));
+    } catch (RuntimeException queueException) {
+      // Keep the searches, the next flush will try to enqueue them again.
+      for (PendingSearches pending : batch) {
+        pendingSearches.merge(pending.song.id(), pending, PendingSearches::add);
+      }
+    }
+  }
+
+  /**
+   * Saves the searches of a task. If the shards can't be saved, the exception fails the task
+   * and the queue retries it. The totals are updated after that, also when a retried task
+   * finds its batch already saved; a failed update is fixed by the next task of the song.
+   */
+  public static void saveSearches(String payload) {
+    SearchBatch batch = JsonHelper.getGson().fromJson(payload, SearchBatch.class);
+    AppMetrics.measureDatastore("saveCounterShards", () -> {
+      saveShards(batch);
+      return null;
+    });
+
+    List<SongCounter> updatedCounters = new ArrayList<>();
+    for (PendingSearches pending : batch.searches) {
+      try {
+        updatedCounters.add(AppMetrics.measureDatastore("updateSongCounter", () -> updateTotal(pending.song)));
+      } catch (RuntimeException databaseException) {
+        // The searches are in the shards, the total will include them after the next task of the song.
+      }
+    }
+    recordSavedCounts(updatedCounters);
+    SongDataBase.updateTopSongs(updatedCounters);
+  }
+
+  /**
+   * Adds the searches to a random shard of every song and marks the batch as applied,
+   * in one transaction. Does nothing if the batch was already applied.
+   */
+  private static void saveShards(SearchBatch batch) {
+    OfyService.ofy().transact(() -> {
+      if (OfyService.ofy().load().type(AppliedSearchBatch.class).id(batch.id).now() != null) {
+        return;
+      }
+
+      Map<String, PendingSearches> searchesByShardId = new HashMap<>();
+      for (PendingSearches pending : batch.searches) {
+        String shard = String.valueOf(ThreadLocalRandom.current().nextInt(shardCount));
+        searchesByShardId.put(SongCounterShard.createId(pending.song.id(), shard), pending);
+      }
+
+      Map<String, SongCounterShard> shards =
+          OfyService.ofy().load().type(SongCounterShard.class).ids(searchesByShardId.keySet());
+      List<SongCounterShard> updatedShards = new ArrayList<>();
+      for (Map.Entry<String, PendingSearches> entry : searchesByShardId.entrySet()) {
+        SongCounterShard shard = shards.get(entry.getKey());
+        if (shard == null) {
+          String shardName = entry.getKey().substring(entry.getKey().lastIndexOf('-') + 1);
+          shard = new SongCounterShard(entry.getValue().song, shardName);
+        }
+        shard.addSearches(entry.getValue().count);
+        updatedShards.add(shard);
+      }
+      OfyService.ofy().save().entities(updatedShards);
+      OfyService.ofy().save().entity(new AppliedSearchBatch(batch.id, new Date()));
+    });
+  }
+
+  /**
+   * Deletes the markers of batches applied before the age limit of their tasks, which can't
+   * run again. Deletes at most one batch of markers, older ones are deleted by the next runs.
+   */
+  public static void deleteExpiredBatches() {
+    Date expired = new Date(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(BATCH_AGE_LIMIT_SECONDS));
+    List<Key<AppliedSearchBatch>> expiredBatches = AppMetrics.measureDatastore("findExpiredSearchBatches",
+        () -> OfyService.ofy().load().type(AppliedSearchBatch.class).filter("applied <", expired)
+            .limit(MAX_DELETE_BATCH_SIZE).keys().list());
+    AppMetrics.measureDatastore("deleteExpiredSearchBatches",
+        () -> OfyService.ofy().delete().keys(expiredBatches).now());
+  }
+
+  /**
+   * Copies the total of the shards of the song to its SongCounter, in a transaction.
+   * The total only grows, so an older sum from a concurrent task can't move the counter back.
+   * A counter saved before sharding moves its searches to the legacy shard first.
+   */
+  private static SongCounter updateTotal(Song song) {
+    int total = sumShards(song.id());
+    return OfyService.ofy().transact(() -> {
+      SongCounter counter = OfyService.ofy().load().type(SongCounter.class).id(song.id()).now();
+      int shardedTotal = total;
+      if (counter == null) {
+        counter = new SongCounter(song);
+      } else if (!counter.isSharded()) {
+        SongCounterShard legacyShard = new SongCounterShard(song, SongCounterShard.LEGACY_SHARD);
+        legacyShard.addSearches(counter.getSearchCounter());
+        OfyService.ofy().save().entity(legacyShard);
+        shardedTotal += counter.getSearchCounter();
+      }
+      counter.updateShardedTotal(shardedTotal);
+      OfyService.ofy().save().entity(counter);
+      return counter;
+    });
+  }
+
+  /**
+   * Returns the total number of searches saved in the shards of the song. The shards are loaded
+   * by key, so the sum includes every saved shard, unlike an eventually consistent query.
+   */
+  static int sumShards(Long songId) {
+    List<String> shardIds = new ArrayList<>();
+    for (int shard = 0; shard < shardCount; shard++) {
+      shardIds.add(SongCounterShard.createId(songId, String.valueOf(shard)));
+    }
+    shardIds.add(SongCounterShard.createId(songId, SongCounterShard.LEGACY_SHARD));
+
+    int total = 0;
+    for (SongCounterShard shard : OfyService.ofy().load().type(SongCounterShard.class).ids(shardIds).values()) {
+      total += shard.getSearchCounter();
+    }
+    return total;
+  }
+}
@@ -1,80 +1,278 @@
 package com.google.alpollo.database;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Collections;
 import com.google.alpollo.database.OfyService;
+import com.google.alpollo.helpers.AppMetrics;
+import com.google.alpollo.helpers.AppTracing;
+import com.google.alpollo.helpers.JsonHelper;
 import com.google.alpollo.model.AnalysisInfo;
+import com.google.alpollo.model.CachedAnalysis;
+import com.google.alpollo.model.CachedLyrics;
 import com.google.alpollo.model.Song;
 import com.google.alpollo.model.SongCounter;
 import com.google.alpollo.model.SearchHistory;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.PropertyProjection;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
+import com.googlecode.objectify.Key;
 
 /** Class that provides methods to work with the database. */
 public class SongDataBase {
+  /** Path of the servlet that saves the analysis of a task. */
+  public static final String SAVE_ANALYSIS_TASK_URL = "/tasks/save-analysis";
   /** Number of the songs that will be shown to the user. */
   private static final int TOP_SIZE = 10;
+  /** Number of the songs of each kind that are used as autocomplete suggestions. */
+  private static final int CATALOGUE_SIZE = 5000;
+  /** Properties of the song of an AnalysisInfo in the database. */
+  private static final String SONG_ARTIST = "song.artist";
+  private static final String SONG_NAME = "song.name";
+  private static final TopSongsLeaderboard topSongsLeaderboard =
+      new TopSongsLeaderboard(TOP_SIZE, SongDataBase::queryTopSongs);
 
-  /** Save request song to database, increment the search counter and returns SongCounter with correct searchCounter. */
+  /**
+   * Counts the search of the song and returns SongCounter with correct searchCounter.
+   * The search is written to the database later by {@link SearchCounterAggregator}.
+   */
   public static SongCounter saveSongRequest(Song song) {
-    SongCounter songCounter = OfyService.ofy().load().type(SongCounter.class).id(song.id()).now();
-    if (songCounter == null) {
-      songCounter = new SongCounter(song);
-    }
-    songCounter.incrementSearchCounter();
     saveInUserHistory(song);
-    OfyService.ofy().save().entity(songCounter).now();
+    return countSearch(song);
+  }
+
+  private static SongCounter countSearch(Song song) {
+    SearchCounterAggregator.increment(song);
+    SongCounter songCounter = new SongCounter(song, getSearchCounter(song));
+    topSongsLeaderboard.update(songCounter);
     return songCounter;
   }
 
-  /** Returns the list of the most requested songs. */
+  /**
+   * Returns how many times the song was searched, including searches that aren't saved yet.
+   * The saved total is loaded once per instance and then kept in memory, so the count
+   * doesn't include the latest searches on other instances.
+   */
+  public static int getSearchCounter(Song song) {
+    return SearchCounterAggregator.getSavedCount(song.id()) + SearchCounterAggregator.getPendingCount(song.id());
+  }
+
+  /** Returns the list of the most requested songs, from memory. */
   public static List<SongCounter> topSongs() {
-    return OfyService.ofy().load().type(SongCounter.class).order("-searchCounter").limit(TOP_SIZE).list();
+    return topSongsLeaderboard.getTopSongs();
+  }
+
+  /** Updates the positions of the songs in the top after their counters were saved. */
+  static void updateTopSongs(Collection<SongCounter> songCounters) {
+    topSongsLeaderboard.update(songCounters);
+  }
+
+  /** Sets how often the top in memory is replaced with the top from the database. */
+  public static void setTopSongsReconcileInterval(int intervalSeconds) {
+    topSongsLeaderboard.setReconcileInterval(intervalSeconds);
   }
 
-  /** Save analysis info to database. */
+  private static List<SongCounter> queryTopSongs() {
+    List<SongCounter> songCounters = AppMetrics.measureDatastore("queryTopSongs",
+        () -> OfyService.ofy().load().type(SongCounter.class).order("-searchCounter").limit(TOP_SIZE).list());
+    SearchCounterAggregator.recordSavedCounts(songCounters);
+    return songCounters;
+  }
+
+  /**
+   * Save analysis info to database. The number of saved analyses is limited by
+   * {@link AnalysisInfoStore}, which deletes the least useful ones when cron calls it.
+   */
   public static void saveAnalysisInfo(AnalysisInfo info) {
-    // Song that we want to save with analysis
-    SongCounter newSong = saveSongRequest(info.getSong());
+    saveAnalysisInfo(info, getCurrentUserId());
+  }
 
-    List<SongCounter> songCounters = topSongs();
-    // Song that we already have in database and it is on the last place in the top of songs
-    SongCounter lessSearchedSongFromTop = songCounters.get(songCounters.size() - 1);
+  /** Analysis saved by a task, with the user who asked for it. */
+  private static final class AnalysisTask {
+    private final AnalysisInfo info;
+    private final String userId;
 
-    if (lessSearchedSongFromTop.getSearchCounter() < newSong.getSearchCounter() || songCounters.size() <= TOP_SIZE) {
-      OfyService.ofy().delete().type(AnalysisInfo.class).id(lessSearchedSongFromTop.getSong().id());
+    private AnalysisTask(AnalysisInfo info, String userId) {
+      this.info = info;
+      this.userId = userId;
+    }
+  }
+
+  /**
+   * Same as {@link #saveAnalysisInfo}, but saved by a task of the default queue, so the response
+   * doesn't wait for the writes and the queue retries them if they fail. The task can't read
+   * the user of the request, so the caller passes the id of the user whose history is updated.
+   *
+   * @param userId id of the logged in user; {@code null} if nobody is logged in
+   * @throws RuntimeException if the task couldn't be enqueued
+   */
+  public static void enqueueAnalysisInfo(AnalysisInfo info, String userId) {
+    enqueueAnalysisInfo(QueueFactory.getDefaultQueue(), info, userId);
+  }
+
+  static void enqueueAnalysisInfo(Queue queue, AnalysisInfo info, String userId) {
+    info.initializeId();
+    byte[] payload = JsonHelper.getGson().toJson(new AnalysisTask(info, userId)).getBytes(StandardCharsets.UTF_8);
+    queue.add(TaskOptions.Builder.withUrl(SAVE_ANALYSIS_TASK_URL).payload(payload, "application/json; charset=UTF-8"));
+  }
+
+  /**
+   * Saves the analysis of a task. If it can't be saved, the exception fails the task and the queue
+   * retries it, so the search is counted last, after the writes that may fail.
+   */
+  public static void saveAnalysisTask(String payload) {
+    AnalysisTask task = JsonHelper.getGson().fromJson(payload, AnalysisTask.class);
+    saveAnalysisInfo(task.info, task.userId);
+  }
+
+  /**
+   * Saves the analysis, the search in the history of the user and counts the search.
+   * @param userId id of the logged in user; {@code null} if nobody is logged in
+   */
+  public static void saveAnalysisInfo(AnalysisInfo info, String userId) {
+    AppTracing.trace("SongDataBase.saveAnalysisInfo", () -> {
+      Song song = info.getSong();
       // Initialize id, because frontend will send SongInfo object without it.
       info.initializeId();
-      OfyService.ofy().save().entity(info).now();
+      // The search that is counted below is included.
+      AnalysisInfoStore.save(info, getSearchCounter(song) + 1);
+      saveInUserHistory(userId, song);
+      countSearch(song);
+      return null;
+    });
+  }
+
+  /** Returns the songs that were searched the most and the songs that have a saved analysis. */
+  public static List<Song> catalogueSongs() {
+    return AppMetrics.measureDatastore("queryCatalogue", SongDataBase::queryCatalogueSongs);
+  }
+
+  private static List<Song> queryCatalogueSongs() {
+    List<Song> songs = new ArrayList<>();
+    for (SongCounter songCounter : OfyService.ofy().load().type(SongCounter.class)
+        .order("-searchCounter").limit(CATALOGUE_SIZE)) {
+      songs.add(songCounter.getSong());
+    }
+    // Analyses hold the lyrics and the results of the APIs, so only their songs are loaded.
+    // Objectify doesn't fill embedded classes from a projection, so the query is made without it.
+    Query analysisSongs = new Query(Key.getKind(AnalysisInfo.class))
+        .addProjection(new PropertyProjection(SONG_ARTIST, String.class))
+        .addProjection(new PropertyProjection(SONG_NAME, String.class));
+    for (Entity entity : DatastoreServiceFactory.getDatastoreService().prepare(analysisSongs)
+        .asIterable(FetchOptions.Builder.withLimit(CATALOGUE_SIZE))) {
+      songs.add(new Song((String) entity.getProperty(SONG_ARTIST), (String) entity.getProperty(SONG_NAME)));
     }
+    return songs;
   }
 
   /** Returns the analysis info by song id. */
   public static AnalysisInfo getAnanlysisInfo(Long id) {
-    return OfyService.ofy().load().type(AnalysisInfo.class).id(id).now();
+    return AnalysisInfoStore.load(id);
   }
 
   /** Save search request to user history. */
   public static void saveInUserHistory(Song song) {
+    saveInUserHistory(getCurrentUserId(), song);
+  }
+
+  /**
+   * Returns the id of the user of the request; {@code null} if nobody is logged in.
+   * Only works on a thread of the request.
+   */
+  public static String getCurrentUserId() {
     UserService userService = UserServiceFactory.getUserService();
-    if (userService.isUserLoggedIn()) {
-      String userId = userService.getCurrentUser().getUserId();
+    return userService.isUserLoggedIn() ? userService.getCurrentUser().getUserId() : null;
+  }
+
+  /** Save search request to the history of the user; nothing is saved if the id is {@code null}. */
+  public static void saveInUserHistory(String userId, Song song) {
+    if (userId == null) {
+      return;
+    }
 
-      SearchHistory searchHistory = OfyService.ofy().load().type(SearchHistory.class).id(userId).now();
-      if (searchHistory == null) {
-        searchHistory = new SearchHistory(userId);
-      }
-      searchHistory.addSearchRequest(song);
-      OfyService.ofy().save().entity(searchHistory).now();
-    } 
+    SearchHistory searchHistory = loadSearchHistory(userId);
+    if (searchHistory == null) {
+      searchHistory = new SearchHistory(userId);
+    }
+    searchHistory.addSearchRequest(song);
+    SearchHistory updatedHistory = searchHistory;
+    AppMetrics.measureDatastore("saveSearchHistory",
+        () -> OfyService.ofy().save().entity(updatedHistory).now());
   }
 
   /** Returns the list of the most requested songs from the user. */
   public static List<Song> searchHistory(String userId) {
-    SearchHistory searchHistory = OfyService.ofy().load().type(SearchHistory.class).id(userId).now();
+    SearchHistory searchHistory = loadSearchHistory(userId);
     if (searchHistory == null) {
       return Collections.emptyList();
     }
     return searchHistory.getHistory();
   }
-}
\ No newline at end of file
+
+  private static SearchHistory loadSearchHistory(String userId) {
+    return AppMetrics.measureDatastore("loadSearchHistory",
+        () -> OfyService.ofy().load().type(SearchHistory.class).id(userId).now());
+  }
+
+  /**
+   * Returns the saved result of a Natural Language API call.
+   * @return serialized result; {@code null} if it wasn't saved or the database isn't available.
+   */
+  public static byte[] getCachedAnalysis(String id) {
+    try {
+      CachedAnalysis cachedAnalysis = AppMetrics.measureDatastore("loadCachedAnalysis",
+          () -> OfyService.ofy().load().type(CachedAnalysis.class).id(id).now());
+      return cachedAnalysis == null ? null : cachedAnalysis.getResult();
+    } catch (RuntimeException databaseException) {
+      // The result can always be computed again, so a failed read is only a cache miss.
+      return null;
+    }
+  }
+
+  /**
+   * Saves the result of a Natural Language API call. The write is asynchronous:
+   * Objectify completes it at the end of the request, so the caller doesn't wait for it.
+   */
+  public static void saveCachedAnalysis(String id, byte[] result) {
+    try {
+      AppMetrics.measureDatastore("saveCachedAnalysis",
+          () -> OfyService.ofy().save().entity(new CachedAnalysis(id, result)));
+    } catch (RuntimeException databaseException) {
+      // Not saving a result only means it will be computed again later.
+    }
+  }
+
+  /**
+   * Returns the saved lyrics of the song.
+   * @return GZIP compressed lyrics; {@code null} if they weren't saved or the database isn't available.
+   */
+  public static byte[] getCachedLyrics(Long songId) {
+    try {
+      CachedLyrics cachedLyrics = AppMetrics.measureDatastore("loadCachedLyrics",
+          () -> OfyService.ofy().load().type(CachedLyrics.class).id(songId).now());
+      return cachedLyrics == null ? null : cachedLyrics.getCompressedLyrics();
+    } catch (RuntimeException databaseException) {
+      // The lyrics can always be fetched again, so a failed read is only a cache miss.
+      return null;
+    }
+  }
+
+  /** Saves the GZIP compressed lyrics of the song, without waiting for the write. */
+  public static void saveCachedLyrics(Long songId, byte[] compressedLyrics) {
+    try {
+      AppMetrics.measureDatastore("saveCachedLyrics",
+          () -> OfyService.ofy().save().entity(new CachedLyrics(songId, compressedLyrics)));
+    } catch (RuntimeException databaseException) {
+      // Not saving the lyrics only means they will be fetched again later.
+    }
+  }
+}
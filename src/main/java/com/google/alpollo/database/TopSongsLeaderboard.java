@@ -0,0 +1,142 @@
+package com.google.alpollo.database;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import com.google.alpollo.model.SongCounter;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Keeps the most searched songs in memory, so the top can be returned without a query.
+ *
+ * The top is updated every time a search counter changes on this instance. The first read after
+ * the reconcile interval passed replaces it with the top from the database, which also contains
+ * the searches counted by other instances; the other reads meanwhile get the current top.
+ * The top lives in the memory of the instance, so it's refreshed by its requests rather than by cron.
+ * Readers get an immutable snapshot that is rebuilt only when the top changes.
+ */
+public final class TopSongsLeaderboard {
+  /** How often the top is loaded from the database by default. */
+  public static final int DEFAULT_RECONCILE_INTERVAL_SECONDS = 60;
+  /** Most searched songs first, songs with equal counters in a fixed order. */
+  private static final Comparator<SongCounter> BY_SEARCH_COUNTER =
+      Comparator.comparingInt(SongCounter::getSearchCounter).reversed()
+          .thenComparing(songCounter -> songCounter.getSong().id());
+
+  private final int size;
+  private final Supplier<List<SongCounter>> loader;
+  /** Songs in the top by song id, and the same songs in order. Guarded by this. */
+  private final Map<Long, SongCounter> songsById = new HashMap<>();
+  private final TreeSet<SongCounter> orderedSongs = new TreeSet<>(BY_SEARCH_COUNTER);
+  private volatile List<SongCounter> snapshot;
+  private volatile long reconcileIntervalNanos = TimeUnit.SECONDS.toNanos(DEFAULT_RECONCILE_INTERVAL_SECONDS);
+  /** When the top was last loaded from the database, by {@link System#nanoTime()}. */
+  private volatile long reconciledAtNanos;
+  /** Whether a read is loading the top, so the others don't query the database too. */
+  private final AtomicBoolean reconciling = new AtomicBoolean();
+
+  /**
+   * @param size how many songs are in the top
+   * @param loader loads the top from the database
+   */
+  public TopSongsLeaderboard(int size, Supplier<List<SongCounter>> loader) {
+    this.size = size;
+    this.loader = loader;
+  }
+
+  /** Sets how long the top is used before it is loaded from the database again. */
+  public void setReconcileInterval(int reconcileIntervalSeconds) {
+    reconcileIntervalNanos = TimeUnit.SECONDS.toNanos(reconcileIntervalSeconds);
+  }
+
+  /**
+   * Returns the most searched songs, loading them from the database if they weren't loaded yet
+   * or were loaded longer than the reconcile interval ago.
+   */
+  public List<SongCounter> getTopSongs() {
+    List<SongCounter> currentSnapshot = snapshot;
+    if (currentSnapshot == null) {
+      reconcile();
+      currentSnapshot = snapshot;
+    } else if (System.nanoTime() - reconciledAtNanos >= reconcileIntervalNanos
+        && reconciling.compareAndSet(false, true)) {
+      try {
+        reconcile();
+      } finally {
+        reconciling.set(false);
+      }
+      currentSnapshot = snapshot;
+    }
+    return currentSnapshot;
+  }
+
+  /** Returns the most searched songs; {@code null} if they weren't loaded yet. */
+  public List<SongCounter> getSnapshot() {
+    return snapshot;
+  }
+
+  /** Updates the position of the song, which may enter the top or move up in it. */
+  public void update(SongCounter songCounter) {
+    update(ImmutableList.of(songCounter));
+  }
+
+  /** Updates the positions of the songs. */
+  public synchronized void update(Collection<SongCounter> songCounters) {
+    boolean changed = false;
+    for (SongCounter songCounter : songCounters) {
+      changed |= updateWithoutSnapshot(songCounter);
+    }
+    if (changed) {
+      snapshot = ImmutableList.copyOf(orderedSongs);
+    }
+  }
+
+  private boolean updateWithoutSnapshot(SongCounter songCounter) {
+    Long songId = songCounter.getSong().id();
+    SongCounter current = songsById.get(songId);
+    if (current != null) {
+      // Counters only grow, an older total from a concurrent flush mustn't move the song down.
+      if (current.getSearchCounter() >= songCounter.getSearchCounter()) {
+        return false;
+      }
+      orderedSongs.remove(current);
+    } else if (orderedSongs.size() >= size
+        && BY_SEARCH_COUNTER.compare(songCounter, orderedSongs.last()) >= 0) {
+      return false;
+    }
+
+    songsById.put(songId, songCounter);
+    orderedSongs.add(songCounter);
+    if (orderedSongs.size() > size) {
+      songsById.remove(orderedSongs.pollLast().getSong().id());
+    }
+    return true;
+  }
+
+  /** Replaces the top with the one from the database. Keeps the current top if the database isn't available. */
+  public void reconcile() {
+    // A failed load is retried after the interval too, not by every read.
+    reconciledAtNanos = System.nanoTime();
+    List<SongCounter> songCounters;
+    try {
+      songCounters = loader.get();
+    } catch (RuntimeException databaseException) {
+      return;
+    }
+
+    synchronized (this) {
+      songsById.clear();
+      orderedSongs.clear();
+      for (SongCounter songCounter : songCounters) {
+        updateWithoutSnapshot(songCounter);
+      }
+      snapshot = ImmutableList.copyOf(orderedSongs);
+    }
+  }
+}
@@ -7,9 +7,12 @@ import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import com.google.alpollo.database.SongDataBase;
 import com.google.alpollo.model.SongEntity;
 import com.google.api.gax.rpc.FixedHeaderProvider;
 import com.google.cloud.language.v1.AnalyzeEntitiesResponse;
+import com.google.cloud.language.v1.AnnotateTextRequest;
+import com.google.cloud.language.v1.AnnotateTextResponse;
 import com.google.cloud.language.v1.Document;
 import com.google.cloud.language.v1.EncodingType;
 import com.google.cloud.language.v1.Entity;
@@ -17,6 +20,9 @@ import com.google.cloud.language.v1.LanguageServiceClient;
 import com.google.cloud.language.v1.LanguageServiceSettings;
 import com.google.cloud.language.v1.Sentiment;
 import com.google.common.collect.Sets;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
 import com.google.cloud.language.v1.AnalyzeEntitiesRequest;
 
 /**
@@ -24,7 +30,26 @@ import com.google.cloud.language.v1.AnalyzeEntitiesRequest;
  * from the API.
  */
 public final class AnalysisHelper {
-  private static LanguageServiceSettings settings;
+  /** Number of gRPC channels the shared client keeps open to the Natural Language API. */
+  public static final int DEFAULT_CHANNEL_POOL_SIZE = 1;
+  private static volatile int channelPoolSize = DEFAULT_CHANNEL_POOL_SIZE;
+  private static final SharedClient<LanguageServiceClient> languageClient =
+      new SharedClient<>(AnalysisHelper::createLanguageServiceClient);
+  /** How many bytes of API results each cache keeps by default. */
+  public static final int DEFAULT_CACHE_MAX_BYTES = 32 * 1024 * 1024;
+  /** How long API results are cached by default. */
+  public static final int DEFAULT_CACHE_TTL_MINUTES = 24 * 60;
+  /**
+   * API results by the hash of the lyrics, so repeated analyses of a song don't call the API.
+   * Misses are looked up in the database before calling the API, see {@link #loadOrRequest}.
+   * Concurrent misses for the same lyrics wait for the cache, so they share one read and API call.
+   */
+  private static final TextKeyedCache<Sentiment> sentimentCache = new TextKeyedCache<>("language.sentiment",
+      DEFAULT_CACHE_MAX_BYTES, DEFAULT_CACHE_TTL_MINUTES, MessageLite::getSerializedSize);
+  private static final TextKeyedCache<AnalyzeEntitiesResponse> entityCache = new TextKeyedCache<>("language.entities",
+      DEFAULT_CACHE_MAX_BYTES, DEFAULT_CACHE_TTL_MINUTES, MessageLite::getSerializedSize);
+  private static final TextKeyedCache<AnnotateTextResponse> annotationCache = new TextKeyedCache<>("language.annotation",
+      DEFAULT_CACHE_MAX_BYTES, DEFAULT_CACHE_TTL_MINUTES, MessageLite::getSerializedSize);
   /** How many entities we want in our TopSalientEntities list. (Top 10, Top 15 etc.)*/
   private static final int MAX_ENTITIES = 10;
   public static final String NEUTRAL = "This song doesn't convey any positive or negative feelings.";
@@ -37,15 +62,44 @@ public final class AnalysisHelper {
 
   private AnalysisHelper() {};
 
-  private static void createLanguageServiceSettings(String projectID) throws IOException {
-    if (projectID == null) {
-      throw new IllegalStateException("Project ID wasn't defined.");
+  /**
+   * Sets how many gRPC channels the client will use. Only applies to a client created
+   * after the call, so it should be set on startup.
+   */
+  public static void setChannelPoolSize(int poolSize) {
+    if (poolSize < 1) {
+      throw new IllegalArgumentException("Channel pool size must be positive.");
     }
+    channelPoolSize = poolSize;
+  }
 
-    if (settings == null) {
-      settings = LanguageServiceSettings.newBuilder().setHeaderProvider(
-          FixedHeaderProvider.create("X-Goog-User-Project", projectID)).build();
-    }
+  /** Sets the limits of the result caches. Cached results are dropped. */
+  public static void configureCache(int maxBytes, int ttlMinutes) {
+    sentimentCache.configure(maxBytes, ttlMinutes);
+    entityCache.configure(maxBytes, ttlMinutes);
+    annotationCache.configure(maxBytes, ttlMinutes);
+  }
+
+  /** Number of analyses that were answered from the cache, without calling the API. */
+  public static long getCacheHitCount() {
+    return sentimentCache.getHitCount() + entityCache.getHitCount() + annotationCache.getHitCount();
+  }
+
+  /** Number of analyses that had to call the API. */
+  public static long getCacheMissCount() {
+    return sentimentCache.getMissCount() + entityCache.getMissCount() + annotationCache.getMissCount();
+  }
+
+  /**
+   * Creates the client for the Natural Language service. Adds special header to make it
+   * work on Cloud Shell.
+   */
+  private static LanguageServiceClient createLanguageServiceClient(String projectID) throws IOException {
+    LanguageServiceSettings settings = ApiEndpoints.language(LanguageServiceSettings.newBuilder()
+        .setHeaderProvider(FixedHeaderProvider.create("X-Goog-User-Project", projectID)),
+        LanguageServiceSettings.defaultGrpcTransportProviderBuilder().setPoolSize(channelPoolSize))
+        .build();
+    return LanguageServiceClient.create(settings);
   }
 
   /**
@@ -54,14 +108,20 @@ public final class AnalysisHelper {
    * and a magnitude, representing how strong the sentiment is, ranging from 0.0 to +inf.
    */
   public static Sentiment getSentiment(String projectID, String lyrics) throws IllegalStateException, IOException {
-    createLanguageServiceSettings(projectID);
+    return AppTracing.trace("AnalysisHelper.getSentiment", () -> {
+      String hash = TextHasher.hash(lyrics);
+      return sentimentCache.getByHash(hash, () -> loadOrRequest("sentiment", hash,
+          Sentiment.parser(), () -> requestSentiment(projectID, lyrics)));
+    });
+  }
 
-    try (LanguageServiceClient language = LanguageServiceClient.create(settings)) {
-      Document doc = Document.newBuilder().setContent(lyrics).setType(Document.Type.PLAIN_TEXT).build();
-      Sentiment sentiment = language.analyzeSentiment(doc).getDocumentSentiment();
-      
-      return sentiment;
-    }
+  private static Sentiment requestSentiment(String projectID, String lyrics) throws IOException {
+    LanguageServiceClient language = languageClient.get(projectID);
+    Document doc = Document.newBuilder().setContent(lyrics).setType(Document.Type.PLAIN_TEXT).build();
+    Sentiment sentiment = AppMetrics.measureApiCall("language.analyzeSentiment",
+        () -> language.analyzeSentiment(doc)).getDocumentSentiment();
+
+    return sentiment;
   }
 
   /**
@@ -71,16 +131,67 @@ public final class AnalysisHelper {
    * ranging from 0 to 1.0 .
    */
   public static List<Entity> getEntityList(String projectID, String lyrics) throws IOException {
-    createLanguageServiceSettings(projectID);
+    return AppTracing.trace("AnalysisHelper.getEntityList", () -> {
+      String hash = TextHasher.hash(lyrics);
+      return entityCache.getByHash(hash, () -> loadOrRequest("entities", hash,
+          AnalyzeEntitiesResponse.parser(), () -> requestEntities(projectID, lyrics))).getEntitiesList();
+    });
+  }
+
+  private static AnalyzeEntitiesResponse requestEntities(String projectID, String lyrics) throws IOException {
+    LanguageServiceClient language = languageClient.get(projectID);
+    Document doc = Document.newBuilder().setContent(lyrics).setType(Document.Type.PLAIN_TEXT).build();
+    AnalyzeEntitiesRequest request = AnalyzeEntitiesRequest.newBuilder().setDocument(doc)
+        .setEncodingType(EncodingType.UTF16).build();
+    return AppMetrics.measureApiCall("language.analyzeEntities", () -> language.analyzeEntities(request));
+  }
 
-    try (LanguageServiceClient language = LanguageServiceClient.create(settings)) {
-      Document doc = Document.newBuilder().setContent(lyrics).setType(Document.Type.PLAIN_TEXT).build();
-      AnalyzeEntitiesRequest request = AnalyzeEntitiesRequest.newBuilder().setDocument(doc)
-          .setEncodingType(EncodingType.UTF16).build();
-      AnalyzeEntitiesResponse response = language.analyzeEntities(request);
+  /**
+   * Extracts both the sentiment and the entities of the lyrics with a single annotateText call,
+   * so the lyrics are sent to the API only once.
+   */
+  public static AnnotateTextResponse getSentimentAndEntities(String projectID, String lyrics)
+      throws IOException {
+    return AppTracing.trace("AnalysisHelper.getSentimentAndEntities", () -> {
+      String hash = TextHasher.hash(lyrics);
+      return annotationCache.getByHash(hash, () -> loadOrRequest("annotation", hash,
+          AnnotateTextResponse.parser(), () -> requestSentimentAndEntities(projectID, lyrics)));
+    });
+  }
 
-      return response.getEntitiesList();
+  private static AnnotateTextResponse requestSentimentAndEntities(String projectID, String lyrics)
+      throws IOException {
+    LanguageServiceClient language = languageClient.get(projectID);
+    Document doc = Document.newBuilder().setContent(lyrics).setType(Document.Type.PLAIN_TEXT).build();
+    AnnotateTextRequest.Features features = AnnotateTextRequest.Features.newBuilder()
+        .setExtractDocumentSentiment(true)
+        .setExtractEntities(true)
+        .build();
+    AnnotateTextRequest request = AnnotateTextRequest.newBuilder().setDocument(doc)
+        .setFeatures(features).setEncodingType(EncodingType.UTF16).build();
+
+    return AppMetrics.measureApiCall("language.annotateText", () -> language.annotateText(request));
+  }
+
+  /**
+   * Returns the result that any instance saved to the database for these lyrics.
+   * If there is none, calls the API and saves the result without waiting for the write.
+   */
+  private static <T extends MessageLite> T loadOrRequest(String type, String hash, Parser<T> parser,
+      TextKeyedCache.Loader<T> request) throws IOException {
+    String id = type + ":" + hash;
+    byte[] savedResult = SongDataBase.getCachedAnalysis(id);
+    if (savedResult != null) {
+      try {
+        return parser.parseFrom(savedResult);
+      } catch (InvalidProtocolBufferException e) {
+        // The saved result is broken, so we request a new one and overwrite it.
+      }
     }
+
+    T result = request.load();
+    SongDataBase.saveCachedAnalysis(id, result.toByteArray());
+    return result;
   }
 
   /**
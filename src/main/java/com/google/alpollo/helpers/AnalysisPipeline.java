@@ -0,0 +1,154 @@
+package com.google.alpollo.helpers;
+
+import com.google.alpollo.database.SongDataBase;
+import com.google.alpollo.model.AnalysisInfo;
+import com.google.alpollo.model.Song;
+import com.google.alpollo.model.SongEntity;
+import com.google.alpollo.model.SongSentiment;
+import com.google.cloud.language.v1.AnnotateTextResponse;
+import com.google.cloud.language.v1.Sentiment;
+import com.googlecode.objectify.ObjectifyService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Builds the whole analysis of a song on the server, instead of the client asking
+ * for the lyrics, the sentiment, the entities and the videos one by one.
+ * The lyrics are fetched by {@link LyricsService}, so the client only sends the song.
+ *
+ * The sentiment and the entities are requested with one annotateText call as soon as the lyrics
+ * are known, and the videos are searched as soon as the entities are known. The analysis is saved
+ * by a task, so the response doesn't wait for the writes.
+ * The calls run on threads of the request (see {@link RequestThreadExecutor}), because they use
+ * URL Fetch and the database.
+ */
+public final class AnalysisPipeline {
+  /** How many calls of all pipelines run at the same time by default. */
+  public static final int DEFAULT_THREADS = 16;
+  private static volatile RequestThreadExecutor executor = createExecutor(DEFAULT_THREADS);
+
+  /** One step of the pipeline, a call to an API or to the database. */
+  private interface Stage<T> {
+    T run() throws IOException;
+  }
+
+  private AnalysisPipeline() {}
+
+  /** Sets how many calls run at the same time. */
+  public static void configure(int threads) {
+    ExecutorService previousExecutor = executor;
+    executor = createExecutor(threads);
+    previousExecutor.shutdown();
+  }
+
+  /** Returns the executor that runs the calls, for metrics. */
+  static RequestThreadExecutor getExecutor() {
+    return executor;
+  }
+
+  /** Stops the pipeline threads. */
+  public static void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Analyzes the song, waits for the analysis and enqueues a task that saves it.
+   *
+   * @param userId id of the user who asked for the analysis, read on the request thread;
+   *     {@code null} if nobody is logged in
+   * @return the analysis; {@code null} if there are no lyrics for the song.
+   * @throws IOException if one of the APIs couldn't be reached
+   */
+  public static AnalysisInfo analyzeAndSave(Song song, String userId, String projectID, String apiKey)
+      throws IOException {
+    ExecutorService currentExecutor = executor;
+    AnalysisInfo info;
+    try {
+      info = analyze(song, projectID, apiKey, currentExecutor).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Analysis was interrupted.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) cause).getCause();
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+
+    if (info != null) {
+      try {
+        SongDataBase.enqueueAnalysisInfo(info, userId);
+      } catch (RuntimeException queueException) {
+        // Without the queue the analysis is saved before the response is sent.
+        SongDataBase.saveAnalysisInfo(info, userId);
+      }
+    }
+    return info;
+  }
+
+  /**
+   * Starts the calls of the analysis.
+   * @return future of the analysis; completes with {@code null} if there are no lyrics for the song.
+   */
+  static CompletableFuture<AnalysisInfo> analyze(Song song, String projectID, String apiKey,
+      ExecutorService executor) {
+    CompletableFuture<String> lyricsFuture = supply(() -> LyricsService.getLyrics(song), executor);
+
+    // One annotateText call returns both the sentiment and the entities of the lyrics.
+    CompletableFuture<AnnotateTextResponse> annotationFuture = lyricsFuture.thenCompose(text -> text == null
+        ? CompletableFuture.completedFuture(null)
+        : supply(() -> AnalysisHelper.getSentimentAndEntities(projectID, text), executor));
+
+    CompletableFuture<SongSentiment> sentimentFuture = annotationFuture.thenApply(annotation -> {
+      if (annotation == null) {
+        return null;
+      }
+      Sentiment sentiment = annotation.getDocumentSentiment();
+      return new SongSentiment(sentiment.getScore(), sentiment.getMagnitude());
+    });
+
+    CompletableFuture<List<SongEntity>> entitiesFuture = annotationFuture.thenApply(annotation ->
+        annotation == null
+            ? null
+            : AnalysisHelper.getFilteredTopEntities(AnalysisHelper.getSimplifiedEntityList(annotation.getEntitiesList())));
+
+    // The videos are found by the most salient entity, like on the song page.
+    CompletableFuture<List<String>> videosFuture = entitiesFuture.thenCompose(entities ->
+        entities == null || entities.isEmpty()
+            ? CompletableFuture.completedFuture(Collections.<String>emptyList())
+            : supply(() -> YouTubeService.searchVideoIds(entities.get(0).getName(), apiKey), executor));
+
+    return CompletableFuture.allOf(sentimentFuture, videosFuture).thenApply(ignored -> {
+      String text = lyricsFuture.join();
+      if (text == null) {
+        return null;
+      }
+      return new AnalysisInfo(song, sentimentFuture.join(), entitiesFuture.join(), text, videosFuture.join());
+    });
+  }
+
+  /** Runs the stage on the executor; the stage may use the database. */
+  private static <T> CompletableFuture<T> supply(Stage<T> stage, ExecutorService executor) {
+    return CompletableFuture.supplyAsync(() -> ObjectifyService.run(() -> {
+      try {
+        return stage.run();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }), executor);
+  }
+
+  private static RequestThreadExecutor createExecutor(int threads) {
+    // When all threads are busy the calling thread makes the call itself instead of waiting in a queue.
+    return new RequestThreadExecutor("analysis-pipeline", threads, 0, true);
+  }
+}
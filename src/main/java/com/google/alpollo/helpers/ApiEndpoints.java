@@ -0,0 +1,80 @@
+package com.google.alpollo.helpers;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
+import com.google.api.gax.rpc.ClientSettings;
+
+/**
+ * Addresses of the Google APIs the application calls. By default every client uses Google's
+ * endpoint; an endpoint can be replaced by a local stand-in, e.g. for load tests that shouldn't
+ * use quota. Local stand-ins of the gRPC APIs are called over plaintext without credentials.
+ *
+ * Clients read the endpoints when they are created, so endpoints should be set on startup.
+ */
+public final class ApiEndpoints {
+  public static final String DEFAULT_YOUTUBE_ROOT_URL = "https://www.googleapis.com/";
+  public static final String DEFAULT_KNOWLEDGE_GRAPH_URL = "https://kgsearch.googleapis.com/v1/entities:search";
+
+  /** "host:port" of the gRPC APIs; {@code null} for Google's endpoint. */
+  private static volatile String languageEndpoint;
+  private static volatile String textToSpeechEndpoint;
+  private static volatile String translateEndpoint;
+  private static volatile boolean plaintext;
+  private static volatile String youTubeRootUrl = DEFAULT_YOUTUBE_ROOT_URL;
+  private static volatile String knowledgeGraphUrl = DEFAULT_KNOWLEDGE_GRAPH_URL;
+
+  private ApiEndpoints() {}
+
+  /** Sets the endpoints from the configuration; empty endpoints keep Google's. */
+  public static void configure(AppConfig config) {
+    languageEndpoint = emptyToNull(config.getLanguageEndpoint());
+    textToSpeechEndpoint = emptyToNull(config.getTextToSpeechEndpoint());
+    translateEndpoint = emptyToNull(config.getTranslateEndpoint());
+    plaintext = config.isApiEndpointsPlaintext();
+    String youTube = emptyToNull(config.getYouTubeRootUrl());
+    youTubeRootUrl = youTube == null ? DEFAULT_YOUTUBE_ROOT_URL : youTube;
+    String knowledgeGraph = emptyToNull(config.getKnowledgeGraphUrl());
+    knowledgeGraphUrl = knowledgeGraph == null ? DEFAULT_KNOWLEDGE_GRAPH_URL : knowledgeGraph;
+  }
+
+  static <S extends ClientSettings<S>, B extends ClientSettings.Builder<S, B>> B language(
+      B settings, InstantiatingGrpcChannelProvider.Builder channel) {
+    return withEndpoint(settings, channel, languageEndpoint);
+  }
+
+  static <S extends ClientSettings<S>, B extends ClientSettings.Builder<S, B>> B textToSpeech(
+      B settings, InstantiatingGrpcChannelProvider.Builder channel) {
+    return withEndpoint(settings, channel, textToSpeechEndpoint);
+  }
+
+  static <S extends ClientSettings<S>, B extends ClientSettings.Builder<S, B>> B translate(
+      B settings, InstantiatingGrpcChannelProvider.Builder channel) {
+    return withEndpoint(settings, channel, translateEndpoint);
+  }
+
+  static String getYouTubeRootUrl() {
+    return youTubeRootUrl;
+  }
+
+  static String getKnowledgeGraphUrl() {
+    return knowledgeGraphUrl;
+  }
+
+  /** Sets the channel of the client, pointed at the endpoint if there is one. */
+  private static <S extends ClientSettings<S>, B extends ClientSettings.Builder<S, B>> B withEndpoint(
+      B settings, InstantiatingGrpcChannelProvider.Builder channel, String endpoint) {
+    if (endpoint != null) {
+      settings.setEndpoint(endpoint);
+      channel.setEndpoint(endpoint);
+      if (plaintext) {
+        channel.setChannelConfigurator(channelBuilder -> channelBuilder.usePlaintext());
+        settings.setCredentialsProvider(NoCredentialsProvider.create());
+      }
+    }
+    return settings.setTransportChannelProvider(channel.build());
+  }
+
+  private static String emptyToNull(String value) {
+    return value == null || value.trim().isEmpty() ? null : value.trim();
+  }
+}
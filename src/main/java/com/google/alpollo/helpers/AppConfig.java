@@ -0,0 +1,246 @@
+package com.google.alpollo.helpers;
+
+import com.google.alpollo.database.AnalysisInfoStore;
+import com.google.alpollo.database.SearchCounterAggregator;
+import com.google.alpollo.database.TopSongsLeaderboard;
+
+/**
+ * Typed content of the configuration file. Fields missing from the file keep their defaults.
+ *
+ * Objects of this class are created only by {@link ConfigHelper} and never change,
+ * a reload of the file creates a new object.
+ */
+public final class AppConfig {
+  /** How often the configuration file is checked for changes by default. */
+  public static final int DEFAULT_RELOAD_INTERVAL_SECONDS = 30;
+
+  private String projectID;
+  private String apiKey;
+  private int configReloadIntervalSeconds = DEFAULT_RELOAD_INTERVAL_SECONDS;
+  /** Only read on startup, a change needs a restart; see {@link HttpTransports#setMaxConnections}. */
+  private int httpMaxConnections = HttpTransports.DEFAULT_MAX_CONNECTIONS;
+  private int httpConnectTimeoutMillis = HttpTransports.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+  private int httpReadTimeoutMillis = HttpTransports.DEFAULT_READ_TIMEOUT_MILLIS;
+  private int asyncRequestThreads = AsyncRequestExecutor.DEFAULT_THREADS;
+  private int asyncRequestQueueSize = AsyncRequestExecutor.DEFAULT_QUEUE_SIZE;
+  private int asyncRequestTimeoutSeconds = AsyncRequestExecutor.DEFAULT_TIMEOUT_SECONDS;
+  private int languageChannelPoolSize = AnalysisHelper.DEFAULT_CHANNEL_POOL_SIZE;
+  private int analysisCacheMaxBytes = AnalysisHelper.DEFAULT_CACHE_MAX_BYTES;
+  private int analysisCacheTtlMinutes = AnalysisHelper.DEFAULT_CACHE_TTL_MINUTES;
+  private int speechCacheMaxBytes = TextToSpeechService.DEFAULT_CACHE_MAX_BYTES;
+  private int speechCacheTtlMinutes = TextToSpeechService.DEFAULT_CACHE_TTL_MINUTES;
+  private int speechSynthesisThreads = TextToSpeechService.DEFAULT_SYNTHESIS_THREADS;
+  private double languageDetectionMinConfidence = DetectLanguageService.DEFAULT_MIN_CONFIDENCE;
+  private int counterFlushIntervalSeconds = SearchCounterAggregator.DEFAULT_FLUSH_INTERVAL_SECONDS;
+  /** Number of shards of a search counter. May only grow, searches in removed shards would be lost. */
+  private int counterShards = SearchCounterAggregator.DEFAULT_SHARD_COUNT;
+  private int topSongsReconcileIntervalSeconds = TopSongsLeaderboard.DEFAULT_RECONCILE_INTERVAL_SECONDS;
+  private int analysisStoreCapacity = AnalysisInfoStore.DEFAULT_CAPACITY;
+  private String analysisEvictionPolicy = AnalysisInfoStore.EvictionPolicy.LFU.name();
+  private int analysisAccessFlushIntervalSeconds = AnalysisInfoStore.DEFAULT_ACCESS_FLUSH_INTERVAL_SECONDS;
+  private int youTubeCacheMaxBytes = YouTubeService.DEFAULT_CACHE_MAX_BYTES;
+  private int youTubeCacheTtlMinutes = YouTubeService.DEFAULT_CACHE_TTL_MINUTES;
+  private int youTubeSearchThreads = YouTubeService.DEFAULT_SEARCH_THREADS;
+  private int lyricsCacheMaxBytes = LyricsService.DEFAULT_CACHE_MAX_BYTES;
+  private int lyricsCacheTtlMinutes = LyricsService.DEFAULT_CACHE_TTL_MINUTES;
+  private String lyricsProviderUrl = LyricsOvhProvider.DEFAULT_URL;
+  private int analysisPipelineThreads = AnalysisPipeline.DEFAULT_THREADS;
+  /** Endpoints of the Google APIs, empty for Google's; see {@link ApiEndpoints}. */
+  private String languageEndpoint = "";
+  private String textToSpeechEndpoint = "";
+  private String translateEndpoint = "";
+  private boolean apiEndpointsPlaintext;
+  private String youTubeRootUrl = "";
+  private String knowledgeGraphUrl = "";
+  private double traceSamplingProbability = AppTracing.DEFAULT_SAMPLING_PROBABILITY;
+  private String traceExporter = AppTracing.Exporter.NONE.name();
+
+  /** Creates the default configuration, Gson also uses it before reading the file. */
+  AppConfig() { }
+
+  /**
+   * Checks the values that would break the application.
+   * @throws IllegalArgumentException if a size, a timeout or an interval isn't positive
+   */
+  void validate() {
+    int[] positiveValues = {configReloadIntervalSeconds, httpMaxConnections, httpConnectTimeoutMillis,
+        httpReadTimeoutMillis, asyncRequestThreads, asyncRequestQueueSize, asyncRequestTimeoutSeconds,
+        languageChannelPoolSize, analysisCacheMaxBytes, analysisCacheTtlMinutes, speechCacheMaxBytes,
+        speechCacheTtlMinutes, speechSynthesisThreads, counterFlushIntervalSeconds, counterShards,
+        topSongsReconcileIntervalSeconds, analysisStoreCapacity, analysisAccessFlushIntervalSeconds,
+        youTubeCacheMaxBytes, youTubeCacheTtlMinutes, youTubeSearchThreads, lyricsCacheMaxBytes,
+        lyricsCacheTtlMinutes, analysisPipelineThreads};
+    for (int value : positiveValues) {
+      if (value < 1) {
+        throw new IllegalArgumentException("Sizes, timeouts and intervals must be positive.");
+      }
+    }
+    if (languageDetectionMinConfidence < 0 || languageDetectionMinConfidence > 1) {
+      throw new IllegalArgumentException("Language detection confidence must be from 0.0 to 1.0.");
+    }
+    if (traceSamplingProbability < 0 || traceSamplingProbability > 1) {
+      throw new IllegalArgumentException("Trace sampling probability must be from 0.0 to 1.0.");
+    }
+    if (lyricsProviderUrl == null || lyricsProviderUrl.isEmpty()) {
+      throw new IllegalArgumentException("Lyrics provider URL must be set.");
+    }
+  }
+
+  public String getProjectID() {
+    return projectID;
+  }
+
+  public String getApiKey() {
+    return apiKey;
+  }
+
+  public int getConfigReloadIntervalSeconds() {
+    return configReloadIntervalSeconds;
+  }
+
+  public int getHttpMaxConnections() {
+    return httpMaxConnections;
+  }
+
+  public int getHttpConnectTimeoutMillis() {
+    return httpConnectTimeoutMillis;
+  }
+
+  public int getHttpReadTimeoutMillis() {
+    return httpReadTimeoutMillis;
+  }
+
+  public int getAsyncRequestThreads() {
+    return asyncRequestThreads;
+  }
+
+  public int getAsyncRequestQueueSize() {
+    return asyncRequestQueueSize;
+  }
+
+  public int getAsyncRequestTimeoutSeconds() {
+    return asyncRequestTimeoutSeconds;
+  }
+
+  public int getLanguageChannelPoolSize() {
+    return languageChannelPoolSize;
+  }
+
+  public int getAnalysisCacheMaxBytes() {
+    return analysisCacheMaxBytes;
+  }
+
+  public int getAnalysisCacheTtlMinutes() {
+    return analysisCacheTtlMinutes;
+  }
+
+  public int getSpeechCacheMaxBytes() {
+    return speechCacheMaxBytes;
+  }
+
+  public int getSpeechCacheTtlMinutes() {
+    return speechCacheTtlMinutes;
+  }
+
+  public int getSpeechSynthesisThreads() {
+    return speechSynthesisThreads;
+  }
+
+  public double getLanguageDetectionMinConfidence() {
+    return languageDetectionMinConfidence;
+  }
+
+  public int getCounterFlushIntervalSeconds() {
+    return counterFlushIntervalSeconds;
+  }
+
+  public int getCounterShards() {
+    return counterShards;
+  }
+
+  public int getTopSongsReconcileIntervalSeconds() {
+    return topSongsReconcileIntervalSeconds;
+  }
+
+  public int getAnalysisStoreCapacity() {
+    return analysisStoreCapacity;
+  }
+
+  /** Returns the eviction policy; LFU if the file names an unknown one. */
+  public AnalysisInfoStore.EvictionPolicy getAnalysisEvictionPolicy() {
+    try {
+      return AnalysisInfoStore.EvictionPolicy.valueOf(analysisEvictionPolicy);
+    } catch (IllegalArgumentException | NullPointerException e) {
+      return AnalysisInfoStore.EvictionPolicy.LFU;
+    }
+  }
+
+  public int getAnalysisAccessFlushIntervalSeconds() {
+    return analysisAccessFlushIntervalSeconds;
+  }
+
+  public int getYouTubeCacheMaxBytes() {
+    return youTubeCacheMaxBytes;
+  }
+
+  public int getYouTubeCacheTtlMinutes() {
+    return youTubeCacheTtlMinutes;
+  }
+
+  public int getYouTubeSearchThreads() {
+    return youTubeSearchThreads;
+  }
+
+  public int getLyricsCacheMaxBytes() {
+    return lyricsCacheMaxBytes;
+  }
+
+  public int getLyricsCacheTtlMinutes() {
+    return lyricsCacheTtlMinutes;
+  }
+
+  public String getLyricsProviderUrl() {
+    return lyricsProviderUrl;
+  }
+
+  public int getAnalysisPipelineThreads() {
+    return analysisPipelineThreads;
+  }
+
+  public String getLanguageEndpoint() {
+    return languageEndpoint;
+  }
+
+  public String getTextToSpeechEndpoint() {
+    return textToSpeechEndpoint;
+  }
+
+  public String getTranslateEndpoint() {
+    return translateEndpoint;
+  }
+
+  public boolean isApiEndpointsPlaintext() {
+    return apiEndpointsPlaintext;
+  }
+
+  public String getYouTubeRootUrl() {
+    return youTubeRootUrl;
+  }
+
+  public String getKnowledgeGraphUrl() {
+    return knowledgeGraphUrl;
+  }
+
+  public double getTraceSamplingProbability() {
+    return traceSamplingProbability;
+  }
+
+  /** Returns the exporter of the sampled spans; NONE if the file names an unknown one. */
+  public AppTracing.Exporter getTraceExporter() {
+    try {
+      return AppTracing.Exporter.valueOf(traceExporter);
+    } catch (IllegalArgumentException | NullPointerException e) {
+      return AppTracing.Exporter.NONE;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.google.alpollo.helpers;
+
+import com.google.alpollo.database.AnalysisInfoStore;
+import com.google.alpollo.database.SearchCounterAggregator;
+import com.google.alpollo.database.SongDataBase;
+import java.util.Objects;
+import java.util.function.Function;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Configures the shared resources of the application on startup
+ * and releases them when the application stops.
+ */
+@WebListener
+public class AppContextListener implements ServletContextListener {
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    ServletContext servletContext = event.getServletContext();
+    AppConfig config = ConfigHelper.getConfig(servletContext);
+
+    // These settings only apply to resources created at startup.
+    HttpTransports.setMaxConnections(config.getHttpMaxConnections());
+    AnalysisHelper.setChannelPoolSize(config.getLanguageChannelPoolSize());
+    ApiEndpoints.configure(config);
+    SearchCounterAggregator.configure(config.getCounterFlushIntervalSeconds(), config.getCounterShards());
+    AnalysisInfoStore.configure(config.getAnalysisAccessFlushIntervalSeconds(), config.getAnalysisStoreCapacity(),
+        config.getAnalysisEvictionPolicy());
+    AutocompleteService.setSongLoader(SongDataBase::catalogueSongs);
+
+    applyConfig(null, config);
+    ConfigHelper.addReloadListener(AppContextListener::applyConfig);
+    ConfigHelper.startReloading(servletContext);
+    // After the helpers above created their caches and coalescers, so they all are measured.
+    AppMetrics.register();
+  }
+
+  /**
+   * Applies the settings that can change while the application runs. After a reload only
+   * the changed settings are applied, because applying a setting drops a cache or replaces a pool.
+   *
+   * @param previous the configuration before the reload; {@code null} on startup
+   */
+  private static void applyConfig(AppConfig previous, AppConfig config) {
+    if (changed(previous, config, AppConfig::getHttpConnectTimeoutMillis, AppConfig::getHttpReadTimeoutMillis)) {
+      HttpTransports.configureTimeouts(config.getHttpConnectTimeoutMillis(), config.getHttpReadTimeoutMillis());
+    }
+    if (changed(previous, config, AppConfig::getAsyncRequestThreads, AppConfig::getAsyncRequestQueueSize,
+        AppConfig::getAsyncRequestTimeoutSeconds)) {
+      AsyncRequestExecutor.configure(config.getAsyncRequestThreads(), config.getAsyncRequestQueueSize(),
+          config.getAsyncRequestTimeoutSeconds());
+    }
+    if (changed(previous, config, AppConfig::getTopSongsReconcileIntervalSeconds)) {
+      SongDataBase.setTopSongsReconcileInterval(config.getTopSongsReconcileIntervalSeconds());
+    }
+    if (changed(previous, config, AppConfig::getAnalysisCacheMaxBytes, AppConfig::getAnalysisCacheTtlMinutes)) {
+      AnalysisHelper.configureCache(config.getAnalysisCacheMaxBytes(), config.getAnalysisCacheTtlMinutes());
+    }
+    if (changed(previous, config, AppConfig::getSpeechCacheMaxBytes, AppConfig::getSpeechCacheTtlMinutes)) {
+      TextToSpeechService.configureCache(config.getSpeechCacheMaxBytes(), config.getSpeechCacheTtlMinutes());
+    }
+    if (changed(previous, config, AppConfig::getSpeechSynthesisThreads)) {
+      TextToSpeechService.configureSynthesis(config.getSpeechSynthesisThreads());
+    }
+    if (changed(previous, config, AppConfig::getLanguageDetectionMinConfidence)) {
+      DetectLanguageService.setMinConfidence(config.getLanguageDetectionMinConfidence());
+    }
+    if (changed(previous, config, AppConfig::getYouTubeCacheMaxBytes, AppConfig::getYouTubeCacheTtlMinutes)) {
+      YouTubeService.configureCache(config.getYouTubeCacheMaxBytes(), config.getYouTubeCacheTtlMinutes());
+    }
+    if (changed(previous, config, AppConfig::getYouTubeSearchThreads)) {
+      YouTubeService.configureSearch(config.getYouTubeSearchThreads());
+    }
+    if (changed(previous, config, AppConfig::getLyricsCacheMaxBytes, AppConfig::getLyricsCacheTtlMinutes)) {
+      LyricsService.configureCache(config.getLyricsCacheMaxBytes(), config.getLyricsCacheTtlMinutes());
+    }
+    if (changed(previous, config, AppConfig::getLyricsProviderUrl)) {
+      LyricsService.setProvider(new LyricsOvhProvider(config.getLyricsProviderUrl()));
+    }
+    if (changed(previous, config, AppConfig::getAnalysisPipelineThreads)) {
+      AnalysisPipeline.configure(config.getAnalysisPipelineThreads());
+    }
+    if (changed(previous, config, AppConfig::getTraceSamplingProbability, AppConfig::getTraceExporter)) {
+      AppTracing.configure(config.getTraceSamplingProbability(), config.getTraceExporter());
+    }
+  }
+
+  @SafeVarargs
+  private static boolean changed(AppConfig previous, AppConfig config, Function<AppConfig, Object>... settings) {
+    if (previous == null) {
+      return true;
+    }
+    for (Function<AppConfig, Object> setting : settings) {
+      if (!Objects.equals(setting.apply(previous), setting.apply(config))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+    ConfigHelper.stopReloading();
+    AsyncRequestExecutor.shutdown();
+    AnalysisPipeline.shutdown();
+    YouTubeService.shutdown();
+    AnalysisInfoStore.stop();
+    SearchCounterAggregator.stop();
+    TextToSpeechService.shutdown();
+    SharedClient.closeAll();
+  }
+}
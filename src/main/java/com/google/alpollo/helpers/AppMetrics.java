@@ -0,0 +1,240 @@
+package com.google.alpollo.helpers;
+
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.DerivedLongGauge;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import io.opencensus.metrics.Metrics;
+import io.opencensus.metrics.export.Metric;
+import io.opencensus.metrics.export.MetricProducer;
+import io.opencensus.stats.Aggregation;
+import io.opencensus.stats.BucketBoundaries;
+import io.opencensus.stats.Measure.MeasureDouble;
+import io.opencensus.stats.Stats;
+import io.opencensus.stats.StatsRecorder;
+import io.opencensus.stats.View;
+import io.opencensus.stats.ViewManager;
+import io.opencensus.tags.TagKey;
+import io.opencensus.tags.TagValue;
+import io.opencensus.tags.Tagger;
+import io.opencensus.tags.Tags;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Records the metrics of the application with OpenCensus: latency histograms of the servlets,
+ * of the calls to remote APIs and of the Datastore operations, the hits, loads and collapsed
+ * misses of the caches, the calls saved by {@link RequestCoalescer}s and the use of the thread pools.
+ *
+ * Without an OpenCensus implementation on the classpath nothing is recorded.
+ */
+public final class AppMetrics {
+  /** Upper bounds of the latency buckets in milliseconds. */
+  private static final List<Double> LATENCY_BUCKETS_MILLIS = Collections.unmodifiableList(Arrays.asList(
+      1.0, 2.0, 5.0, 10.0, 25.0, 50.0, 100.0, 250.0, 500.0, 1000.0, 2500.0, 5000.0, 10000.0, 30000.0));
+  private static final String OK = "ok";
+  private static final String ERROR = "error";
+
+  private static final TagKey SERVLET = TagKey.create("servlet");
+  private static final TagKey STATUS = TagKey.create("status");
+  private static final TagKey API = TagKey.create("api");
+  private static final TagKey OPERATION = TagKey.create("operation");
+  private static final TagKey RESULT = TagKey.create("result");
+
+  private static final MeasureDouble SERVLET_LATENCY = MeasureDouble.create(
+      "alpollo/servlet_latency", "Time from receiving a request to completing its response", "ms");
+  private static final MeasureDouble API_LATENCY = MeasureDouble.create(
+      "alpollo/api_latency", "Time of a call to a remote API", "ms");
+  private static final MeasureDouble DATASTORE_LATENCY = MeasureDouble.create(
+      "alpollo/datastore_latency", "Time of a Datastore operation", "ms");
+
+  private static final LabelKey CACHE = LabelKey.create("cache", "Name of the cache");
+  private static final LabelKey COALESCER = LabelKey.create("api", "Name of the API the calls go to");
+  private static final LabelKey POOL = LabelKey.create("pool", "Name of the thread pool");
+
+  private static final Tagger tagger = Tags.getTagger();
+  private static final StatsRecorder statsRecorder = Stats.getStatsRecorder();
+  private static boolean registered;
+
+  /** Makes the measured call. */
+  public interface Measured<T, E extends Exception> {
+    T call() throws E;
+  }
+
+  private AppMetrics() {}
+
+  /**
+   * Registers the views of the latencies and the gauges of the caches, coalescers and pools.
+   * Later calls do nothing.
+   */
+  public static synchronized void register() {
+    if (registered) {
+      return;
+    }
+    registered = true;
+
+    ViewManager viewManager = Stats.getViewManager();
+    viewManager.registerView(latencyView(SERVLET_LATENCY, SERVLET, STATUS));
+    viewManager.registerView(latencyView(API_LATENCY, API, RESULT));
+    viewManager.registerView(latencyView(DATASTORE_LATENCY, OPERATION, RESULT));
+
+    MetricRegistry registry = Metrics.getMetricRegistry();
+    DerivedLongCumulative cacheHits = registry.addDerivedLongCumulative("alpollo/cache_hits",
+        options("Lookups that found the value in the cache", CACHE));
+    DerivedLongCumulative cacheMisses = registry.addDerivedLongCumulative("alpollo/cache_misses",
+        options("Lookups that didn't find the value in the cache", CACHE));
+    DerivedLongCumulative cacheLoads = registry.addDerivedLongCumulative("alpollo/cache_loads",
+        options("Values the cache computed", CACHE));
+    DerivedLongCumulative cacheCollapsed = registry.addDerivedLongCumulative("alpollo/cache_collapsed",
+        options("Misses that waited for a concurrent load of the value instead of computing it", CACHE));
+    for (TextKeyedCache<?> cache : TextKeyedCache.getAll()) {
+      List<LabelValue> labels = labels(cache.getName());
+      cacheHits.createTimeSeries(labels, cache, TextKeyedCache::getHitCount);
+      cacheMisses.createTimeSeries(labels, cache, TextKeyedCache::getMissCount);
+      cacheLoads.createTimeSeries(labels, cache, TextKeyedCache::getLoadCount);
+      cacheCollapsed.createTimeSeries(labels, cache, TextKeyedCache::getCollapsedCount);
+    }
+    List<LabelValue> lyricsLabels = labels("lyrics");
+    cacheHits.createTimeSeries(lyricsLabels, LyricsService.class, service -> LyricsService.getCacheHitCount());
+    cacheMisses.createTimeSeries(lyricsLabels, LyricsService.class, service -> LyricsService.getCacheMissCount());
+
+    DerivedLongCumulative coalescerCalls = registry.addDerivedLongCumulative("alpollo/coalescer_calls",
+        options("Calls made to a coalescer", COALESCER));
+    DerivedLongCumulative coalescerCollapsed = registry.addDerivedLongCumulative("alpollo/coalescer_collapsed",
+        options("Calls that waited for an identical call instead of calling the API", COALESCER));
+    for (RequestCoalescer<?, ?> coalescer : RequestCoalescer.getAll()) {
+      List<LabelValue> labels = labels(coalescer.getName());
+      coalescerCalls.createTimeSeries(labels, coalescer, RequestCoalescer::getCallCount);
+      coalescerCollapsed.createTimeSeries(labels, coalescer, RequestCoalescer::getCollapsedCount);
+    }
+
+    DerivedLongGauge activeThreads = registry.addDerivedLongGauge("alpollo/pool_active_threads",
+        options("Threads of the pool that are running a task", POOL));
+    DerivedLongGauge maxThreads = registry.addDerivedLongGauge("alpollo/pool_max_threads",
+        options("Threads the pool may run", POOL));
+    DerivedLongGauge queuedTasks = registry.addDerivedLongGauge("alpollo/pool_queued_tasks",
+        options("Tasks waiting for a thread of the pool", POOL));
+    Gauges pools = new Gauges(activeThreads, maxThreads, queuedTasks);
+    pools.registerRequestThreads("asyncRequests", AsyncRequestExecutor.class, AsyncRequestExecutor::getExecutor);
+    pools.registerRequestThreads("analysisPipeline", AnalysisPipeline.class, AnalysisPipeline::getExecutor);
+    pools.registerRequestThreads("youTubeSearch", YouTubeService.class, YouTubeService::getExecutor);
+    pools.register("speechSynthesis", TextToSpeechService.class, TextToSpeechService::getExecutor);
+  }
+
+  /** Returns the current values of all metrics, of this application and of the libraries. */
+  public static List<Metric> getMetrics() {
+    List<Metric> metrics = new ArrayList<>();
+    for (MetricProducer producer : Metrics.getExportComponent().getMetricProducerManager().getAllMetricProducer()) {
+      metrics.addAll(producer.getMetrics());
+    }
+    return metrics;
+  }
+
+  /** Records the latency of a request to a servlet. */
+  public static void recordServlet(String servlet, int status, long latencyNanos) {
+    record(SERVLET_LATENCY, SERVLET, servlet, STATUS, String.valueOf(status), latencyNanos);
+  }
+
+  /**
+   * Makes a call to a remote API and records its latency, with its result: "ok" or "error".
+   * The call is also traced in a span named "api " and the name of the call.
+   */
+  public static <T, E extends Exception> T measureApiCall(String api, Measured<T, E> call) throws E {
+    return AppTracing.trace("api " + api, () -> measure(API_LATENCY, API, api, call));
+  }
+
+  /**
+   * Runs a Datastore operation and records its latency, with its result: "ok" or "error".
+   * The operation is also traced in a span named "datastore " and the name of the operation.
+   */
+  public static <T, E extends Exception> T measureDatastore(String operation, Measured<T, E> call) throws E {
+    return AppTracing.trace("datastore " + operation, () -> measure(DATASTORE_LATENCY, OPERATION, operation, call));
+  }
+
+  private static <T, E extends Exception> T measure(MeasureDouble measure, TagKey key, String value,
+      Measured<T, E> call) throws E {
+    long start = System.nanoTime();
+    String result = ERROR;
+    try {
+      T callResult = call.call();
+      result = OK;
+      return callResult;
+    } finally {
+      record(measure, key, value, RESULT, result, System.nanoTime() - start);
+    }
+  }
+
+  private static void record(MeasureDouble measure, TagKey firstKey, String firstValue,
+      TagKey secondKey, String secondValue, long latencyNanos) {
+    statsRecorder.newMeasureMap()
+        .put(measure, latencyNanos / 1_000_000.0)
+        .record(tagger.emptyBuilder()
+            .putLocal(firstKey, TagValue.create(firstValue))
+            .putLocal(secondKey, TagValue.create(secondValue))
+            .build());
+  }
+
+  private static View latencyView(MeasureDouble measure, TagKey... columns) {
+    return View.create(View.Name.create(measure.getName()), measure.getDescription(), measure,
+        Aggregation.Distribution.create(BucketBoundaries.create(LATENCY_BUCKETS_MILLIS)), Arrays.asList(columns));
+  }
+
+  private static MetricOptions options(String description, LabelKey labelKey) {
+    return MetricOptions.builder()
+        .setDescription(description)
+        .setUnit("1")
+        .setLabelKeys(Collections.singletonList(labelKey))
+        .build();
+  }
+
+  private static List<LabelValue> labels(String value) {
+    return Collections.singletonList(LabelValue.create(value));
+  }
+
+  /** Gauges of the thread pools and of the executors of request threads. */
+  private static final class Gauges {
+    private final DerivedLongGauge activeThreads;
+    private final DerivedLongGauge maxThreads;
+    private final DerivedLongGauge queuedTasks;
+
+    private Gauges(DerivedLongGauge activeThreads, DerivedLongGauge maxThreads, DerivedLongGauge queuedTasks) {
+      this.activeThreads = activeThreads;
+      this.maxThreads = maxThreads;
+      this.queuedTasks = queuedTasks;
+    }
+
+    /**
+     * Adds the pool of a helper. The pools are replaced when they are configured, so the gauges
+     * read the current pool every time. OpenCensus keeps a weak reference to the measured object,
+     * so the helper class is measured rather than the pool.
+     */
+    private void register(String name, Class<?> owner, Supplier<ThreadPoolExecutor> pool) {
+      register(name, owner, () -> pool.get().getActiveCount(), () -> pool.get().getMaximumPoolSize(),
+          () -> pool.get().getQueue().size());
+    }
+
+    private void registerRequestThreads(String name, Class<?> owner, Supplier<RequestThreadExecutor> executor) {
+      register(name, owner, () -> executor.get().getActiveCount(), () -> executor.get().getMaximumPoolSize(),
+          () -> executor.get().getQueuedCount());
+    }
+
+    private void register(String name, Class<?> owner, IntSupplier active, IntSupplier max, IntSupplier queued) {
+      List<LabelValue> labels = labels(name);
+      activeThreads.createTimeSeries(labels, owner, gauge(active));
+      maxThreads.createTimeSeries(labels, owner, gauge(max));
+      queuedTasks.createTimeSeries(labels, owner, gauge(queued));
+    }
+
+    private static ToLongFunction<Class<?>> gauge(IntSupplier value) {
+      return owner -> value.getAsInt();
+    }
+  }
+}
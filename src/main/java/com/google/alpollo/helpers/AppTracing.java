@@ -0,0 +1,111 @@
+package com.google.alpollo.helpers;
+
+import io.opencensus.common.Scope;
+import io.opencensus.trace.AttributeValue;
+import io.opencensus.trace.Span;
+import io.opencensus.trace.Status;
+import io.opencensus.trace.Tracer;
+import io.opencensus.trace.Tracing;
+import io.opencensus.trace.config.TraceConfig;
+import io.opencensus.trace.export.SpanExporter;
+import io.opencensus.trace.samplers.Samplers;
+
+/**
+ * Traces requests with OpenCensus: the servlets open a span, the helpers open child spans for their
+ * steps, and every remote API call and Datastore operation gets its own span (see {@link AppMetrics}).
+ * The current span is carried by the gRPC {@code Context}, the pools of the application pass it
+ * to their threads (see {@link ContextPropagatingThreadPool}).
+ *
+ * Sampled spans are sent to one exporter, chosen in the configuration. Without an OpenCensus
+ * implementation on the classpath nothing is traced.
+ */
+public final class AppTracing {
+  /** Which requests are traced by default; every traced request costs some memory and time. */
+  public static final double DEFAULT_SAMPLING_PROBABILITY = 0.01;
+  /** How many spans the in-memory exporter keeps by default. */
+  public static final int DEFAULT_MEMORY_EXPORTER_CAPACITY = 1000;
+  private static final String HANDLER_NAME = AppTracing.class.getName();
+
+  /** Where the sampled spans go. */
+  public enum Exporter {
+    /** Spans are dropped. */
+    NONE,
+    /** Every span is written to the log, see {@link LogSpanExporter}. */
+    LOG,
+    /** The latest spans are kept in memory, see {@link InMemorySpanExporter}. */
+    MEMORY
+  }
+
+  private static final Tracer tracer = Tracing.getTracer();
+  private static final InMemorySpanExporter memoryExporter =
+      new InMemorySpanExporter(DEFAULT_MEMORY_EXPORTER_CAPACITY);
+  private static SpanExporter.Handler handler;
+
+  /** Runs a traced step. */
+  public interface Traced<T, E extends Exception> {
+    T call() throws E;
+  }
+
+  private AppTracing() {}
+
+  /** Sets which requests are traced and where their spans go. */
+  public static synchronized void configure(double samplingProbability, Exporter exporter) {
+    TraceConfig traceConfig = Tracing.getTraceConfig();
+    traceConfig.updateActiveTraceParams(traceConfig.getActiveTraceParams().toBuilder()
+        .setSampler(Samplers.probabilitySampler(samplingProbability))
+        .build());
+    setHandler(exporter == Exporter.LOG ? new LogSpanExporter()
+        : exporter == Exporter.MEMORY ? memoryExporter
+        : null);
+  }
+
+  /** Replaces the exporter of the sampled spans; {@code null} drops them. */
+  public static synchronized void setHandler(SpanExporter.Handler newHandler) {
+    SpanExporter spanExporter = Tracing.getExportComponent().getSpanExporter();
+    if (handler != null) {
+      spanExporter.unregisterHandler(HANDLER_NAME);
+    }
+    handler = newHandler;
+    if (newHandler != null) {
+      spanExporter.registerHandler(HANDLER_NAME, newHandler);
+    }
+  }
+
+  /** Returns the exporter that keeps the latest spans in memory, when it is configured. */
+  public static InMemorySpanExporter getMemoryExporter() {
+    return memoryExporter;
+  }
+
+  /** Starts a span that is a child of the current one, the caller must end it. */
+  public static Span startSpan(String name) {
+    return tracer.spanBuilder(name).startSpan();
+  }
+
+  /** Makes the span current until the returned scope is closed. */
+  public static Scope withSpan(Span span) {
+    return tracer.withSpan(span);
+  }
+
+  /** Runs the step in a child span of the current one; the span records whether the step failed. */
+  public static <T, E extends Exception> T trace(String name, Traced<T, E> step) throws E {
+    Span span = startSpan(name);
+    try (Scope scope = tracer.withSpan(span)) {
+      return step.call();
+    } catch (Exception | Error e) {
+      span.setStatus(Status.UNKNOWN.withDescription(e.getClass().getSimpleName()));
+      throw e;
+    } finally {
+      span.end();
+    }
+  }
+
+  /** Adds an attribute to the current span, e.g. the size of the text of a call. */
+  public static void putAttribute(String key, long value) {
+    tracer.getCurrentSpan().putAttribute(key, AttributeValue.longAttributeValue(value));
+  }
+
+  /** Adds an attribute to the current span, e.g. whether a cache had the result. */
+  public static void putAttribute(String key, boolean value) {
+    tracer.getCurrentSpan().putAttribute(key, AttributeValue.booleanAttributeValue(value));
+  }
+}
@@ -0,0 +1,164 @@
+package com.google.alpollo.helpers;
+
+import com.googlecode.objectify.ObjectifyService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Handles requests that wait for remote APIs outside of the container threads.
+ *
+ * The request is put in asynchronous mode and handled by a bounded {@link RequestThreadExecutor},
+ * so the container thread is released while the API call is pending. The handler runs on a thread
+ * of the request, so it may use the database and the user of the request. When the executor
+ * and its queue are full the client gets 503, and when the handler takes longer than the timeout
+ * the client gets 504.
+ */
+public final class AsyncRequestExecutor {
+  /** How many requests are handled at the same time by default. */
+  public static final int DEFAULT_THREADS = 16;
+  /** How many requests may wait for a free thread by default. */
+  public static final int DEFAULT_QUEUE_SIZE = 256;
+  /** How long a request may take by default, including the time in the queue. */
+  public static final int DEFAULT_TIMEOUT_SECONDS = 30;
+
+  /** Handles the request, like the body of a doGet or doPost method. */
+  public interface Handler {
+    void handle(HttpServletRequest request, HttpServletResponse response) throws IOException;
+  }
+
+  private static volatile RequestThreadExecutor executor = createExecutor(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+  private static volatile long timeoutMillis = TimeUnit.SECONDS.toMillis(DEFAULT_TIMEOUT_SECONDS);
+
+  private AsyncRequestExecutor() {}
+
+  /** Sets the size of the pool, its queue and the timeout of a request. */
+  public static void configure(int threads, int queueSize, int timeoutSeconds) {
+    RequestThreadExecutor previousExecutor = executor;
+    executor = createExecutor(threads, queueSize);
+    timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+    previousExecutor.shutdown();
+  }
+
+  /** Returns the executor that handles the requests, for metrics. */
+  static RequestThreadExecutor getExecutor() {
+    return executor;
+  }
+
+  /** Stops the executor, requests that are still running are interrupted. */
+  public static void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private static RequestThreadExecutor createExecutor(int threads, int queueSize) {
+    return new RequestThreadExecutor("async-request", threads, queueSize, false);
+  }
+
+  /**
+   * Handles the request on a thread of the executor. If the request doesn't support asynchronous mode,
+   * e.g. because a filter in the chain doesn't, it is handled on the current thread.
+   */
+  public static void execute(HttpServletRequest request, HttpServletResponse response, Handler handler)
+      throws IOException {
+    if (!request.isAsyncSupported()) {
+      handler.handle(request, response);
+      return;
+    }
+
+    AsyncContext asyncContext = request.startAsync(request, response);
+    asyncContext.setTimeout(timeoutMillis);
+    // Set by whoever finishes the response first: the handler, the timeout or an error.
+    AtomicBoolean finished = new AtomicBoolean();
+    AtomicReference<Future<?>> task = new AtomicReference<>();
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onTimeout(AsyncEvent event) {
+        finish(HttpServletResponse.SC_GATEWAY_TIMEOUT, "Request timed out.");
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+        finish(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, String.valueOf(event.getThrowable()));
+      }
+
+      @Override
+      public void onComplete(AsyncEvent event) {}
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {}
+
+      private void finish(int status, String message) {
+        if (finished.compareAndSet(false, true)) {
+          Future<?> runningTask = task.get();
+          if (runningTask != null) {
+            runningTask.cancel(true);
+          }
+          sendError(response, status, message);
+          asyncContext.complete();
+        }
+      }
+    });
+
+    try {
+      task.set(executor.submit(() -> {
+        try {
+          // The thread is outside of ObjectifyFilter, Objectify needs its own context there.
+          ObjectifyService.run(() -> {
+            try {
+              handler.handle(request, response);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+            return null;
+          });
+        } catch (RuntimeException e) {
+          Throwable cause = e instanceof UncheckedIOException ? e.getCause() : e;
+          if (!finished.get()) {
+            sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, cause.getMessage());
+          }
+        } finally {
+          if (finished.compareAndSet(false, true)) {
+            // Filters that buffer the response send it when it is flushed.
+            flushBuffer(response);
+            asyncContext.complete();
+          }
+        }
+      }));
+    } catch (RejectedExecutionException e) {
+      if (finished.compareAndSet(false, true)) {
+        sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server is busy, try again later.");
+        asyncContext.complete();
+      }
+    }
+  }
+
+  private static void flushBuffer(HttpServletResponse response) {
+    try {
+      response.flushBuffer();
+    } catch (IOException e) {
+      // The client is gone, the response can't be sent anyway.
+    }
+  }
+
+  /** Sends the error if nothing was sent yet; otherwise the client sees a truncated response. */
+  private static void sendError(HttpServletResponse response, int status, String message) {
+    if (response.isCommitted()) {
+      return;
+    }
+    try {
+      response.reset();
+      response.sendError(status, message);
+    } catch (IOException | IllegalStateException e) {
+      // The client is gone, there is no one to tell about the error.
+    }
+  }
+}
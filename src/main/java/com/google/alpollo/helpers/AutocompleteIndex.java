@@ -0,0 +1,137 @@
+package com.google.alpollo.helpers;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory index of names, e.g. artists or songs, that answers autocomplete queries by prefix.
+ *
+ * Names are kept in a sorted map by their normalized form, so all names starting with a prefix
+ * are a contiguous range of the map. Every name has a rank, e.g. its position among the most
+ * searched songs, and the matching names with the best ranks are returned.
+ *
+ * The index also remembers the results of remote searches, but only answers the same query with
+ * them: the remote search matches words anywhere in a name and orders the names by relevance,
+ * so its results for one query say nothing about the names matching another one.
+ */
+public final class AutocompleteIndex {
+  /** How many remote results are remembered by default. */
+  public static final int DEFAULT_MAX_REMEMBERED_QUERIES = 10_000;
+  /** How long remote results are remembered by default. */
+  public static final int DEFAULT_QUERY_TTL_MINUTES = 24 * 60;
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  /** Best ranks first, names with equal ranks in alphabetical order. */
+  private static final Comparator<IndexedName> BY_RANK =
+      Comparator.comparingInt((IndexedName indexedName) -> indexedName.rank).thenComparing(indexedName -> indexedName.key);
+
+  /** A name with its normalized form and its rank. */
+  private static final class IndexedName {
+    private final String key;
+    private final String name;
+    private final int rank;
+
+    private IndexedName(String key, String name, int rank) {
+      this.key = key;
+      this.name = name;
+      this.rank = rank;
+    }
+  }
+
+  private final int maxNames;
+  /** Names by their normalized form. */
+  private final ConcurrentSkipListMap<String, IndexedName> names = new ConcurrentSkipListMap<>();
+  /** Number of names, because the size of the map is computed by counting them. */
+  private final AtomicInteger nameCount = new AtomicInteger();
+  /** Results of remote searches by the normalized query. */
+  private final Cache<String, List<String>> remoteResults = CacheBuilder.newBuilder()
+      .maximumSize(DEFAULT_MAX_REMEMBERED_QUERIES)
+      .expireAfterWrite(DEFAULT_QUERY_TTL_MINUTES, TimeUnit.MINUTES)
+      .build();
+
+  /** @param maxNames how many names the index may keep, later names are ignored */
+  public AutocompleteIndex(int maxNames) {
+    this.maxNames = maxNames;
+  }
+
+  /**
+   * Adds the name to the index. A name that is already in the index keeps its rank.
+   * @param rank smaller ranks are suggested first
+   */
+  public void add(String name, int rank) {
+    if (name == null || nameCount.get() >= maxNames) {
+      return;
+    }
+    String key = normalize(name);
+    if (key.isEmpty()) {
+      return;
+    }
+    IndexedName added = new IndexedName(key, name, rank);
+    // The map may call the function again when another thread changed the name meanwhile.
+    boolean[] inserted = {false};
+    names.compute(key, (unused, current) -> {
+      inserted[0] = current == null;
+      return current == null || added.rank < current.rank ? added : current;
+    });
+    if (inserted[0]) {
+      nameCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Returns up to {@code limit} names for the query without a remote search: the results of
+   * the same remote search, or the best ranked names starting with the query.
+   * @return the names; {@code null} if fewer names match and a remote search is needed.
+   */
+  public List<String> lookup(String query, int limit) {
+    String prefix = normalize(query);
+    if (prefix.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    List<String> rememberedResults = remoteResults.getIfPresent(prefix);
+    if (rememberedResults != null) {
+      return rememberedResults;
+    }
+
+    // The worst of the best names found so far is at the head.
+    PriorityQueue<IndexedName> best = new PriorityQueue<>(limit + 1, BY_RANK.reversed());
+    for (IndexedName indexedName : names.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+      best.add(indexedName);
+      if (best.size() > limit) {
+        best.poll();
+      }
+    }
+    if (best.size() < limit) {
+      return null;
+    }
+
+    List<IndexedName> ordered = new ArrayList<>(best);
+    ordered.sort(BY_RANK);
+    List<String> results = new ArrayList<>(limit);
+    for (IndexedName indexedName : ordered) {
+      results.add(indexedName.name);
+    }
+    return results;
+  }
+
+  /** Remembers the results of a remote search for the query. */
+  public void addRemoteResults(String query, List<String> results) {
+    remoteResults.put(normalize(query), ImmutableList.copyOf(results));
+  }
+
+  /** Makes queries with different case and spacing equal. */
+  public static String normalize(String text) {
+    return text == null ? "" : WHITESPACE.matcher(text.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+  }
+}
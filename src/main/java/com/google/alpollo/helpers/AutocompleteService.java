@@ -0,0 +1,182 @@
+package com.google.alpollo.helpers;
+
+import com.google.alpollo.model.Song;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpResponse;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.GsonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.jayway.jsonpath.spi.mapper.GsonMappingProvider;
+import com.jayway.jsonpath.spi.mapper.MappingProvider;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Suggests artists and songs for a search string.
+ *
+ * Suggestions come from an {@link AutocompleteIndex} of the artists and songs users searched for
+ * the most, by prefix. The Knowledge Graph Search API is called only when not enough of those names
+ * start with the search string. Its results are remembered, but only answer the same search string
+ * again; they aren't added to the names.
+ *
+ * The songs are loaded from the database by the first request of the instance, normally
+ * the warmup request, so the load can use the database.
+ */
+public final class AutocompleteService {
+  /** How many suggestions are returned. */
+  public static final int LIMIT = 10;
+  /** How many names of each type are kept in memory. */
+  private static final int MAX_INDEXED_NAMES = 200_000;
+  /** How long the songs aren't loaded again after the database failed to load them. */
+  private static final long SEED_RETRY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  /** What the user searches for, with the Knowledge Graph types of the results. */
+  public enum SearchType {
+    ARTIST("Person", "MusicGroup"),
+    SONG("MusicRecording");
+
+    private final List<String> knowledgeGraphTypes;
+
+    SearchType(String... knowledgeGraphTypes) {
+      this.knowledgeGraphTypes = Arrays.asList(knowledgeGraphTypes);
+    }
+  }
+
+  private static final Map<SearchType, AutocompleteIndex> indexes = new EnumMap<>(SearchType.class);
+  /** Users typing the same prefix at the same time share one Knowledge Graph call. */
+  private static final RequestCoalescer<String, List<String>> knowledgeGraphCalls =
+      new RequestCoalescer<>("knowledgeGraph.search");
+  private static volatile Supplier<Collection<Song>> songLoader;
+  private static volatile boolean seeded;
+  /** Whether a request is loading the songs, so the others don't load them too. */
+  private static final AtomicBoolean seeding = new AtomicBoolean();
+  private static volatile long nextSeedNanos = System.nanoTime();
+
+  static {
+    for (SearchType type : SearchType.values()) {
+      indexes.put(type, new AutocompleteIndex(MAX_INDEXED_NAMES));
+    }
+    configJsonPathWithGson();
+  }
+
+  private AutocompleteService() {}
+
+  /**
+   * Returns suggestions for the search string.
+   * @throws IOException if the Knowledge Graph Search API was needed and failed
+   */
+  public static List<String> search(SearchType type, String searchString, String apiKey) throws IOException {
+    seed();
+    AutocompleteIndex index = indexes.get(type);
+    List<String> results = index.lookup(searchString, LIMIT);
+    if (results != null) {
+      return results;
+    }
+
+    String key = type + ":" + AutocompleteIndex.normalize(searchString);
+    results = knowledgeGraphCalls.execute(key, () -> searchKnowledgeGraph(type, searchString, apiKey));
+    index.addRemoteResults(searchString, results);
+    return results;
+  }
+
+  /** Adds the artists and names of the songs to the suggestions, the first songs are suggested first. */
+  public static void addSongs(Collection<Song> songs) {
+    int rank = 0;
+    for (Song song : songs) {
+      indexes.get(SearchType.ARTIST).add(song.getArtist(), rank);
+      indexes.get(SearchType.SONG).add(song.getName(), rank);
+      rank++;
+    }
+  }
+
+  /** Sets how the songs are loaded from the database, the most searched first. */
+  public static void setSongLoader(Supplier<Collection<Song>> loader) {
+    songLoader = loader;
+  }
+
+  /**
+   * Adds the songs from the database to the suggestions, unless they were added already.
+   * The songs are loaded on the calling request thread, by one request at a time; after
+   * the database failed, they are loaded again by a request a minute later.
+   */
+  public static void seed() {
+    Supplier<Collection<Song>> loader = songLoader;
+    if (seeded || loader == null || System.nanoTime() - nextSeedNanos < 0 || !seeding.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      if (!seeded) {
+        addSongs(loader.get());
+        seeded = true;
+      }
+    } catch (RuntimeException databaseException) {
+      // Meanwhile the searches are answered by the Knowledge Graph.
+      nextSeedNanos = System.nanoTime() + SEED_RETRY_NANOS;
+    } finally {
+      seeding.set(false);
+    }
+  }
+
+  private static List<String> searchKnowledgeGraph(SearchType type, String searchString, String apiKey)
+      throws IOException {
+    HttpRequestFactory requestFactory = HttpTransports.getRequestFactory();
+
+    GenericUrl url = new GenericUrl(ApiEndpoints.getKnowledgeGraphUrl());
+    url.put("query", searchString);
+    url.put("limit", String.valueOf(LIMIT));
+    url.put("types", type.knowledgeGraphTypes);
+    url.put("key", apiKey);
+
+    HttpRequest autocompleteRequest = requestFactory.buildGetRequest(url);
+    HttpResponse autocompleteResponse =
+        AppMetrics.measureApiCall("knowledgeGraph.search", autocompleteRequest::execute);
+    JsonObject responseObject = (JsonObject) JsonParser.parseString(autocompleteResponse.parseAsString());
+    JsonArray elements = (JsonArray) responseObject.get("itemListElement");
+
+    List<String> results = new ArrayList<>();
+    for (Object element : elements) {
+      results.add(JsonPath.read(element, "$.result.name").toString().replace("\"", ""));
+    }
+    return ImmutableList.copyOf(results);
+  }
+
+  private static void configJsonPathWithGson() {
+    Configuration.setDefaults(new Configuration.Defaults() {
+      private final JsonProvider jsonProvider = new GsonJsonProvider();
+      private final MappingProvider mappingProvider = new GsonMappingProvider();
+
+      @Override
+      public JsonProvider jsonProvider() {
+          return jsonProvider;
+      }
+
+      @Override
+      public MappingProvider mappingProvider() {
+          return mappingProvider;
+      }
+
+      @Override
+      public Set<Option> options() {
+          return EnumSet.noneOf(Option.class);
+      }
+    });
+  }
+}
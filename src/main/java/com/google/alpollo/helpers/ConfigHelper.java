@@ -1,34 +1,35 @@
 package com.google.alpollo.helpers;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import javax.servlet.ServletContext;
 
 /**
  * Helps to load configuration file and retrieve data from it.
+ *
+ * The file is parsed once into an {@link AppConfig} and kept in memory. When the file changes,
+ * it is parsed again and the new configuration replaces the old one atomically, so a request
+ * sees either the old or the new configuration but never a mix of both.
  */
 final public class ConfigHelper {
   private static final String CONFIG_FILE_PATH = "/WEB-INF/config.json";
   private static final Gson gson = new Gson();
   public enum SENSITIVE_DATA { PROJECT_ID, API_KEY }
 
-  /**
-   * Class which represents the content of configuration file,
-   * used only to get Json object from file.
-   */
-  private static final class ConfigInfo {
-    private String projectID;
-    private String apiKey;
-
-    public String getProjectID() {
-      return projectID;
-    }
-    
-    public String getApiKey() {
-      return apiKey;
-    }
-  }
+  private static volatile AppConfig config;
+  /** Called with the previous and the new configuration after every reload. */
+  private static final List<BiConsumer<AppConfig, AppConfig>> reloadListeners = new CopyOnWriteArrayList<>();
+  private static ScheduledExecutorService reloadExecutor;
+  private static long configFileLastModified;
 
   private ConfigHelper() {
     throw new RuntimeException("Instantiation of ConfigHelper is not allowed!");
@@ -40,14 +41,100 @@ final public class ConfigHelper {
    * or it was incorrect/didn't have this field.
    */
   public static String getSensitiveData(ServletContext servletContext, SENSITIVE_DATA typeOfData) {
-    try (InputStream inputStream = servletContext.getResourceAsStream(CONFIG_FILE_PATH);
-         final Reader reader = new InputStreamReader(Objects.requireNonNull(inputStream))) {
-      ConfigInfo configInfo = gson.fromJson(reader, ConfigInfo.class);
-      switch (typeOfData) {
-        case PROJECT_ID: return configInfo.getProjectID();
-        case API_KEY: return configInfo.getApiKey();
-        default: return null;
+    AppConfig appConfig = getConfig(servletContext);
+    switch (typeOfData) {
+      case PROJECT_ID: return appConfig.getProjectID();
+      case API_KEY: return appConfig.getApiKey();
+      default: return null;
+    }
+  }
+
+  /**
+   * Returns the configuration, loading the file on first use.
+   * @return the configuration; the default one if configuration file wasn't found or it was incorrect.
+   */
+  public static AppConfig getConfig(ServletContext servletContext) {
+    AppConfig currentConfig = config;
+    if (currentConfig == null) {
+      synchronized (ConfigHelper.class) {
+        currentConfig = config;
+        if (currentConfig == null) {
+          currentConfig = loadConfig(servletContext);
+          if (currentConfig == null) {
+            currentConfig = new AppConfig();
+          }
+          config = currentConfig;
+        }
+      }
+    }
+    return currentConfig;
+  }
+
+  /** Registers a listener that is called with the previous and the new configuration after a reload. */
+  public static void addReloadListener(BiConsumer<AppConfig, AppConfig> listener) {
+    reloadListeners.add(listener);
+  }
+
+  /**
+   * Starts checking the configuration file for changes. Does nothing if the file
+   * isn't on the file system, e.g. when the application runs from a packed archive.
+   */
+  public static synchronized void startReloading(ServletContext servletContext) {
+    String path = servletContext.getRealPath(CONFIG_FILE_PATH);
+    if (reloadExecutor != null || path == null) {
+      return;
+    }
+
+    File configFile = new File(path);
+    configFileLastModified = configFile.lastModified();
+    int interval = getConfig(servletContext).getConfigReloadIntervalSeconds();
+    reloadExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("config-reload").setDaemon(true).build());
+    reloadExecutor.scheduleWithFixedDelay(() -> {
+      long lastModified = configFile.lastModified();
+      if (lastModified != configFileLastModified) {
+        configFileLastModified = lastModified;
+        reload(servletContext);
       }
+    }, interval, interval, TimeUnit.SECONDS);
+  }
+
+  /** Stops checking the configuration file for changes. */
+  public static synchronized void stopReloading() {
+    if (reloadExecutor != null) {
+      reloadExecutor.shutdownNow();
+      reloadExecutor = null;
+    }
+  }
+
+  /** Parses the file again; an incorrect file is ignored and the previous configuration stays. */
+  static void reload(ServletContext servletContext) {
+    AppConfig newConfig = loadConfig(servletContext);
+    if (newConfig == null) {
+      return;
+    }
+
+    AppConfig previousConfig;
+    synchronized (ConfigHelper.class) {
+      previousConfig = config;
+      config = newConfig;
+    }
+    for (BiConsumer<AppConfig, AppConfig> listener : reloadListeners) {
+      listener.accept(previousConfig, newConfig);
+    }
+  }
+
+  /** @return the parsed file; {@code null} if it wasn't found or it was incorrect. */
+  private static AppConfig loadConfig(ServletContext servletContext) {
+    return AppTracing.trace("ConfigHelper.loadConfig", () -> parseConfig(servletContext));
+  }
+
+  private static AppConfig parseConfig(ServletContext servletContext) {
+    try (InputStream inputStream = servletContext.getResourceAsStream(CONFIG_FILE_PATH);
+         final Reader reader = new InputStreamReader(Objects.requireNonNull(inputStream), StandardCharsets.UTF_8)) {
+      AppConfig appConfig = gson.fromJson(reader, AppConfig.class);
+      appConfig.validate();
+      return appConfig;
     } catch (Exception parseException) {
       return null;
     }
@@ -0,0 +1,25 @@
+package com.google.alpollo.helpers;
+
+import io.grpc.Context;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread pool that runs every task in the gRPC {@code Context} of the thread that submitted it,
+ * so the spans the task opens are children of the span of the request (see {@link AppTracing}).
+ */
+public final class ContextPropagatingThreadPool extends ThreadPoolExecutor {
+  public ContextPropagatingThreadPool(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+      BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+    super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
+  }
+
+  /** {@code submit} and {@code invokeAll} also end up here. */
+  @Override
+  public void execute(Runnable command) {
+    super.execute(Context.current().wrap(command));
+  }
+}
@@ -11,28 +11,47 @@ import java.util.List;
 
 /**
  * Class that contains method for detecting the language of the lyrics.
+ *
+ * The language is detected locally by {@link LanguageDetector}. The Translation API is called
+ * only when the local detector isn't confident enough, e.g. for languages it doesn't know.
  */
 public class DetectLanguageService {
-  private static TranslationServiceSettings settings;
+  /** Minimum confidence of the local detector to use its result by default. */
+  public static final double DEFAULT_MIN_CONFIDENCE = 0.9;
+  /** How many detected languages are cached by default. Every entry takes a few hundred bytes. */
+  public static final int DEFAULT_CACHE_MAX_BYTES = 1024 * 1024;
+  public static final int DEFAULT_CACHE_TTL_MINUTES = 24 * 60;
+  /** Cached instead of {@code null} when the language wasn't detected. */
+  private static final String UNKNOWN_LANGUAGE = "";
+  private static volatile double minConfidence = DEFAULT_MIN_CONFIDENCE;
+  private static final SharedClient<TranslationServiceClient> translationClient =
+      new SharedClient<>(DetectLanguageService::createTranslationServiceClient);
+  /** Detected languages by the hash of the text. */
+  private static final TextKeyedCache<String> languageCache =
+      new TextKeyedCache<>("translate.language", DEFAULT_CACHE_MAX_BYTES, DEFAULT_CACHE_TTL_MINUTES, String::length);
 
   private DetectLanguageService() {}
 
+  /** Sets the minimum confidence of the local detector, from 0.0 to 1.0. */
+  public static void setMinConfidence(double confidence) {
+    minConfidence = confidence;
+  }
+
+  /** Sets the limits of the cache of detected languages. Cached results are dropped. */
+  public static void configureCache(int maxBytes, int ttlMinutes) {
+    languageCache.configure(maxBytes, ttlMinutes);
+  }
+
   /**
-   * Creates setting for Translation service. Adds special header to make it
+   * Creates the client for Translation service. Adds special header to make it
    * work on Cloud Shell.
    * @param projectID
    * @throws IOException
    */
   private static TranslationServiceClient createTranslationServiceClient(String projectID) throws IOException {
-    if (projectID == null) {
-      throw new IllegalStateException("Project ID wasn't defined.");
-    }
-
-    if (settings == null) {
-      settings = TranslationServiceSettings.newBuilder().setHeaderProvider(
-          FixedHeaderProvider.create("X-Goog-User-Project", projectID)).build();
-    }
-
+    TranslationServiceSettings settings = ApiEndpoints.translate(TranslationServiceSettings.newBuilder()
+        .setHeaderProvider(FixedHeaderProvider.create("X-Goog-User-Project", projectID)),
+        TranslationServiceSettings.defaultGrpcTransportProviderBuilder()).build();
     return TranslationServiceClient.create(settings);
   }
 
@@ -44,25 +63,41 @@ public class DetectLanguageService {
    * @return code of the language with the largest confidence; {@code null} if language wasn't detected
    */
   public static String detectLanguage(String text, String projectID) throws IOException {
-    try (TranslationServiceClient client = createTranslationServiceClient(projectID)) {
-      LocationName parent = LocationName.of(projectID, "global");
+    String languageCode = AppTracing.trace("DetectLanguageService.detectLanguage",
+        () -> languageCache.get(text, () -> detectLanguageWithoutCache(text, projectID)));
+    return languageCode.equals(UNKNOWN_LANGUAGE) ? null : languageCode;
+  }
+
+  private static String detectLanguageWithoutCache(String text, String projectID) throws IOException {
+    LanguageDetector.Detection detection = LanguageDetector.getInstance().detect(text);
+    if (detection != null && detection.getConfidence() >= minConfidence) {
+      return detection.getLanguageCode();
+    }
+
+    String languageCode = detectLanguageWithApi(text, projectID);
+    return languageCode == null ? UNKNOWN_LANGUAGE : languageCode;
+  }
+
+  private static String detectLanguageWithApi(String text, String projectID) throws IOException {
+    TranslationServiceClient client = translationClient.get(projectID);
+    LocationName parent = LocationName.of(projectID, "global");
 
-      DetectLanguageRequest request =
-        DetectLanguageRequest.newBuilder()
-            .setParent(parent.toString())
-            .setMimeType("text/plain")
-            .setContent(text)
-            .build();
+    DetectLanguageRequest request =
+      DetectLanguageRequest.newBuilder()
+          .setParent(parent.toString())
+          .setMimeType("text/plain")
+          .setContent(text)
+          .build();
 
-      List<DetectedLanguage> response = client.detectLanguage(request).getLanguagesList();
+    List<DetectedLanguage> response = AppMetrics.measureApiCall("translate.detectLanguage",
+        () -> client.detectLanguage(request)).getLanguagesList();
 
-      // Return null if language wasn't detected or
-      // return the code of the language with the largest confidence.
-      if (response.isEmpty()) {
-        return null;
-      } else {
-        return response.get(0).getLanguageCode();
-      }
+    // Return null if language wasn't detected or
+    // return the code of the language with the largest confidence.
+    if (response.isEmpty()) {
+      return null;
+    } else {
+      return response.get(0).getLanguageCode();
     }
   }
 }
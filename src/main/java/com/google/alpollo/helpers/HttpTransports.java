@@ -0,0 +1,78 @@
+package com.google.alpollo.helpers;
+
+import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+/**
+ * Shares one HTTP transport between all calls to the REST APIs (YouTube, Knowledge Graph).
+ *
+ * The transport loads Google's trust store once, and the connections it opens are kept alive
+ * by the JVM and reused by later requests to the same host, so TLS handshakes don't happen
+ * on every request. The number of idle connections kept per host is set on startup, the timeouts
+ * may change while the application runs.
+ */
+public final class HttpTransports {
+  /** How many idle connections are kept per host by default. */
+  public static final int DEFAULT_MAX_CONNECTIONS = 20;
+  public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5_000;
+  public static final int DEFAULT_READ_TIMEOUT_MILLIS = 10_000;
+  /** JVM setting read by HttpURLConnection when its keep-alive cache is first used. */
+  private static final String MAX_CONNECTIONS_PROPERTY = "http.maxConnections";
+
+  private static volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+  private static volatile int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+  private static volatile NetHttpTransport transport;
+
+  private HttpTransports() {}
+
+  /**
+   * Sets how many idle connections are kept per host. It's a setting of the whole JVM that
+   * HttpURLConnection reads once, before the first connection, so it must be set on startup;
+   * later calls have no effect.
+   */
+  public static void setMaxConnections(int maxConnections) {
+    System.setProperty(MAX_CONNECTIONS_PROPERTY, String.valueOf(maxConnections));
+  }
+
+  /** Sets the timeouts of the requests made after the call, including by clients built before it. */
+  public static void configureTimeouts(int connectTimeout, int readTimeout) {
+    connectTimeoutMillis = connectTimeout;
+    readTimeoutMillis = readTimeout;
+  }
+
+  /** Returns the shared transport, creating it on first use. */
+  public static NetHttpTransport getTransport() throws IOException {
+    NetHttpTransport currentTransport = transport;
+    if (currentTransport == null) {
+      synchronized (HttpTransports.class) {
+        currentTransport = transport;
+        if (currentTransport == null) {
+          try {
+            currentTransport = GoogleNetHttpTransport.newTrustedTransport();
+          } catch (GeneralSecurityException e) {
+            throw new IOException("Trust store couldn't be loaded.", e);
+          }
+          transport = currentTransport;
+        }
+      }
+    }
+    return currentTransport;
+  }
+
+  /** Returns a request factory of the shared transport that applies the configured timeouts. */
+  public static HttpRequestFactory getRequestFactory() throws IOException {
+    return getTransport().createRequestFactory(getTimeoutInitializer());
+  }
+
+  /** Sets the configured timeouts on every request, for API clients built on the shared transport. */
+  public static HttpRequestInitializer getTimeoutInitializer() {
+    return request -> {
+      request.setConnectTimeout(connectTimeoutMillis);
+      request.setReadTimeout(readTimeoutMillis);
+    };
+  }
+}
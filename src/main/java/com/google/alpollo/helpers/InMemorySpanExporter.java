@@ -0,0 +1,53 @@
+package com.google.alpollo.helpers;
+
+import io.opencensus.trace.export.SpanData;
+import io.opencensus.trace.export.SpanExporter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the latest sampled spans in memory, the oldest ones are dropped first.
+ * Meant for tests and for looking at a few traces of a local run.
+ */
+public final class InMemorySpanExporter extends SpanExporter.Handler {
+  private final int capacity;
+  private final Deque<SpanData> spans = new ArrayDeque<>();
+
+  /** @param capacity how many spans are kept */
+  public InMemorySpanExporter(int capacity) {
+    this.capacity = capacity;
+  }
+
+  @Override
+  public synchronized void export(Collection<SpanData> newSpans) {
+    for (SpanData span : newSpans) {
+      if (spans.size() == capacity) {
+        spans.removeFirst();
+      }
+      spans.addLast(span);
+    }
+  }
+
+  /** Returns the kept spans, from the oldest to the latest. */
+  public synchronized List<SpanData> getSpans() {
+    return new ArrayList<>(spans);
+  }
+
+  /** Returns the kept spans of one trace, e.g. of one request. */
+  public synchronized List<SpanData> getTrace(String traceId) {
+    List<SpanData> trace = new ArrayList<>();
+    for (SpanData span : spans) {
+      if (span.getContext().getTraceId().toLowerBase16().equals(traceId)) {
+        trace.add(span);
+      }
+    }
+    return trace;
+  }
+
+  public synchronized void clear() {
+    spans.clear();
+  }
+}
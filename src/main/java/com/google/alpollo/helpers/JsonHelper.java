@@ -0,0 +1,277 @@
+package com.google.alpollo.helpers;
+
+import com.google.alpollo.model.AnalysisInfo;
+import com.google.alpollo.model.Song;
+import com.google.alpollo.model.SongCounter;
+import com.google.alpollo.model.SongEntity;
+import com.google.alpollo.model.SongSentiment;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Shares one Gson instance between the servlets and writes responses without building them as a String.
+ *
+ * The models that are sent the most have hand-written type adapters, so they are serialized
+ * without reflection. The adapters write the same JSON as reflection did, except the fields
+ * that are only used by the database (e.g. the eviction data of {@link AnalysisInfo}).
+ */
+public final class JsonHelper {
+  private static final TypeAdapter<Song> SONG_ADAPTER = new SongAdapter().nullSafe();
+  private static final TypeAdapter<SongSentiment> SENTIMENT_ADAPTER = new SongSentimentAdapter().nullSafe();
+  private static final TypeAdapter<SongEntity> ENTITY_ADAPTER = new SongEntityAdapter().nullSafe();
+  private static final TypeAdapter<SongCounter> COUNTER_ADAPTER = new SongCounterAdapter().nullSafe();
+  private static final TypeAdapter<AnalysisInfo> ANALYSIS_ADAPTER = new AnalysisInfoAdapter().nullSafe();
+
+  private static final Gson gson = new GsonBuilder()
+      .registerTypeAdapter(Song.class, SONG_ADAPTER)
+      .registerTypeAdapter(SongSentiment.class, SENTIMENT_ADAPTER)
+      .registerTypeAdapter(SongEntity.class, ENTITY_ADAPTER)
+      .registerTypeAdapter(SongCounter.class, COUNTER_ADAPTER)
+      .registerTypeAdapter(AnalysisInfo.class, ANALYSIS_ADAPTER)
+      .create();
+
+  private JsonHelper() {}
+
+  /** Returns the shared Gson instance, it is thread-safe. */
+  public static Gson getGson() {
+    return gson;
+  }
+
+  /** Writes the value as JSON directly to the response. The content type must be set before. */
+  public static void writeJson(HttpServletResponse response, Object value) throws IOException {
+    writeJson(response.getWriter(), value);
+  }
+
+  /** Writes the value as JSON directly to the writer. */
+  public static void writeJson(Writer writer, Object value) throws IOException {
+    JsonWriter jsonWriter = gson.newJsonWriter(writer);
+    gson.toJson(value, value == null ? Object.class : value.getClass(), jsonWriter);
+    jsonWriter.flush();
+  }
+
+  private static final class SongAdapter extends TypeAdapter<Song> {
+    @Override
+    public void write(JsonWriter out, Song song) throws IOException {
+      out.beginObject();
+      out.name("artist").value(song.getArtist());
+      out.name("name").value(song.getName());
+      out.endObject();
+    }
+
+    @Override
+    public Song read(JsonReader in) throws IOException {
+      String artist = null;
+      String name = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "artist": artist = readString(in); break;
+          case "name": name = readString(in); break;
+          default: in.skipValue();
+        }
+      }
+      in.endObject();
+      return new Song(artist, name);
+    }
+  }
+
+  private static final class SongSentimentAdapter extends TypeAdapter<SongSentiment> {
+    @Override
+    public void write(JsonWriter out, SongSentiment sentiment) throws IOException {
+      out.beginObject();
+      // Boxed, so floats are written as short as Gson writes them, e.g. 0.3 and not 0.30000001192092896.
+      out.name("score").value((Number) sentiment.getScore());
+      out.name("magnitude").value((Number) sentiment.getMagnitude());
+      out.name("interpretation").value(sentiment.getInterpretation());
+      out.endObject();
+    }
+
+    /** The interpretation is computed again from the score and the magnitude. */
+    @Override
+    public SongSentiment read(JsonReader in) throws IOException {
+      float score = 0;
+      float magnitude = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "score": score = (float) in.nextDouble(); break;
+          case "magnitude": magnitude = (float) in.nextDouble(); break;
+          default: in.skipValue();
+        }
+      }
+      in.endObject();
+      return new SongSentiment(score, magnitude);
+    }
+  }
+
+  private static final class SongEntityAdapter extends TypeAdapter<SongEntity> {
+    @Override
+    public void write(JsonWriter out, SongEntity entity) throws IOException {
+      out.beginObject();
+      out.name("name").value(entity.getName());
+      out.name("salience").value(entity.getSalience());
+      if (entity.getType() != null) {
+        out.name("type");
+        writeStrings(out, entity.getType());
+      }
+      out.name("wikiLink").value(entity.getWikiLink());
+      out.endObject();
+    }
+
+    @Override
+    public SongEntity read(JsonReader in) throws IOException {
+      String name = null;
+      double salience = 0;
+      Set<String> type = null;
+      String wikiLink = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "name": name = readString(in); break;
+          case "salience": salience = in.nextDouble(); break;
+          case "type": type = readStrings(in, new LinkedHashSet<>()); break;
+          case "wikiLink": wikiLink = readString(in); break;
+          default: in.skipValue();
+        }
+      }
+      in.endObject();
+      return new SongEntity(name, salience, type, wikiLink);
+    }
+  }
+
+  private static final class SongCounterAdapter extends TypeAdapter<SongCounter> {
+    @Override
+    public void write(JsonWriter out, SongCounter counter) throws IOException {
+      out.beginObject();
+      out.name("id").value(counter.getId());
+      out.name("song");
+      SONG_ADAPTER.write(out, counter.getSong());
+      out.name("searchCounter").value(counter.getSearchCounter());
+      out.endObject();
+    }
+
+    @Override
+    public SongCounter read(JsonReader in) throws IOException {
+      Song song = null;
+      int searchCounter = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "song": song = SONG_ADAPTER.read(in); break;
+          case "searchCounter": searchCounter = in.nextInt(); break;
+          default: in.skipValue();
+        }
+      }
+      in.endObject();
+      return new SongCounter(song, searchCounter);
+    }
+  }
+
+  private static final class AnalysisInfoAdapter extends TypeAdapter<AnalysisInfo> {
+    @Override
+    public void write(JsonWriter out, AnalysisInfo info) throws IOException {
+      out.beginObject();
+      out.name("id").value(info.getId());
+      out.name("song");
+      SONG_ADAPTER.write(out, info.getSong());
+      out.name("songSentiment");
+      SENTIMENT_ADAPTER.write(out, info.getSongSentiment());
+      if (info.getTopSalientEntities() != null) {
+        out.name("topSalientEntities");
+        out.beginArray();
+        for (SongEntity entity : info.getTopSalientEntities()) {
+          ENTITY_ADAPTER.write(out, entity);
+        }
+        out.endArray();
+      }
+      out.name("lyrics").value(info.getLyrics());
+      if (info.getYouTubeIds() != null) {
+        out.name("youTubeIds");
+        writeStrings(out, info.getYouTubeIds());
+      }
+      out.endObject();
+    }
+
+    /** The id is computed from the song, like {@link AnalysisInfo#initializeId()} does. */
+    @Override
+    public AnalysisInfo read(JsonReader in) throws IOException {
+      Song song = null;
+      SongSentiment sentiment = null;
+      List<SongEntity> entities = null;
+      String lyrics = null;
+      List<String> youTubeIds = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "song": song = SONG_ADAPTER.read(in); break;
+          case "songSentiment": sentiment = SENTIMENT_ADAPTER.read(in); break;
+          case "topSalientEntities": entities = readEntities(in); break;
+          case "lyrics": lyrics = readString(in); break;
+          case "youTubeIds": youTubeIds = readStrings(in, new ArrayList<>()); break;
+          default: in.skipValue();
+        }
+      }
+      in.endObject();
+      if (song == null) {
+        throw new IOException("Analysis info must contain the song.");
+      }
+      return new AnalysisInfo(song, sentiment, entities, lyrics, youTubeIds);
+    }
+
+    private static List<SongEntity> readEntities(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      List<SongEntity> entities = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        entities.add(ENTITY_ADAPTER.read(in));
+      }
+      in.endArray();
+      return entities;
+    }
+  }
+
+  private static void writeStrings(JsonWriter out, Iterable<String> strings) throws IOException {
+    out.beginArray();
+    for (String string : strings) {
+      out.value(string);
+    }
+    out.endArray();
+  }
+
+  private static String readString(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextString();
+  }
+
+  private static <C extends Collection<String>> C readStrings(JsonReader in, C strings)
+      throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    in.beginArray();
+    while (in.hasNext()) {
+      strings.add(readString(in));
+    }
+    in.endArray();
+    return strings;
+  }
+}
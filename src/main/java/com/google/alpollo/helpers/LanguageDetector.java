@@ -0,0 +1,222 @@
+package com.google.alpollo.helpers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Detects the language of a text without calling any API, using character n-grams.
+ *
+ * For every supported language the language-profiles resource folder has the most frequent
+ * 1, 2 and 3 letter sequences of Wikipedia abstracts with their counts (see the NOTICE there).
+ * A text is scored by how likely its sequences are in each language (naive Bayes).
+ *
+ * The confidence is the probability that the detected language is right, calibrated with
+ * logistic regression on held-out lyrics-sized snippets in profiled and other languages.
+ * It's low both when two languages score alike and when the text fits even the best language
+ * worse than a usual text in that language does, which is the case for languages without a profile.
+ */
+public final class LanguageDetector {
+  /** Languages that have a profile in resources, as codes returned by the Translation API. */
+  private static final String[] LANGUAGES =
+      {"en", "es", "fr", "de", "it", "pt", "ro", "nl", "pl", "ru", "sv", "da", "no", "fi", "tr", "uk"};
+  private static final String PROFILE_PATH = "/language-profiles/%s.txt";
+  /** The first line of a profile has the total number of n-grams of every length. */
+  private static final String TOTALS_PREFIX = "#\t";
+  private static final int MAX_NGRAM_LENGTH = 3;
+  /** Lyrics are long, the beginning of the text is enough to detect the language. */
+  private static final int MAX_TEXT_LENGTH = 1000;
+  /** An n-gram missing from a profile is taken as this part as likely as the rarest one in it. */
+  private static final double UNSEEN_FRACTION = 0.25;
+  /**
+   * Weights of the margin between the two best scores, the same margin times the square root
+   * of the number of n-grams and the fit of the text to the best language, and the intercept.
+   */
+  private static final double MARGIN_WEIGHT = 11.488;
+  private static final double SCALED_MARGIN_WEIGHT = 0.5591;
+  private static final double FIT_WEIGHT = 5.0581;
+  private static final double INTERCEPT = 0.6264;
+  private static final Pattern NOT_LETTERS = Pattern.compile("[^\\p{L}]+");
+
+  /** Detected language and the probability that it is right, from 0.0 to 1.0. */
+  public static final class Detection {
+    private final String languageCode;
+    private final double confidence;
+
+    private Detection(String languageCode, double confidence) {
+      this.languageCode = languageCode;
+      this.confidence = confidence;
+    }
+
+    public String getLanguageCode() {
+      return languageCode;
+    }
+
+    public double getConfidence() {
+      return confidence;
+    }
+  }
+
+  /** Loads the profiles the first time the detector is used. */
+  private static final class InstanceHolder {
+    private static final LanguageDetector INSTANCE = new LanguageDetector();
+  }
+
+  /** Log probability of every n-gram of the profiles, one value per language. */
+  private final Map<String, double[]> logProbabilities = new HashMap<>();
+  /** Log probability of an n-gram that isn't in the profile, by n-gram length and language. */
+  private final double[][] unseenLogProbabilities = new double[MAX_NGRAM_LENGTH + 1][LANGUAGES.length];
+  /** Average log probability per n-gram of a usual text in the language. */
+  private final double[] expectedLogProbabilities = new double[LANGUAGES.length];
+
+  private LanguageDetector() {
+    for (int language = 0; language < LANGUAGES.length; language++) {
+      long[] totals = new long[MAX_NGRAM_LENGTH + 1];
+      Map<String, Long> counts = loadProfile(LANGUAGES[language], totals);
+
+      long[] minCounts = new long[MAX_NGRAM_LENGTH + 1];
+      double[] coveredProbabilities = new double[MAX_NGRAM_LENGTH + 1];
+      double expected = 0;
+      for (Map.Entry<String, Long> entry : counts.entrySet()) {
+        int length = entry.getKey().length();
+        double probability = (double) entry.getValue() / totals[length];
+        if (minCounts[length] == 0 || entry.getValue() < minCounts[length]) {
+          minCounts[length] = entry.getValue();
+        }
+        coveredProbabilities[length] += probability;
+        expected += probability * Math.log(probability);
+        logProbabilities.computeIfAbsent(entry.getKey(), ngram -> new double[LANGUAGES.length])[language] =
+            Math.log(probability);
+      }
+
+      for (int length = 1; length <= MAX_NGRAM_LENGTH; length++) {
+        double unseen = Math.log(Math.max(minCounts[length], 1) * UNSEEN_FRACTION / totals[length]);
+        unseenLogProbabilities[length][language] = unseen;
+        expected += (1 - coveredProbabilities[length]) * unseen;
+      }
+      expectedLogProbabilities[language] = expected / MAX_NGRAM_LENGTH;
+    }
+
+    // N-grams of one profile that aren't in another one get the unseen log probability there.
+    for (Map.Entry<String, double[]> entry : logProbabilities.entrySet()) {
+      double[] values = entry.getValue();
+      for (int language = 0; language < LANGUAGES.length; language++) {
+        if (values[language] == 0) {
+          values[language] = unseenLogProbabilities[entry.getKey().length()][language];
+        }
+      }
+    }
+  }
+
+  public static LanguageDetector getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * Detects the language of the text.
+   * @return the most likely language; {@code null} if the text has no letters.
+   */
+  public Detection detect(String text) {
+    List<String> ngrams = ngrams(text, MAX_TEXT_LENGTH);
+    if (ngrams.isEmpty()) {
+      return null;
+    }
+
+    double[] scores = new double[LANGUAGES.length];
+    for (String ngram : ngrams) {
+      double[] values = logProbabilities.get(ngram);
+      for (int language = 0; language < LANGUAGES.length; language++) {
+        scores[language] += values == null
+            ? unseenLogProbabilities[ngram.length()][language]
+            : values[language];
+      }
+    }
+
+    int best = 0;
+    int second = 1;
+    if (scores[second] > scores[best]) {
+      best = 1;
+      second = 0;
+    }
+    for (int language = 2; language < LANGUAGES.length; language++) {
+      if (scores[language] > scores[best]) {
+        second = best;
+        best = language;
+      } else if (scores[language] > scores[second]) {
+        second = language;
+      }
+    }
+
+    int size = ngrams.size();
+    double margin = (scores[best] - scores[second]) / size;
+    double fit = scores[best] / size - expectedLogProbabilities[best];
+    double logit = MARGIN_WEIGHT * margin + SCALED_MARGIN_WEIGHT * margin * Math.sqrt(size)
+        + FIT_WEIGHT * fit + INTERCEPT;
+    return new Detection(LANGUAGES[best], 1 / (1 + Math.exp(-logit)));
+  }
+
+  /** Returns all n-grams of the words of the text, each word surrounded by spaces. */
+  private static List<String> ngrams(String text, int maxTextLength) {
+    String letters = NOT_LETTERS.matcher(text.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    if (letters.length() > maxTextLength) {
+      letters = letters.substring(0, maxTextLength);
+    }
+
+    List<String> ngrams = new ArrayList<>();
+    if (letters.isEmpty()) {
+      return ngrams;
+    }
+
+    String padded = " " + letters + " ";
+    for (int start = 0; start < padded.length(); start++) {
+      for (int length = 1; length <= MAX_NGRAM_LENGTH && start + length <= padded.length(); length++) {
+        String ngram = padded.substring(start, start + length);
+        if (!ngram.trim().isEmpty()) {
+          ngrams.add(ngram);
+        }
+      }
+    }
+    return ngrams;
+  }
+
+  /**
+   * Reads the n-gram counts of the language.
+   * @param totals filled with the total number of n-grams of every length in the corpus
+   */
+  private static Map<String, Long> loadProfile(String languageCode, long[] totals) {
+    String path = String.format(PROFILE_PATH, languageCode);
+    try (InputStream inputStream = LanguageDetector.class.getResourceAsStream(path)) {
+      if (inputStream == null) {
+        throw new IllegalStateException("Language profile " + path + " wasn't found.");
+      }
+      BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+      String header = reader.readLine();
+      if (header == null || !header.startsWith(TOTALS_PREFIX)) {
+        throw new IllegalStateException("Language profile " + path + " has no totals.");
+      }
+      String[] totalValues = header.substring(TOTALS_PREFIX.length()).split("\t");
+      for (int length = 1; length <= MAX_NGRAM_LENGTH; length++) {
+        totals[length] = Long.parseLong(totalValues[length - 1]);
+      }
+
+      Map<String, Long> counts = new HashMap<>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int separator = line.lastIndexOf('\t');
+        counts.put(line.substring(0, separator), Long.parseLong(line.substring(separator + 1)));
+      }
+      return counts;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.google.alpollo.helpers;
+
+import io.opencensus.common.Duration;
+import io.opencensus.trace.AttributeValue;
+import io.opencensus.trace.export.SpanData;
+import io.opencensus.trace.export.SpanExporter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/** Writes every sampled span to the log on one line, for local runs and debugging. */
+public final class LogSpanExporter extends SpanExporter.Handler {
+  private static final Logger logger = Logger.getLogger(LogSpanExporter.class.getName());
+
+  @Override
+  public void export(Collection<SpanData> spans) {
+    for (SpanData span : spans) {
+      logger.info(format(span));
+    }
+  }
+
+  /**
+   * Returns a line like "trace=4bf9... span=00f0... parent=a2fb... name=GET /top duration_ms=12.5
+   * status=OK result=ok". The parent is missing for the span of a request.
+   */
+  static String format(SpanData span) {
+    StringBuilder line = new StringBuilder()
+        .append("trace=").append(span.getContext().getTraceId().toLowerBase16())
+        .append(" span=").append(span.getContext().getSpanId().toLowerBase16());
+    if (span.getParentSpanId() != null) {
+      line.append(" parent=").append(span.getParentSpanId().toLowerBase16());
+    }
+    line.append(" name=").append(span.getName());
+    if (span.getEndTimestamp() != null) {
+      Duration duration = span.getEndTimestamp().subtractTimestamp(span.getStartTimestamp());
+      line.append(" duration_ms=").append((duration.getSeconds() * 1_000_000_000L + duration.getNanos()) / 1e6);
+    }
+    if (span.getStatus() != null) {
+      line.append(" status=").append(span.getStatus().getCanonicalCode());
+    }
+    for (Map.Entry<String, AttributeValue> attribute : span.getAttributes().getAttributeMap().entrySet()) {
+      line.append(' ').append(attribute.getKey()).append('=').append(attributeText(attribute.getValue()));
+    }
+    return line.toString();
+  }
+
+  private static String attributeText(AttributeValue value) {
+    return value.match(String::valueOf, String::valueOf, String::valueOf, String::valueOf, String::valueOf);
+  }
+}
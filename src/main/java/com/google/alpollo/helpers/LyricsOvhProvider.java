@@ -0,0 +1,68 @@
+package com.google.alpollo.helpers;
+
+import com.google.alpollo.model.Song;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.HttpTransport;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+
+/**
+ * Fetches lyrics from the lyrics.ovh API, the same API the frontend used before.
+ * The transport can be replaced, e.g. by a local stand-in in tests.
+ */
+public final class LyricsOvhProvider implements LyricsProvider {
+  public static final String DEFAULT_URL = "https://api.lyrics.ovh/v1/";
+
+  private final String baseUrl;
+  /** {@code null} to use the shared transport, see {@link HttpTransports}. */
+  private final HttpTransport transport;
+
+  /** Uses the shared transport. */
+  public LyricsOvhProvider(String baseUrl) {
+    this(baseUrl, null);
+  }
+
+  public LyricsOvhProvider(String baseUrl, HttpTransport transport) {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+    this.transport = transport;
+  }
+
+  @Override
+  public String fetchLyrics(Song song) throws IOException {
+    GenericUrl url = new GenericUrl(baseUrl);
+    url.appendRawPath(encodePathPart(song.getArtist()) + "/" + encodePathPart(song.getName()));
+
+    HttpRequestFactory requestFactory = transport == null
+        ? HttpTransports.getRequestFactory()
+        : transport.createRequestFactory(HttpTransports.getTimeoutInitializer());
+    HttpResponse response;
+    try {
+      response = requestFactory.buildGetRequest(url).execute();
+    } catch (HttpResponseException e) {
+      if (e.getStatusCode() == HttpStatusCodes.STATUS_CODE_NOT_FOUND) {
+        return null;
+      }
+      throw e;
+    }
+
+    try {
+      JsonObject responseObject = JsonParser.parseString(response.parseAsString()).getAsJsonObject();
+      JsonElement lyrics = responseObject.get("lyrics");
+      return lyrics == null || lyrics.isJsonNull() ? null : lyrics.getAsString();
+    } catch (RuntimeException parseException) {
+      throw new IOException("Lyrics provider returned an incorrect response.", parseException);
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  private static String encodePathPart(String part) {
+    return com.google.api.client.util.escape.CharEscapers.escapeUriPath(part).replace("/", "%2F");
+  }
+}
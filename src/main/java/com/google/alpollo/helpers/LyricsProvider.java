@@ -0,0 +1,14 @@
+package com.google.alpollo.helpers;
+
+import com.google.alpollo.model.Song;
+import java.io.IOException;
+
+/** Source of song lyrics, e.g. a lyrics API. */
+public interface LyricsProvider {
+  /**
+   * Fetches the lyrics of the song.
+   * @return the lyrics as the provider returns them; {@code null} if the provider doesn't know the song.
+   * @throws IOException if the provider couldn't be reached
+   */
+  String fetchLyrics(Song song) throws IOException;
+}
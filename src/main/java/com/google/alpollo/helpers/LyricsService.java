@@ -0,0 +1,142 @@
+package com.google.alpollo.helpers;
+
+import com.google.alpollo.database.SongDataBase;
+import com.google.alpollo.model.Lyrics;
+import com.google.alpollo.model.Song;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fetches the lyrics of songs on the server, so the client doesn't have to send them back.
+ *
+ * Lyrics are looked up in memory first, then in the database, where they are kept GZIP compressed
+ * by the id of the song, and only then fetched from the provider. Fetched lyrics are normalized
+ * (see {@link TextHasher#normalize}) before they are stored, so the same song always gives the same text.
+ */
+public final class LyricsService {
+  /** How many bytes of lyrics are kept in memory by default. Lyrics of a song take about 4 KB. */
+  public static final int DEFAULT_CACHE_MAX_BYTES = 8 * 1024 * 1024;
+  /** Lyrics don't change, the TTL only makes room for the songs that are searched now. */
+  public static final int DEFAULT_CACHE_TTL_MINUTES = 24 * 60;
+  /** Approximate size of a key and the bookkeeping of one entry. */
+  private static final int ENTRY_OVERHEAD_BYTES = 128;
+  /** Remembers in memory that the provider doesn't know a song, it is never stored in the database. */
+  private static final String NOT_FOUND = "";
+
+  private static volatile LyricsProvider provider = new LyricsOvhProvider(LyricsOvhProvider.DEFAULT_URL);
+  private static volatile Cache<Long, String> lyricsCache =
+      createCache(DEFAULT_CACHE_MAX_BYTES, DEFAULT_CACHE_TTL_MINUTES);
+  /** Users searching for the same song at the same time share one fetch. */
+  private static final RequestCoalescer<Long, String> fetchCalls = new RequestCoalescer<>("lyrics.fetch");
+  private static final AtomicLong cacheHitCount = new AtomicLong();
+  private static final AtomicLong cacheMissCount = new AtomicLong();
+
+  private LyricsService() {}
+
+  /** Replaces the source of lyrics, e.g. with a local stand-in. */
+  public static void setProvider(LyricsProvider lyricsProvider) {
+    provider = lyricsProvider;
+  }
+
+  /** Sets the limits of the in-memory cache. Cached lyrics are dropped, the database keeps them. */
+  public static void configureCache(int maxBytes, int ttlMinutes) {
+    lyricsCache = createCache(maxBytes, ttlMinutes);
+  }
+
+  /**
+   * Returns the normalized lyrics of the song.
+   * @return lyrics; {@code null} if the provider doesn't know the song.
+   * @throws IOException if the lyrics weren't stored and the provider couldn't be reached
+   */
+  public static String getLyrics(Song song) throws IOException {
+    Long songId = song.id();
+    Cache<Long, String> currentCache = lyricsCache;
+    String lyrics = currentCache.getIfPresent(songId);
+    if (lyrics != null) {
+      cacheHitCount.incrementAndGet();
+    } else {
+      cacheMissCount.incrementAndGet();
+      lyrics = fetchCalls.execute(songId, () -> loadLyrics(song));
+      currentCache.put(songId, lyrics);
+    }
+    return lyrics.equals(NOT_FOUND) ? null : lyrics;
+  }
+
+  /** Number of lookups that were answered from memory. */
+  public static long getCacheHitCount() {
+    return cacheHitCount.get();
+  }
+
+  /** Number of lookups that went to the database or to the provider. */
+  public static long getCacheMissCount() {
+    return cacheMissCount.get();
+  }
+
+  /**
+   * Returns the lyrics of a request body: the lyrics it contains, or else the lyrics
+   * of the song it names.
+   * @return lyrics; {@code null} if the body has neither or the provider doesn't know the song.
+   */
+  public static String resolveLyrics(Lyrics body) throws IOException {
+    if (body.getLyrics() != null && !body.getLyrics().isEmpty()) {
+      return body.getLyrics();
+    }
+    if (body.getArtistName() == null || body.getSongName() == null) {
+      return null;
+    }
+    return getLyrics(new Song(body.getArtistName(), body.getSongName()));
+  }
+
+  /** Reads the lyrics from the database, or fetches them and stores them there. */
+  private static String loadLyrics(Song song) throws IOException {
+    byte[] compressedLyrics = SongDataBase.getCachedLyrics(song.id());
+    if (compressedLyrics != null) {
+      try {
+        return decompress(compressedLyrics);
+      } catch (IOException corruptedLyrics) {
+        // Fetch the lyrics again, they will replace the corrupted ones.
+      }
+    }
+
+    String lyrics = AppMetrics.measureApiCall("lyrics.fetch", () -> provider.fetchLyrics(song));
+    if (lyrics == null || lyrics.trim().isEmpty()) {
+      return NOT_FOUND;
+    }
+    lyrics = TextHasher.normalize(lyrics);
+    SongDataBase.saveCachedLyrics(song.id(), compress(lyrics));
+    return lyrics;
+  }
+
+  static byte[] compress(String text) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+      gzip.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+    return bytes.toByteArray();
+  }
+
+  static String decompress(byte[] compressedText) throws IOException {
+    try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressedText))) {
+      return new String(ByteStreams.toByteArray(gzip), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static Cache<Long, String> createCache(int maxBytes, int ttlMinutes) {
+    return CacheBuilder.newBuilder()
+        .maximumWeight(maxBytes)
+        .<Long, String>weigher((songId, lyrics) -> ENTRY_OVERHEAD_BYTES + 2 * lyrics.length())
+        .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+        .build();
+  }
+}
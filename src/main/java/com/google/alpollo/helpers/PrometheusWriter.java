@@ -0,0 +1,136 @@
+package com.google.alpollo.helpers;
+
+import io.opencensus.common.Function;
+import io.opencensus.common.Functions;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.export.Distribution;
+import io.opencensus.metrics.export.Metric;
+import io.opencensus.metrics.export.MetricDescriptor;
+import io.opencensus.metrics.export.Point;
+import io.opencensus.metrics.export.TimeSeries;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes OpenCensus metrics in the Prometheus text format (version 0.0.4), so Prometheus can
+ * scrape them without an exporter library. Only the latest point of every time series is written.
+ *
+ * Names are written with "_" for every character Prometheus doesn't allow. Distributions become
+ * histograms with cumulative buckets, cumulative values become counters and gauges stay gauges.
+ */
+public final class PrometheusWriter {
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private PrometheusWriter() {}
+
+  /** Writes the metrics, each one with its HELP and TYPE lines. */
+  public static void write(List<Metric> metrics, Writer writer) throws IOException {
+    for (Metric metric : metrics) {
+      MetricDescriptor descriptor = metric.getMetricDescriptor();
+      String name = sanitize(descriptor.getName());
+      writer.write("# HELP " + name + " " + escapeHelp(descriptor.getDescription()) + "\n");
+      writer.write("# TYPE " + name + " " + type(descriptor.getType()) + "\n");
+      for (TimeSeries timeSeries : metric.getTimeSeriesList()) {
+        List<Point> points = timeSeries.getPoints();
+        if (points.isEmpty()) {
+          continue;
+        }
+        String labels = labels(descriptor.getLabelKeys(), timeSeries.getLabelValues());
+        writeValue(writer, name, labels, points.get(points.size() - 1));
+      }
+    }
+  }
+
+  private static void writeValue(Writer writer, String name, String labels, Point point) throws IOException {
+    String lines = point.getValue().match(
+        doubleValue -> sample(name, labels, doubleValue),
+        longValue -> sample(name, labels, longValue),
+        distribution -> histogram(name, labels, distribution),
+        // Summaries aren't recorded by this application.
+        summary -> "",
+        Functions.<String>returnConstant(""));
+    writer.write(lines);
+  }
+
+  private static String histogram(String name, String labels, Distribution distribution) {
+    List<Double> bounds = distribution.getBucketOptions() == null
+        ? Collections.<Double>emptyList()
+        : distribution.getBucketOptions().match(
+            Distribution.BucketOptions.ExplicitOptions::getBucketBoundaries,
+            Functions.<List<Double>>returnConstant(Collections.<Double>emptyList()));
+    List<Distribution.Bucket> buckets = distribution.getBuckets();
+
+    StringBuilder lines = new StringBuilder();
+    long cumulativeCount = 0;
+    for (int i = 0; i < bounds.size() && i < buckets.size(); i++) {
+      cumulativeCount += buckets.get(i).getCount();
+      lines.append(sample(name + "_bucket", withLabel(labels, "le", format(bounds.get(i))), cumulativeCount));
+    }
+    lines.append(sample(name + "_bucket", withLabel(labels, "le", "+Inf"), distribution.getCount()));
+    lines.append(sample(name + "_sum", labels, distribution.getSum()));
+    lines.append(sample(name + "_count", labels, distribution.getCount()));
+    return lines.toString();
+  }
+
+  private static String sample(String name, String labels, Object value) {
+    String formattedValue = value instanceof Double ? format((Double) value) : String.valueOf(value);
+    return name + (labels.isEmpty() ? "" : "{" + labels + "}") + " " + formattedValue + "\n";
+  }
+
+  private static String labels(List<LabelKey> keys, List<LabelValue> values) {
+    StringBuilder labels = new StringBuilder();
+    for (int i = 0; i < keys.size() && i < values.size(); i++) {
+      String value = values.get(i).getValue();
+      if (value == null) {
+        continue;
+      }
+      labels.append(labels.length() == 0 ? "" : ",")
+          .append(sanitize(keys.get(i).getKey())).append("=\"").append(escapeLabel(value)).append('"');
+    }
+    return labels.toString();
+  }
+
+  private static String withLabel(String labels, String key, String value) {
+    return (labels.isEmpty() ? "" : labels + ",") + key + "=\"" + value + "\"";
+  }
+
+  private static String type(MetricDescriptor.Type type) {
+    switch (type) {
+      case CUMULATIVE_INT64:
+      case CUMULATIVE_DOUBLE:
+        return "counter";
+      case CUMULATIVE_DISTRIBUTION:
+      case GAUGE_DISTRIBUTION:
+        return "histogram";
+      case GAUGE_INT64:
+      case GAUGE_DOUBLE:
+        return "gauge";
+      default:
+        return "untyped";
+    }
+  }
+
+  private static String format(double value) {
+    if (Double.isInfinite(value)) {
+      return value > 0 ? "+Inf" : "-Inf";
+    }
+    return value == Math.rint(value) && Math.abs(value) < 1e15 ? String.valueOf((long) value) : String.valueOf(value);
+  }
+
+  /** Replaces the characters Prometheus doesn't allow in names, e.g. "alpollo/api_latency". */
+  static String sanitize(String name) {
+    String sanitized = name.replaceAll("[^a-zA-Z0-9_:]", "_");
+    return Character.isDigit(sanitized.charAt(0)) ? "_" + sanitized : sanitized;
+  }
+
+  private static String escapeLabel(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String escapeHelp(String description) {
+    return description.replace("\\", "\\\\").replace("\n", "\\n");
+  }
+}
@@ -0,0 +1,103 @@
+package com.google.alpollo.helpers;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets concurrent identical calls to a remote API share one call.
+ *
+ * The first caller for a key makes the call; callers that come while it is in flight wait
+ * for its result instead of making their own. The result is shared, so it must be immutable.
+ * Nothing is kept after the call finishes, caching is up to the caller.
+ *
+ * @param <K> type of the keys that identify identical calls, e.g. a normalized query
+ * @param <V> type of the results
+ */
+public final class RequestCoalescer<K, V> {
+  /** All coalescers of the application, to report their metrics. */
+  private static final List<RequestCoalescer<?, ?>> coalescers = new CopyOnWriteArrayList<>();
+
+  /** Makes the remote call. */
+  public interface Call<V> {
+    V call() throws IOException;
+  }
+
+  private final String name;
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlightCalls = new ConcurrentHashMap<>();
+  private final AtomicLong callCount = new AtomicLong();
+  private final AtomicLong collapsedCount = new AtomicLong();
+
+  /** @param name name of the API the calls go to, used in metrics */
+  public RequestCoalescer(String name) {
+    this.name = name;
+    coalescers.add(this);
+  }
+
+  /** Returns all coalescers that were created. */
+  public static List<RequestCoalescer<?, ?>> getAll() {
+    return coalescers;
+  }
+
+  /**
+   * Makes the call, or waits for the result of an identical call that is in flight.
+   * @throws IOException if the shared call failed with an IOException
+   */
+  public V execute(K key, Call<V> call) throws IOException {
+    callCount.incrementAndGet();
+    CompletableFuture<V> future = new CompletableFuture<>();
+    CompletableFuture<V> inFlightCall = inFlightCalls.putIfAbsent(key, future);
+    if (inFlightCall != null) {
+      collapsedCount.incrementAndGet();
+      return await(inFlightCall);
+    }
+
+    try {
+      V result = call.call();
+      future.complete(result);
+      return result;
+    } catch (IOException | RuntimeException | Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlightCalls.remove(key, future);
+    }
+  }
+
+  private static <V> V await(CompletableFuture<V> inFlightCall) throws IOException {
+    try {
+      return inFlightCall.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for an identical call.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      // A new exception, so every waiter gets its own stack trace.
+      throw new IOException(cause.getMessage(), cause);
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** Number of calls that were asked for, including the collapsed ones. */
+  public long getCallCount() {
+    return callCount.get();
+  }
+
+  /** Number of calls that shared the result of an identical call instead of calling the API. */
+  public long getCollapsedCount() {
+    return collapsedCount.get();
+  }
+}
@@ -0,0 +1,228 @@
+package com.google.alpollo.helpers;
+
+import com.google.appengine.api.ThreadManager;
+import com.google.apphosting.api.ApiProxy;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.grpc.Context;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded executor whose tasks may call App Engine APIs, e.g. Datastore, Users or URL Fetch.
+ *
+ * Those APIs only work on a thread of a request, so a pool of long-lived threads can't run them.
+ * Instead every task runs on a new thread created by {@link ThreadManager#currentRequestThreadFactory()}
+ * of the request that submitted it, in the gRPC {@code Context} of the submitting thread
+ * (see {@link AppTracing}). Outside of a request, e.g. in tests, plain daemon threads are used.
+ *
+ * At most {@code maxThreads} tasks run at the same time and up to {@code queueSize} more wait
+ * in a queue, without a thread. When a task finishes, its thread starts the thread of the next
+ * queued task. When the executor is full, a task is rejected or run by the submitting thread.
+ */
+public final class RequestThreadExecutor extends AbstractExecutorService {
+  private final int maxThreads;
+  private final int queueSize;
+  private final boolean callerRuns;
+  private final ThreadFactory fallbackThreadFactory;
+  /** Tasks waiting for a running one to finish. Guarded by this. */
+  private final Deque<QueuedTask> queue = new ArrayDeque<>();
+  /** Tasks whose thread was started and didn't finish yet. Guarded by this. */
+  private int runningTasks;
+  private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+  private volatile boolean shutdown;
+
+  /** Task waiting in the queue, with the thread factory of the request that submitted it. */
+  private static final class QueuedTask {
+    private final Runnable task;
+    private final ThreadFactory threadFactory;
+
+    private QueuedTask(Runnable task, ThreadFactory threadFactory) {
+      this.task = task;
+      this.threadFactory = threadFactory;
+    }
+  }
+
+  /**
+   * @param name prefix of the names of the threads created outside of a request
+   * @param maxThreads how many tasks run at the same time
+   * @param queueSize how many tasks may wait for a running one to finish
+   * @param callerRuns whether a task that doesn't fit runs on the submitting thread instead of being rejected
+   */
+  public RequestThreadExecutor(String name, int maxThreads, int queueSize, boolean callerRuns) {
+    this.maxThreads = maxThreads;
+    this.queueSize = queueSize;
+    this.callerRuns = callerRuns;
+    this.fallbackThreadFactory = new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build();
+  }
+
+  /**
+   * Runs the task on a new thread of the current request, now or when a running task finishes.
+   * @throws RejectedExecutionException if the executor is full or shut down and the caller doesn't run the task
+   */
+  @Override
+  public void execute(Runnable command) {
+    QueuedTask task = new QueuedTask(Context.current().wrap(command), threadFactory());
+    boolean full = false;
+    synchronized (this) {
+      if (shutdown) {
+        throw new RejectedExecutionException("Executor is shut down.");
+      }
+      if (runningTasks < maxThreads) {
+        runningTasks++;
+      } else if (queue.size() < queueSize) {
+        queue.add(task);
+        return;
+      } else {
+        full = true;
+      }
+    }
+    if (full) {
+      if (callerRuns) {
+        command.run();
+        return;
+      }
+      throw new RejectedExecutionException("Executor is full.");
+    }
+
+    try {
+      start(task);
+    } catch (RuntimeException threadException) {
+      startNext();
+      throw new RejectedExecutionException("Thread wasn't created.", threadException);
+    }
+  }
+
+  private void start(QueuedTask task) {
+    Thread thread = task.threadFactory.newThread(() -> run(task.task));
+    threads.add(thread);
+    try {
+      thread.start();
+    } catch (RuntimeException threadException) {
+      threads.remove(thread);
+      throw threadException;
+    }
+  }
+
+  private void run(Runnable task) {
+    try {
+      task.run();
+    } finally {
+      threads.remove(Thread.currentThread());
+      startNext();
+    }
+  }
+
+  /**
+   * Passes the place of a finished task to the next queued one, or frees it if the queue is empty.
+   * A queued task whose thread can't be created, e.g. because its request ended, runs on this thread.
+   */
+  private void startNext() {
+    while (true) {
+      QueuedTask next;
+      synchronized (this) {
+        next = queue.poll();
+        if (next == null) {
+          runningTasks--;
+          if (isTerminated()) {
+            notifyAll();
+          }
+          return;
+        }
+      }
+
+      try {
+        start(next);
+        return;
+      } catch (RuntimeException threadException) {
+        try {
+          next.task.run();
+        } catch (RuntimeException taskException) {
+          // Like on its own thread, the exception only ends the task.
+        }
+      }
+    }
+  }
+
+  /** Returns the thread factory of the current request, or a plain one outside of a request. */
+  private ThreadFactory threadFactory() {
+    if (ApiProxy.getCurrentEnvironment() != null) {
+      ThreadFactory requestThreadFactory = ThreadManager.currentRequestThreadFactory();
+      if (requestThreadFactory != null) {
+        return requestThreadFactory;
+      }
+    }
+    return fallbackThreadFactory;
+  }
+
+  /** Returns the number of tasks that are running. */
+  public synchronized int getActiveCount() {
+    return runningTasks;
+  }
+
+  /** Returns how many tasks may run at the same time. */
+  public int getMaximumPoolSize() {
+    return maxThreads;
+  }
+
+  /** Returns the number of tasks waiting for a running one to finish. */
+  public synchronized int getQueuedCount() {
+    return queue.size();
+  }
+
+  @Override
+  public void shutdown() {
+    shutdown = true;
+    synchronized (this) {
+      notifyAll();
+    }
+  }
+
+  /** Removes the queued tasks and returns them, and interrupts the running ones. */
+  @Override
+  public List<Runnable> shutdownNow() {
+    List<Runnable> queuedTasks = new ArrayList<>();
+    synchronized (this) {
+      shutdown = true;
+      for (QueuedTask queuedTask : queue) {
+        queuedTasks.add(queuedTask.task);
+      }
+      queue.clear();
+      notifyAll();
+    }
+    for (Thread thread : threads) {
+      thread.interrupt();
+    }
+    return queuedTasks;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  @Override
+  public synchronized boolean isTerminated() {
+    return shutdown && runningTasks == 0 && queue.isEmpty();
+  }
+
+  @Override
+  public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!isTerminated()) {
+      long remainingNanos = deadline - System.nanoTime();
+      if (remainingNanos <= 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+    }
+    return true;
+  }
+}
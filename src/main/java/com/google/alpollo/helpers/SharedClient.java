@@ -0,0 +1,80 @@
+package com.google.alpollo.helpers;
+
+import com.google.api.gax.core.BackgroundResource;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds one Google Cloud client that is shared by all requests of the instance.
+ * Creating a client opens a gRPC channel pool with its own threads, so it is done
+ * only once, on first use, and the client is closed when the application stops.
+ *
+ * @param <T> type of the client, e.g. LanguageServiceClient
+ */
+public final class SharedClient<T extends BackgroundResource> {
+  /** How long we wait for the in-flight calls when the client is closed. */
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+  /** Every shared client of the application, so they can be closed together. */
+  private static final List<SharedClient<?>> CLIENTS = new CopyOnWriteArrayList<>();
+
+  /** Creates a new client for the given project. */
+  public interface Factory<T> {
+    T create(String projectID) throws IOException;
+  }
+
+  private final Factory<T> factory;
+  private volatile T client;
+
+  public SharedClient(Factory<T> factory) {
+    this.factory = factory;
+    CLIENTS.add(this);
+  }
+
+  /**
+   * Returns the shared client, creating it on the first call.
+   * Safe to call from several threads at once: only one client is ever created.
+   */
+  public T get(String projectID) throws IOException {
+    if (projectID == null) {
+      throw new IllegalStateException("Project ID wasn't defined.");
+    }
+
+    T result = client;
+    if (result == null) {
+      synchronized (this) {
+        result = client;
+        if (result == null) {
+          result = AppTracing.trace("SharedClient.create", () -> factory.create(projectID));
+          client = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /** Closes the client, if it was created. The next {@link #get} call creates a new one. */
+  public synchronized void close() {
+    if (client == null) {
+      return;
+    }
+
+    client.shutdown();
+    try {
+      client.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      client.shutdownNow();
+      client = null;
+    }
+  }
+
+  /** Closes all shared clients of the application. */
+  public static void closeAll() {
+    for (SharedClient<?> sharedClient : CLIENTS) {
+      sharedClient.close();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.google.alpollo.helpers;
+
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Computes content-based keys for texts like lyrics, so the same song sent by
+ * different users maps to the same cached result.
+ */
+public final class TextHasher {
+  private static final Pattern LINE_BREAKS = Pattern.compile("\\r\\n?");
+  private static final Pattern SPACES = Pattern.compile("[ \\t\\x0B\\f]+");
+  private static final Pattern SPACES_AROUND_LINE_BREAK = Pattern.compile(" ?\\n ?");
+  /** Lyrics from lyrics.ovh separate verses with a varying number of empty lines. */
+  private static final Pattern EMPTY_LINES = Pattern.compile("\\n{3,}");
+
+  private TextHasher() {}
+
+  /**
+   * Removes differences that don't change the meaning of the text:
+   * line endings, repeated spaces, repeated empty lines and surrounding whitespace.
+   */
+  public static String normalize(String text) {
+    String normalized = LINE_BREAKS.matcher(text).replaceAll("\n");
+    normalized = SPACES.matcher(normalized).replaceAll(" ");
+    normalized = SPACES_AROUND_LINE_BREAK.matcher(normalized).replaceAll("\n");
+    normalized = EMPTY_LINES.matcher(normalized).replaceAll("\n\n");
+    return normalized.trim();
+  }
+
+  /** Returns the hex encoded SHA-256 hash of the normalized text. */
+  public static String hash(String text) {
+    return Hashing.sha256().hashString(normalize(text), StandardCharsets.UTF_8).toString();
+  }
+}
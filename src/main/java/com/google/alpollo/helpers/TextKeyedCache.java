@@ -0,0 +1,165 @@
+package com.google.alpollo.helpers;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded in-memory cache for results computed from a text, keyed by the hash of the text
+ * (see {@link TextHasher}). The cache is limited by the approximate size of the stored values
+ * in bytes, evicts the least recently used entries first and forgets entries after a TTL.
+ *
+ * @param <V> type of the cached results
+ */
+public final class TextKeyedCache<V> {
+  /** Approximate size of a key and the bookkeeping of one entry. */
+  private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+  /** Computes the value on a cache miss. */
+  public interface Loader<V> {
+    V load() throws IOException;
+  }
+
+  /** All caches of the application, to report their metrics. */
+  private static final List<TextKeyedCache<?>> caches = new CopyOnWriteArrayList<>();
+
+  private final String name;
+  private final ToIntFunction<V> sizeOf;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong loadCount = new AtomicLong();
+  private final AtomicLong collapsedCount = new AtomicLong();
+  private volatile Cache<String, V> cache;
+
+  /**
+   * @param name name of the cached results, used in metrics
+   * @param maxBytes how many bytes the cached values may take approximately
+   * @param ttlMinutes how long a value is kept after it was computed
+   * @param sizeOf returns the approximate size of a value in bytes
+   */
+  public TextKeyedCache(String name, long maxBytes, long ttlMinutes, ToIntFunction<V> sizeOf) {
+    this.name = name;
+    this.sizeOf = sizeOf;
+    configure(maxBytes, ttlMinutes);
+    caches.add(this);
+  }
+
+  /** Returns all caches that were created. */
+  public static List<TextKeyedCache<?>> getAll() {
+    return caches;
+  }
+
+  /** Replaces the cache with an empty one with new limits. */
+  public void configure(long maxBytes, long ttlMinutes) {
+    cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxBytes)
+        .<String, V>weigher((hash, value) -> ENTRY_OVERHEAD_BYTES + sizeOf.applyAsInt(value))
+        .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+        .build();
+  }
+
+  /**
+   * Returns the result for the text, computing it with the loader on a miss.
+   * Concurrent misses for the same text wait for one loader instead of running their own.
+   */
+  public V get(String text, Loader<V> loader) throws IOException {
+    return getByHash(TextHasher.hash(text), loader);
+  }
+
+  /** Same as {@link #get}, for callers that already computed the hash of the text. */
+  public V getByHash(String hash, Loader<V> loader) throws IOException {
+    Cache<String, V> currentCache = cache;
+    V value = currentCache.getIfPresent(hash);
+    if (value != null) {
+      hitCount.incrementAndGet();
+      return value;
+    }
+
+    missCount.incrementAndGet();
+    return load(currentCache, hash, loader);
+  }
+
+  /**
+   * Computes the result after {@link #getIfPresent} didn't find it, without counting the lookup
+   * again. Like {@link #get}, concurrent loads for the same text wait for one loader.
+   */
+  public V loadMissing(String hash, Loader<V> loader) throws IOException {
+    return load(cache, hash, loader);
+  }
+
+  private V load(Cache<String, V> currentCache, String hash, Loader<V> loader) throws IOException {
+    // Guava runs the loader on the thread that started the load, the others wait for its value.
+    boolean[] loaded = {false};
+    try {
+      return currentCache.get(hash, () -> {
+        loaded[0] = true;
+        loadCount.incrementAndGet();
+        return loader.load();
+      });
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    } finally {
+      if (!loaded[0]) {
+        collapsedCount.incrementAndGet();
+      }
+    }
+  }
+
+  /** Returns the cached result by the hash of the text; {@code null} if it isn't cached. */
+  public V getIfPresent(String hash) {
+    V value = cache.getIfPresent(hash);
+    if (value == null) {
+      missCount.incrementAndGet();
+    } else {
+      hitCount.incrementAndGet();
+    }
+    return value;
+  }
+
+  /** Caches a result that was computed elsewhere. */
+  public void put(String hash, V value) {
+    cache.put(hash, value);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** Number of lookups that were answered from the cache. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Number of lookups that didn't find the result in the cache. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Number of times a loader computed the result. */
+  public long getLoadCount() {
+    return loadCount.get();
+  }
+
+  /**
+   * Number of misses of {@link #get} and {@link #loadMissing} that waited for the loader of
+   * a concurrent lookup instead of running their own, i.e. those misses minus the loads.
+   */
+  public long getCollapsedCount() {
+    return collapsedCount.get();
+  }
+}
@@ -2,69 +2,284 @@ package com.google.alpollo.helpers;
 
 import com.google.api.gax.rpc.FixedHeaderProvider;
 import com.google.cloud.texttospeech.v1.*;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ByteString;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Contains methods for converting text to speech.
+ *
+ * Long lyrics are split into parts that are synthesized in parallel, because the API limits
+ * the size of one request and the time of a request grows with the length of the text.
+ * MP3 audio consists of independent frames, so the parts can simply be joined in order.
  */
 public class TextToSpeechService {
-  private static TextToSpeechSettings settings;
   private static final String DEFAULT_LANGUAGE_CODE = "en-US";
+  /** How many bytes of synthesized audio are cached by default. */
+  public static final int DEFAULT_CACHE_MAX_BYTES = 64 * 1024 * 1024;
+  /** How long synthesized audio is cached by default. */
+  public static final int DEFAULT_CACHE_TTL_MINUTES = 24 * 60;
+  /** How many parts of the lyrics are synthesized at the same time by default. */
+  public static final int DEFAULT_SYNTHESIS_THREADS = 4;
+  /** How many parts may wait for a free thread before the caller synthesizes them itself. */
+  private static final int SYNTHESIS_QUEUE_SIZE = 256;
+  /** The API accepts up to 5000 bytes of text per request, we leave some room. */
+  private static final int MAX_CHUNK_BYTES = 4500;
+  private static final Pattern STANZA_SEPARATOR = Pattern.compile("\\n\\s*\\n");
+  /** Keeps the pause between the stanzas packed into one part. */
+  private static final String STANZA_JOINER = "\n\n";
+  /** Separators to split a part that is still too long: lines, then sentences, then words. */
+  private static final Pattern[] CHUNK_SEPARATORS = {
+      Pattern.compile("\\n"), Pattern.compile("(?<=[.!?;])\\s+"), Pattern.compile("\\s+")};
+  private static final String[] CHUNK_JOINERS = {"\n", " ", " "};
+
+  private static final SharedClient<TextToSpeechClient> textToSpeechClient =
+      new SharedClient<>(TextToSpeechService::createTextToSpeechClient);
+  /** Recently synthesized audio by the hash of its text. */
+  private static final TextKeyedCache<ByteString> speechCache =
+      new TextKeyedCache<>("textToSpeech.audio", DEFAULT_CACHE_MAX_BYTES, DEFAULT_CACHE_TTL_MINUTES,
+          ByteString::size);
+  private static volatile ThreadPoolExecutor synthesisExecutor = createExecutor(DEFAULT_SYNTHESIS_THREADS);
 
   private TextToSpeechService() {}
 
+  /** Sets the limits of the audio cache. Cached audio is dropped. */
+  public static void configureCache(int maxBytes, int ttlMinutes) {
+    speechCache.configure(maxBytes, ttlMinutes);
+  }
+
+  /** Sets how many parts of the lyrics are synthesized at the same time. */
+  public static void configureSynthesis(int threads) {
+    ExecutorService previousExecutor = synthesisExecutor;
+    synthesisExecutor = createExecutor(threads);
+    previousExecutor.shutdown();
+  }
+
+  /** Returns the pool that synthesizes the parts of the lyrics, for metrics. */
+  static ThreadPoolExecutor getExecutor() {
+    return synthesisExecutor;
+  }
+
+  /** Stops the synthesis threads. */
+  public static void shutdown() {
+    synthesisExecutor.shutdownNow();
+  }
+
+  private static ThreadPoolExecutor createExecutor(int threads) {
+    // When the queue is full the request thread synthesizes the part itself,
+    // which slows this request down instead of failing it.
+    return new ContextPropagatingThreadPool(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(SYNTHESIS_QUEUE_SIZE),
+        new ThreadFactoryBuilder().setNameFormat("text-to-speech-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  /**
+   * Returns audio that was synthesized recently.
+   *
+   * @param hash hash of the text, see {@link TextHasher}
+   * @return ByteString of audio; {@code null} if it isn't cached anymore.
+   */
+  public static ByteString getCachedSpeech(String hash) {
+    return speechCache.getIfPresent(hash);
+  }
+
   /**
-   * Creates setting for TextToSpeech service. Adds special header to make it
+   * Creates the client for TextToSpeech service. Adds special header to make it
    * work on Cloud Shell.
    * @param projectID
    * @throws IOException
    */
   private static TextToSpeechClient createTextToSpeechClient(String projectID) throws IOException {
-    if (projectID == null) {
-      throw new IllegalStateException("Project ID wasn't defined.");
-    }
-
-    if (settings == null) {
-      settings = TextToSpeechSettings.newBuilder().setHeaderProvider(
-          FixedHeaderProvider.create("X-Goog-User-Project", projectID)).build();
-    }
-
+    TextToSpeechSettings settings = ApiEndpoints.textToSpeech(TextToSpeechSettings.newBuilder().setHeaderProvider(
+        FixedHeaderProvider.create("X-Goog-User-Project", projectID)),
+        TextToSpeechSettings.defaultGrpcTransportProviderBuilder()).build();
     return TextToSpeechClient.create(settings);
   }
 
   /**
-   * Generates speech audio file from the text.
+   * Generates speech audio file from the text and caches it. The cache isn't looked up,
+   * callers that may have the audio already look for it with {@link #getCachedSpeech} first.
    *
    * @param text the text for convertion
    * @return ByteString of audio; {@code null} if we couldn't synthesize speech from the text.
    */
-  public static ByteString convertTextToSpeech(String text, String projectID) throws IOException {
-    try (TextToSpeechClient textToSpeechClient = createTextToSpeechClient(projectID)) {
-      String languageCode = DetectLanguageService.detectLanguage(text, projectID);
+  public static ByteString convertTextToSpeech(String text, String projectID) {
+    try {
+      return AppTracing.trace("TextToSpeechService.convertTextToSpeech", () -> {
+        ByteString audio = synthesizeSpeech(text, projectID, null);
+        speechCache.put(TextHasher.hash(text), audio);
+        return audio;
+      });
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Generates speech audio from the text and writes it to the stream part by part,
+   * as soon as each part is ready, so playback can start before the whole song is synthesized.
+   * The audio is cached; like {@link #convertTextToSpeech}, this doesn't look up the cache.
+   *
+   * @param text the text for convertion
+   * @param out the stream for the audio; it isn't closed
+   * @throws IOException if the speech couldn't be synthesized or written.
+   * Some of the audio may already be written in this case.
+   */
+  public static void streamTextToSpeech(String text, String projectID, OutputStream out) throws IOException {
+    AppTracing.trace("TextToSpeechService.streamTextToSpeech", () -> {
+      speechCache.put(TextHasher.hash(text), synthesizeSpeech(text, projectID, out));
+      return null;
+    });
+  }
 
-      if (languageCode == null) {
-        languageCode = DEFAULT_LANGUAGE_CODE;
+  /**
+   * Synthesizes the parts of the text in parallel and joins them in order.
+   *
+   * @param out if not {@code null}, every part is written to it when it and all parts before it are ready
+   */
+  private static ByteString synthesizeSpeech(String text, String projectID, OutputStream out) throws IOException {
+    TextToSpeechClient client = textToSpeechClient.get(projectID);
+    String languageCode = DetectLanguageService.detectLanguage(text, projectID);
+
+    if (languageCode == null) {
+      languageCode = DEFAULT_LANGUAGE_CODE;
+    }
+
+    VoiceSelectionParams voice =
+        VoiceSelectionParams.newBuilder()
+            .setLanguageCode(languageCode)
+            .setSsmlGender(SsmlVoiceGender.NEUTRAL)
+            .build();
+
+    AudioConfig audioConfig =
+        AudioConfig.newBuilder()
+            .setAudioEncoding(AudioEncoding.MP3)
+            .build();
+
+    List<Future<ByteString>> parts = new ArrayList<>();
+    List<String> chunks = splitIntoChunks(text);
+    AppTracing.putAttribute("parts", chunks.size());
+    for (String chunk : chunks) {
+      SynthesisInput input = SynthesisInput.newBuilder().setText(chunk).build();
+      parts.add(synthesisExecutor.submit(
+          () -> AppMetrics.measureApiCall("textToSpeech.synthesizeSpeech",
+              () -> client.synthesizeSpeech(input, voice, audioConfig)).getAudioContent()));
+    }
+
+    ByteString audio = ByteString.EMPTY;
+    try {
+      for (Future<ByteString> part : parts) {
+        ByteString partAudio = part.get();
+        audio = audio.concat(partAudio);
+        if (out != null) {
+          partAudio.writeTo(out);
+          out.flush();
+        }
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Speech synthesis was interrupted.", e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    } finally {
+      // If a part failed, the other parts aren't needed anymore.
+      for (Future<ByteString> part : parts) {
+        part.cancel(true);
+      }
+    }
+
+    return audio;
+  }
 
-      VoiceSelectionParams voice =
-          VoiceSelectionParams.newBuilder()
-              .setLanguageCode(languageCode)
-              .setSsmlGender(SsmlVoiceGender.NEUTRAL)
-              .build();
+  /**
+   * Splits the text into parts that can be synthesized separately. Every request to the API
+   * costs quota and time, so consecutive stanzas are packed into parts of up to the size the API
+   * allows; a stanza longer than that is split into groups of lines, sentences or words.
+   * The first stanza is a part of its own, so the start of the song is ready early when it is streamed.
+   */
+  public static List<String> splitIntoChunks(String text) {
+    List<String> chunks = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    for (String stanza : STANZA_SEPARATOR.split(TextHasher.normalize(text))) {
+      if (stanza.isEmpty()) {
+        continue;
+      }
+      if (chunks.isEmpty() && current.length() == 0) {
+        addChunks(chunks, stanza, 0);
+        continue;
+      }
+      if (current.length() > 0
+          && byteLength(current) + STANZA_JOINER.length() + byteLength(stanza) > MAX_CHUNK_BYTES) {
+        chunks.add(current.toString());
+        current.setLength(0);
+      }
+      if (byteLength(stanza) > MAX_CHUNK_BYTES) {
+        addChunks(chunks, stanza, 0);
+        continue;
+      }
+      if (current.length() > 0) {
+        current.append(STANZA_JOINER);
+      }
+      current.append(stanza);
+    }
+    if (current.length() > 0) {
+      chunks.add(current.toString());
+    }
+    return chunks;
+  }
 
-      AudioConfig audioConfig =
-          AudioConfig.newBuilder()
-              .setAudioEncoding(AudioEncoding.MP3)
-              .build();
+  /** Adds the text as one chunk, or splits it with the separator of the given level if it is too long. */
+  private static void addChunks(List<String> chunks, String text, int level) {
+    if (byteLength(text) <= MAX_CHUNK_BYTES) {
+      chunks.add(text);
+      return;
+    }
 
-      SynthesisInput input = SynthesisInput.newBuilder().setText(text).build();
-      SynthesizeSpeechResponse response =
-          textToSpeechClient.synthesizeSpeech(input, voice, audioConfig);
+    if (level == CHUNK_SEPARATORS.length) {
+      // A single "word" that is too long, cut it so that even 4-byte characters fit.
+      int maxChars = MAX_CHUNK_BYTES / 4;
+      int start = 0;
+      while (start < text.length()) {
+        int end = Math.min(start + maxChars, text.length());
+        if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+          end--;
+        }
+        chunks.add(text.substring(start, end));
+        start = end;
+      }
+      return;
+    }
 
-      return response.getAudioContent();
-    } catch (IOException e) {
-      return null;
+    StringBuilder current = new StringBuilder();
+    for (String piece : CHUNK_SEPARATORS[level].split(text)) {
+      if (current.length() > 0
+          && byteLength(current) + CHUNK_JOINERS[level].length() + byteLength(piece) > MAX_CHUNK_BYTES) {
+        addChunks(chunks, current.toString(), level + 1);
+        current.setLength(0);
+      }
+      if (current.length() > 0) {
+        current.append(CHUNK_JOINERS[level]);
+      }
+      current.append(piece);
+    }
+    if (current.length() > 0) {
+      addChunks(chunks, current.toString(), level + 1);
     }
   }
+
+  private static int byteLength(CharSequence text) {
+    return text.toString().getBytes(StandardCharsets.UTF_8).length;
+  }
 }
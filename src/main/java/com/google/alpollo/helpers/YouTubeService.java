@@ -1,34 +1,199 @@
 package com.google.alpollo.helpers;
 
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.YouTubeRequestInitializer;
+import com.google.api.services.youtube.model.SearchListResponse;
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 /**
- * Class for creating YouTube service.
+ * Class for creating YouTube service and searching for music videos.
+ *
+ * Search results are cached by the normalized query, because every search costs 100 units
+ * of quota. Batches of queries are deduplicated and their misses are searched in parallel.
  */
 public final class YouTubeService {
   private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+  // This topic ID was found this file: https://gist.github.com/stpe/2951130dfc8f1d0d1a2ad736bef3b703
+  private static final String MUSIC_TOPIC_ID = "/m/04rlf";
+  private static final long MAX_RESULTS = 5L;
+  /** How many queries one batch may contain. */
+  public static final int MAX_BATCH_QUERIES = 20;
+  /** How many searches of a batch run at the same time by default. */
+  public static final int DEFAULT_SEARCH_THREADS = 8;
+  /** How many bytes of video ids are cached by default. Every query takes about 200 bytes. */
+  public static final int DEFAULT_CACHE_MAX_BYTES = 4 * 1024 * 1024;
+  /** Popular videos for a query change slowly, but they do change. */
+  public static final int DEFAULT_CACHE_TTL_MINUTES = 6 * 60;
+  private static final int VIDEO_ID_BYTES = 16;
+  /**
+   * Video ids by the normalized query. Users asking for videos of the same song at the same time
+   * wait for the cache, so they share one search.
+   */
+  private static final TextKeyedCache<List<String>> videoCache = new TextKeyedCache<>("youtube.videos",
+      DEFAULT_CACHE_MAX_BYTES, DEFAULT_CACHE_TTL_MINUTES, videoIds -> videoIds.size() * VIDEO_ID_BYTES);
+  private static volatile RequestThreadExecutor searchExecutor = createExecutor(DEFAULT_SEARCH_THREADS);
+
+  /** Client with the API key it was built for. */
+  private static final class CachedService {
+    private final String apiKey;
+    private final YouTube youTube;
+
+    private CachedService(String apiKey, YouTube youTube) {
+      this.apiKey = apiKey;
+      this.youTube = youTube;
+    }
+  }
+
+  private static volatile CachedService cachedService;
 
   private YouTubeService() {}
 
+  /** Sets the limits of the search cache. Cached results are dropped. */
+  public static void configureCache(int maxBytes, int ttlMinutes) {
+    videoCache.configure(maxBytes, ttlMinutes);
+  }
+
+  /** Sets how many searches of a batch run at the same time. */
+  public static void configureSearch(int threads) {
+    ExecutorService previousExecutor = searchExecutor;
+    searchExecutor = createExecutor(threads);
+    previousExecutor.shutdown();
+  }
+
+  /** Returns the executor that runs the searches of a batch, for metrics. */
+  static RequestThreadExecutor getExecutor() {
+    return searchExecutor;
+  }
+
+  /** Stops the search threads. */
+  public static void shutdown() {
+    searchExecutor.shutdownNow();
+  }
+
+  private static RequestThreadExecutor createExecutor(int threads) {
+    // The API client calls URL Fetch, which only works on threads of the request. When all threads
+    // are busy the request thread searches itself instead of waiting in a queue.
+    return new RequestThreadExecutor("youtube-search", threads, 0, true);
+  }
+
   /**
-   * Build and return an authorized API client service.
+   * Build and return an authorized API client service. The client is built once
+   * on the shared transport and reused while the API key is the same.
    *
    * @return an authorized API client service
    * @throws GeneralSecurityException, IOException
    */
   public static YouTube getService(String apiKey) throws GeneralSecurityException, IOException {
+    CachedService currentService = cachedService;
+    if (currentService != null && Objects.equals(currentService.apiKey, apiKey)) {
+      return currentService.youTube;
+    }
+
     final YouTubeRequestInitializer keyInitializer = new YouTubeRequestInitializer(apiKey);
-    final NetHttpTransport httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-    return new YouTube.Builder(httpTransport, JSON_FACTORY, null)
+    YouTube youTube = new YouTube.Builder(HttpTransports.getTransport(), JSON_FACTORY,
+        HttpTransports.getTimeoutInitializer())
         .setApplicationName("YouTube Alpollo")
+        .setRootUrl(ApiEndpoints.getYouTubeRootUrl())
         .setYouTubeRequestInitializer(keyInitializer)
         .build();
+    cachedService = new CachedService(apiKey, youTube);
+    return youTube;
+  }
+
+  /**
+   * Returns the ids of the 5 most viewed music videos for the query.
+   * Only videos are returned, no playlists or channels.
+   */
+  public static List<String> searchVideoIds(String query, String apiKey) throws IOException {
+    String normalizedQuery = normalizeQuery(query);
+    return videoCache.get(normalizedQuery, () -> requestVideoIds(normalizedQuery, apiKey));
+  }
+
+  /**
+   * Returns the ids of the videos for every query. Queries that differ only in case and spacing
+   * are searched once, and queries that aren't cached are searched in parallel.
+   *
+   * @return video ids by query, in the order of the queries
+   * @throws IOException if any of the searches failed
+   */
+  public static Map<String, List<String>> searchVideoIds(Collection<String> queries, String apiKey)
+      throws IOException {
+    Map<String, CompletableFuture<List<String>>> searches = new HashMap<>();
+    for (String query : queries) {
+      String normalizedQuery = normalizeQuery(query);
+      if (searches.containsKey(normalizedQuery)) {
+        continue;
+      }
+
+      String hash = TextHasher.hash(normalizedQuery);
+      List<String> cachedVideoIds = videoCache.getIfPresent(hash);
+      if (cachedVideoIds != null) {
+        searches.put(normalizedQuery, CompletableFuture.completedFuture(cachedVideoIds));
+        continue;
+      }
+
+      CompletableFuture<List<String>> search = new CompletableFuture<>();
+      searchExecutor.execute(() -> {
+        try {
+          // The lookup was counted as a miss already.
+          search.complete(videoCache.loadMissing(hash, () -> requestVideoIds(normalizedQuery, apiKey)));
+        } catch (IOException | RuntimeException e) {
+          search.completeExceptionally(e);
+        }
+      });
+      searches.put(normalizedQuery, search);
+    }
+
+    Map<String, List<String>> videoIds = new LinkedHashMap<>();
+    try {
+      for (String query : queries) {
+        videoIds.put(query, searches.get(normalizeQuery(query)).get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("YouTube search was interrupted.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+    return videoIds;
+  }
+
+  private static List<String> requestVideoIds(String query, String apiKey) throws IOException {
+    YouTube youtubeService;
+    try {
+      youtubeService = getService(apiKey);
+    } catch (GeneralSecurityException e) {
+      throw new IOException("YouTube service couldn't be created.", e);
+    }
+
+    // Define and execute the API request
+    YouTube.Search.List vidRequest = youtubeService.search().list("snippet");
+    vidRequest.setMaxResults(MAX_RESULTS).setQ(query)
+        .setTopicId(MUSIC_TOPIC_ID).setOrder("viewCount").setType("video");
+    SearchListResponse vidResponse = AppMetrics.measureApiCall("youtube.search", vidRequest::execute);
+    return ImmutableList.copyOf(vidResponse.getItems().stream()
+        .map(searchResult -> searchResult.getId().getVideoId()).collect(Collectors.toList()));
+  }
+
+  /** Makes queries with different case and spacing equal, YouTube search ignores both. */
+  private static String normalizeQuery(String query) {
+    return AutocompleteIndex.normalize(query);
   }
 }
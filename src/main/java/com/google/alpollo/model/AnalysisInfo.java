@@ -1,5 +1,6 @@
 package com.google.alpollo.model;
 
+import java.util.Date;
 import java.util.List;
 import com.googlecode.objectify.annotation.Index;
 import com.googlecode.objectify.annotation.Entity;
@@ -20,6 +21,10 @@ public class AnalysisInfo {
   @Index private String lyrics;
   /** After analyzing the entities, we'll have a list of recommended YouTube video IDs. */
   @Index private List<String> youTubeIds;
+  /** Number of searches of the song when the analysis was last used, for LFU eviction. */
+  @Index private int searchCounter;
+  /** When the analysis was last saved or read, for LRU eviction. */
+  @Index private Date lastAccessed;
 
   /** Objectify requires no argument constructor. Do not use it. */
   private AnalysisInfo() { }
@@ -38,7 +43,33 @@ public class AnalysisInfo {
     this.id = this.song.id();
   }
 
+  public Long getId() {
+    return id;
+  }
+
   public Song getSong() {
     return song;
   }
-}
\ No newline at end of file
+
+  public SongSentiment getSongSentiment() {
+    return songSentiment;
+  }
+
+  public List<SongEntity> getTopSalientEntities() {
+    return topSalientEntities;
+  }
+
+  public String getLyrics() {
+    return lyrics;
+  }
+
+  public List<String> getYouTubeIds() {
+    return youTubeIds;
+  }
+
+  /** Records that the analysis was used when the song had the given number of searches. */
+  public void recordAccess(int searchCounter, Date accessed) {
+    this.searchCounter = Math.max(this.searchCounter, searchCounter);
+    this.lastAccessed = accessed;
+  }
+}
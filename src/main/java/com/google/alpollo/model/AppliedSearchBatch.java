@@ -0,0 +1,34 @@
+package com.google.alpollo.model;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Index;
+import java.util.Date;
+
+/**
+ * Marks a batch of searches as added to the SongCounterShards. The queue may run the task
+ * of a batch again after the shards were saved, the marker makes sure the batch is counted once.
+ */
+@Entity
+public class AppliedSearchBatch {
+  /** Id the batch got when it was enqueued. */
+  @Id private String id;
+  /** When the batch was added to the shards, old markers are deleted. */
+  @Index private Date applied;
+
+  /** Objectify requires no argument constructor. Do not use it. */
+  private AppliedSearchBatch() { }
+
+  public AppliedSearchBatch(String id, Date applied) {
+    this.id = id;
+    this.applied = applied;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public Date getApplied() {
+    return applied;
+  }
+}
@@ -0,0 +1,39 @@
+package com.google.alpollo.model;
+
+import java.util.Date;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * Result of a Natural Language API call, saved so that new instances don't have to call
+ * the API again for lyrics that were already analyzed.
+ * The result is stored as the serialized protocol buffer returned by the API.
+ */
+@Entity
+public class CachedAnalysis {
+  /** Type of the analysis and the hash of the lyrics, e.g. "sentiment:3f2a...". */
+  @Id private String id;
+  private byte[] result;
+  private Date savedAt;
+
+  /** Objectify requires no argument constructor. Do not use it. */
+  private CachedAnalysis() { }
+
+  public CachedAnalysis(String id, byte[] result) {
+    this.id = id;
+    this.result = result;
+    this.savedAt = new Date();
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public byte[] getResult() {
+    return result;
+  }
+
+  public Date getSavedAt() {
+    return savedAt;
+  }
+}
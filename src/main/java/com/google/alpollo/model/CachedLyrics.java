@@ -0,0 +1,38 @@
+package com.google.alpollo.model;
+
+import java.util.Date;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * Lyrics of a song fetched from the lyrics provider, saved so that no instance
+ * has to fetch them again. The lyrics are stored GZIP compressed.
+ */
+@Entity
+public class CachedLyrics {
+  /** Id of the song, see {@link Song#id()}. */
+  @Id private Long id;
+  private byte[] compressedLyrics;
+  private Date savedAt;
+
+  /** Objectify requires no argument constructor. Do not use it. */
+  private CachedLyrics() { }
+
+  public CachedLyrics(Long id, byte[] compressedLyrics) {
+    this.id = id;
+    this.compressedLyrics = compressedLyrics;
+    this.savedAt = new Date();
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public byte[] getCompressedLyrics() {
+    return compressedLyrics;
+  }
+
+  public Date getSavedAt() {
+    return savedAt;
+  }
+}
@@ -1,24 +1,45 @@
 package com.google.alpollo.model;
 
+import com.google.alpollo.servlets.AnalyzeServlet;
 import com.google.alpollo.servlets.EntityServlet;
 import com.google.alpollo.servlets.SentimentServlet;
+import com.google.alpollo.servlets.TextToSpeechServlet;
 
 /**
- * Class that contains only lyrics field.
+ * Class that contains the lyrics, or the song whose lyrics the server should fetch.
  * Represents body request of the next servlets:
  * @see SentimentServlet
  * @see EntityServlet
+ * @see AnalyzeServlet
+ * @see TextToSpeechServlet
  *
  * Used only for deserialization.
  */
 public final class Lyrics {
   private final String lyrics;
+  /** Used only if there are no lyrics. */
+  private final String artistName;
+  private final String songName;
 
   public Lyrics(String lyrics) {
+    this(lyrics, null, null);
+  }
+
+  public Lyrics(String lyrics, String artistName, String songName) {
     this.lyrics = lyrics;
+    this.artistName = artistName;
+    this.songName = songName;
   }
 
   public String getLyrics() {
     return lyrics;
   }
+
+  public String getArtistName() {
+    return artistName;
+  }
+
+  public String getSongName() {
+    return songName;
+  }
 }
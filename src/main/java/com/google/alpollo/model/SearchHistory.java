@@ -5,24 +5,47 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Comparator;
-import com.googlecode.objectify.annotation.Index;
+import java.util.Iterator;
+import java.util.TreeSet;
 import com.googlecode.objectify.annotation.Id;
 import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Ignore;
+import com.googlecode.objectify.annotation.IgnoreSave;
+import com.googlecode.objectify.annotation.OnLoad;
 import com.googlecode.objectify.annotation.Stringify;
 import com.google.alpollo.database.SongStringifier;
 
-/** 
+/**
  * Represents the structure of user's search history.
- * Contains the list with all songs.
+ *
+ * Only the {@link #CAPACITY} most searched songs are kept, counted with the Space-Saving algorithm:
+ * a new song replaces the least searched one and inherits its counter, so a song searched often
+ * enough is never dropped and the entity doesn't grow with every new song.
+ * The songs are kept in order, so adding a search costs O(log CAPACITY) and reading the top
+ * doesn't sort anything.
  */
 @Entity
 public class SearchHistory {
-  @Id private String id;
-  @Stringify(SongStringifier.class)
-  /** Saves search counter for each song that was searched by user. */
-  private HashMap<Song, Integer> history = new HashMap<>();
   /** Number of the songs that will be shown to the user. */
   private static final int TOP_SIZE = 10;
+  /** Number of the songs that are counted; more than shown, so the top is accurate. */
+  public static final int CAPACITY = 100;
+  /** Most searched songs first, songs with equal counters in a fixed order. */
+  private static final Comparator<SearchedSong> BY_SEARCH_COUNTER =
+      Comparator.comparingInt((SearchedSong searchedSong) -> searchedSong.count).reversed()
+          .thenComparingInt(searchedSong -> searchedSong.error)
+          .thenComparing(searchedSong -> searchedSong.song);
+
+  @Id private String id;
+  /** Counted songs, saved in no particular order. */
+  private List<SearchedSong> songs = new ArrayList<>();
+  /** Counter of every song, saved before the history was bounded. Only read, to convert it. */
+  @IgnoreSave
+  @Stringify(SongStringifier.class)
+  private HashMap<Song, Integer> history;
+  /** Counted songs by {@link Song#getString()}, and the same songs in order. */
+  @Ignore private Map<String, SearchedSong> songsByKey = new HashMap<>();
+  @Ignore private TreeSet<SearchedSong> orderedSongs = new TreeSet<>(BY_SEARCH_COUNTER);
 
   /** Objectify requires no argument constructor. Do not use it. */
   private SearchHistory() { }
@@ -33,22 +56,92 @@ public class SearchHistory {
 
   /** Saves new search request from authorized user. */
   public void addSearchRequest(Song song) {
-    if (history.containsKey(song)) {
-      history.put(song, history.get(song) + 1);
+    String key = song.getString();
+    SearchedSong searchedSong = songsByKey.get(key);
+    if (searchedSong != null) {
+      orderedSongs.remove(searchedSong);
+      searchedSong.count++;
+    } else if (songsByKey.size() < CAPACITY) {
+      searchedSong = new SearchedSong(key, 1, 0);
+      songs.add(searchedSong);
+      songsByKey.put(key, searchedSong);
     } else {
-      history.put(song, 1);
+      // The new song takes the place of the least searched one. It may have been searched
+      // as many times as the replaced song before, so that counter becomes its error.
+      searchedSong = orderedSongs.pollLast();
+      songsByKey.remove(searchedSong.song);
+      searchedSong.error = searchedSong.count;
+      searchedSong.count++;
+      searchedSong.song = key;
+      songsByKey.put(key, searchedSong);
     }
+    orderedSongs.add(searchedSong);
   }
 
   /** Returns list with top 10 searched songs from authorized user. */
   public List<Song> getHistory() {
-    // Sort by values and then add only top 10 songs to result list 
-    List<Song> sortedSongs = new ArrayList<>();
-    history.entrySet()
-           .stream()
-           .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-           .limit(TOP_SIZE)
-           .forEachOrdered(x -> sortedSongs.add(x.getKey()));
-    return sortedSongs;
+    List<Song> topSongs = new ArrayList<>(TOP_SIZE);
+    Iterator<SearchedSong> iterator = orderedSongs.iterator();
+    while (iterator.hasNext() && topSongs.size() < TOP_SIZE) {
+      topSongs.add(new Song(iterator.next().song));
+    }
+    return topSongs;
+  }
+
+  /** Returns the number of counted songs, at most {@link #CAPACITY}. */
+  public int getSongCount() {
+    return songsByKey.size();
+  }
+
+  /**
+   * Orders the loaded songs. A history saved before it was bounded is converted: the counters of
+   * equal songs are added up and only the most searched songs are kept, so the next save shrinks it.
+   */
+  @OnLoad
+  private void orderSongs() {
+    songsByKey = new HashMap<>();
+    orderedSongs = new TreeSet<>(BY_SEARCH_COUNTER);
+    if (songs == null) {
+      songs = new ArrayList<>();
+    }
+    if (history != null) {
+      for (Map.Entry<Song, Integer> entry : history.entrySet()) {
+        songs.add(new SearchedSong(entry.getKey().getString(), entry.getValue(), 0));
+      }
+      history = null;
+    }
+    for (SearchedSong searchedSong : songs) {
+      SearchedSong sameSong = songsByKey.get(searchedSong.song);
+      if (sameSong != null) {
+        orderedSongs.remove(sameSong);
+        searchedSong.count += sameSong.count;
+        searchedSong.error += sameSong.error;
+      }
+      songsByKey.put(searchedSong.song, searchedSong);
+      orderedSongs.add(searchedSong);
+    }
+    while (orderedSongs.size() > CAPACITY) {
+      songsByKey.remove(orderedSongs.pollLast().song);
+    }
+    songs = new ArrayList<>(songsByKey.values());
+  }
+
+  /** A counted song, embedded in the history. */
+  private static class SearchedSong {
+    /** The song as returned by {@link Song#getString()}. */
+    private String song;
+    /** Number of searches, possibly overestimated by up to {@code error}. */
+    private int count;
+    /** Searches counted for songs this one replaced. */
+    private int error;
+
+    /** Objectify requires no argument constructor. Do not use it. */
+    private SearchedSong() { }
+
+    private SearchedSong(String song, int count, int error) {
+      this.song = song;
+      this.count = count;
+      this.error = error;
+    }
   }
-}
\ No newline at end of file
+}
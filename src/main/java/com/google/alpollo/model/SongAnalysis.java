@@ -0,0 +1,28 @@
+package com.google.alpollo.model;
+
+import java.util.List;
+
+/**
+ * Class that contains the sentiment and the most important entities of a song.
+ * Represents the response of the AnalyzeServlet.
+ *
+ * Used only for serialization.
+ */
+public final class SongAnalysis {
+  private final SongSentiment songSentiment;
+  /** TopSalientEntities is a list containing the 10 most important words, given the song context. */
+  private final List<SongEntity> topSalientEntities;
+
+  public SongAnalysis(SongSentiment songSentiment, List<SongEntity> topSalientEntities) {
+    this.songSentiment = songSentiment;
+    this.topSalientEntities = topSalientEntities;
+  }
+
+  public SongSentiment getSongSentiment() {
+    return songSentiment;
+  }
+
+  public List<SongEntity> getTopSalientEntities() {
+    return topSalientEntities;
+  }
+}
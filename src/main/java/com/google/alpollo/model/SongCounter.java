@@ -11,6 +11,11 @@ public class SongCounter {
   @Index private Song song;
   /** Number of times users searched for this song in the system. */
   @Index private int searchCounter = 0;
+  /**
+   * Whether the searches are counted by SongCounterShard entities. Then searchCounter is only
+   * a copy of their total, used to sort the songs. Counters saved before have no shards yet.
+   */
+  private boolean sharded = false;
 
   /** Objectify requires no argument constructor. Do not use it. */
   private SongCounter() { }
@@ -20,6 +25,16 @@ public class SongCounter {
     id = song.id();
   }
 
+  /** Creates a counter of a song that was searched the given number of times. */
+  public SongCounter(Song song, int searchCounter) {
+    this(song);
+    this.searchCounter = searchCounter;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
   public Song getSong() {
     return song;
   }
@@ -29,7 +44,20 @@ public class SongCounter {
     searchCounter++;
   }
 
+  /**
+   * Sets the counter to the total of the SongCounterShard entities, unless it's already higher,
+   * and marks the searches as counted by the shards.
+   */
+  public void updateShardedTotal(int total) {
+    searchCounter = Math.max(searchCounter, total);
+    sharded = true;
+  }
+
   public int getSearchCounter() {
     return searchCounter;
   }
-}
\ No newline at end of file
+
+  public boolean isSharded() {
+    return sharded;
+  }
+}
@@ -0,0 +1,46 @@
+package com.google.alpollo.model;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Index;
+
+/**
+ * One part of the search counter of a song. The counter is split into several entities,
+ * so that searches of a popular song don't all write the same entity.
+ * The total number of searches is the sum of all shards of the song.
+ */
+@Entity
+public class SongCounterShard {
+  /** Shard that holds the searches counted before the counter was split into shards. */
+  public static final String LEGACY_SHARD = "legacy";
+
+  /** Song id and shard name, e.g. "123456-3". */
+  @Id private String id;
+  @Index private Long songId;
+  private int searchCounter = 0;
+
+  /** Objectify requires no argument constructor. Do not use it. */
+  private SongCounterShard() { }
+
+  public SongCounterShard(Song song, String shard) {
+    id = createId(song.id(), shard);
+    songId = song.id();
+  }
+
+  public static String createId(Long songId, String shard) {
+    return songId + "-" + shard;
+  }
+
+  public Long getSongId() {
+    return songId;
+  }
+
+  /** Adds the given number of searches to the shard. */
+  public void addSearches(int searches) {
+    searchCounter += searches;
+  }
+
+  public int getSearchCounter() {
+    return searchCounter;
+  }
+}
@@ -86,6 +86,10 @@ public class SongEntity {
     return salience;
   }
 
+  public String getWikiLink() {
+    return wikiLink;
+  }
+
   public void setSalience(double newSalience) {
     salience = newSalience;
   }
@@ -0,0 +1,23 @@
+package com.google.alpollo.model;
+
+import com.google.alpollo.servlets.YouTubeBatchServlet;
+import java.util.List;
+
+/**
+ * Class that contains only queries field.
+ * Represents body request of the next servlets:
+ * @see YouTubeBatchServlet
+ *
+ * Used only for deserialization.
+ */
+public final class YouTubeQueries {
+  private final List<String> queries;
+
+  public YouTubeQueries(List<String> queries) {
+    this.queries = queries;
+  }
+
+  public List<String> getQueries() {
+    return queries;
+  }
+}
@@ -0,0 +1,27 @@
+package com.google.alpollo.servlets;
+
+import com.google.alpollo.database.AnalysisInfoStore;
+import com.google.common.io.CharStreams;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet called by the task queue to save the reads of analyses recorded by {@link AnalysisInfoStore}.
+ * Only administrators and the task queue can call it, see web.xml.
+ */
+@WebServlet(AnalysisInfoStore.ACCESSES_TASK_URL)
+public class AnalysisAccessesTaskServlet extends HttpServlet {
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String payload = CharStreams.toString(request.getReader());
+    try {
+      AnalysisInfoStore.saveAccesses(payload);
+    } catch (RuntimeException databaseException) {
+      // The task queue retries the task after an error.
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Reads weren't saved.");
+    }
+  }
+}
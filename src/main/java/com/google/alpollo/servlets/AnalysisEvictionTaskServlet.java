@@ -0,0 +1,25 @@
+package com.google.alpollo.servlets;
+
+import com.google.alpollo.database.AnalysisInfoStore;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet called by cron to trim the saved analyses to the capacity of {@link AnalysisInfoStore}.
+ * Only administrators and cron can call it, see web.xml.
+ */
+@WebServlet(AnalysisInfoStore.EVICTION_TASK_URL)
+public class AnalysisEvictionTaskServlet extends HttpServlet {
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    try {
+      AnalysisInfoStore.evict();
+    } catch (RuntimeException databaseException) {
+      // The next run of cron tries again, the store may only be over capacity for a while.
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Analyses weren't evicted.");
+    }
+  }
+}
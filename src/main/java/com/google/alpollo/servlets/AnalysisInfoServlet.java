@@ -7,6 +7,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.google.alpollo.database.SongDataBase;
+import com.google.alpollo.helpers.JsonHelper;
 import com.google.alpollo.model.AnalysisInfo;
 import com.google.gson.Gson;
 import com.google.gson.JsonIOException;
@@ -16,7 +17,7 @@ import com.google.gson.JsonSyntaxException;
 @WebServlet("/analysis-info")
 public class AnalysisInfoServlet extends HttpServlet {
   private static final String SONG_ID = "id";
-  private final Gson gson = new Gson();
+  private final Gson gson = JsonHelper.getGson();
   /**
    * Making a GET request to our servlet with the desired song ID as a parameter
    * will return that song from the database.
@@ -28,7 +29,7 @@ public class AnalysisInfoServlet extends HttpServlet {
 
     response.setContentType("application/json; charset=UTF-8");
     try {
-      response.getWriter().println(gson.toJson(analysisInfo));
+      JsonHelper.writeJson(response, analysisInfo);
     } catch (IOException e) {
       response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
     }
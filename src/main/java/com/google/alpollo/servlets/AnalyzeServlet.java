@@ -0,0 +1,59 @@
+package com.google.alpollo.servlets;
+
+import java.io.IOException;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.alpollo.helpers.AnalysisHelper;
+import com.google.alpollo.helpers.AsyncRequestExecutor;
+import com.google.alpollo.helpers.ConfigHelper;
+import com.google.alpollo.helpers.JsonHelper;
+import com.google.alpollo.helpers.LyricsService;
+import com.google.alpollo.model.Lyrics;
+import com.google.alpollo.model.SongAnalysis;
+import com.google.alpollo.model.SongEntity;
+import com.google.alpollo.model.SongSentiment;
+import com.google.cloud.language.v1.AnnotateTextResponse;
+import com.google.cloud.language.v1.Sentiment;
+import com.google.gson.Gson;
+
+/**
+ * Sending a POST request with the lyrics of the song as a parameter will return to the client
+ * both the sentiment of the song and a list of its most important entities.
+ * It does the work of SentimentServlet and EntityServlet with one call to the API.
+ */
+@WebServlet(value = "/analyze", asyncSupported = true)
+public class AnalyzeServlet extends HttpServlet {
+  private final Gson gson = JsonHelper.getGson();
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    AsyncRequestExecutor.execute(request, response, this::analyze);
+  }
+
+  private void analyze(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    try {
+      final String lyrics = LyricsService.resolveLyrics(gson.fromJson(request.getReader(), Lyrics.class));
+      if (lyrics == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "No lyrics found.");
+        return;
+      }
+      String projectID = ConfigHelper.getSensitiveData(this.getServletContext(), ConfigHelper.SENSITIVE_DATA.PROJECT_ID);
+
+      AnnotateTextResponse annotation = AnalysisHelper.getSentimentAndEntities(projectID, lyrics);
+      Sentiment sentiment = annotation.getDocumentSentiment();
+      SongSentiment songSentiment = new SongSentiment(sentiment.getScore(), sentiment.getMagnitude());
+      List<SongEntity> simplifiedEntityList = AnalysisHelper.getSimplifiedEntityList(annotation.getEntitiesList());
+      List<SongEntity> topSalientEntities = AnalysisHelper.getFilteredTopEntities(simplifiedEntityList);
+
+      response.setContentType("application/json; charset=UTF-8");
+      JsonHelper.writeJson(response, new SongAnalysis(songSentiment, topSalientEntities));
+    } catch (IllegalStateException | IOException analysisException) {
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+          analysisException.getMessage());
+    }
+  }
+}
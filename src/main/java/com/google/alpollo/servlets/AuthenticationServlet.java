@@ -7,13 +7,11 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import com.google.gson.Gson;
+import com.google.alpollo.helpers.JsonHelper;
 
 /** Servlet that returns an auth info that includes status whether the user logged in and link to auth. */
 @WebServlet("/auth")
 public class AuthenticationServlet extends HttpServlet {
-  private final Gson gson = new Gson();
-
   /** Class that provides info about logged in status of the user and link to the authentication. */
   private class LoggedInInfo {
     private final boolean isLoggedIn;
@@ -32,6 +30,6 @@ public class AuthenticationServlet extends HttpServlet {
 
     boolean isLoggedIn = userService.isUserLoggedIn();
     String authUrl = userService.createLoginURL("/");
-    response.getWriter().println(gson.toJson(new LoggedInInfo(isLoggedIn, authUrl)));
+    JsonHelper.writeJson(response, new LoggedInInfo(isLoggedIn, authUrl));
   }
 }
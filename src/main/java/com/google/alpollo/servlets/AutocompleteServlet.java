@@ -2,120 +2,48 @@ package com.google.alpollo.servlets;
 
 import com.google.alpollo.model.AutocompleteSearchRequest;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.EnumSet;
 import java.util.List;
-import java.util.Set;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import com.google.alpollo.helpers.AsyncRequestExecutor;
+import com.google.alpollo.helpers.AutocompleteService;
 import com.google.alpollo.helpers.ConfigHelper;
-import com.google.api.client.http.GenericUrl;
-import com.google.api.client.http.HttpRequest;
-import com.google.api.client.http.HttpRequestFactory;
-import com.google.api.client.http.HttpResponse;
-import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.alpollo.helpers.JsonHelper;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonIOException;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
-import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.Option;
-import com.jayway.jsonpath.spi.json.GsonJsonProvider;
-import com.jayway.jsonpath.spi.json.JsonProvider;
-import com.jayway.jsonpath.spi.mapper.GsonMappingProvider;
-import com.jayway.jsonpath.spi.mapper.MappingProvider;
 
-@WebServlet("/autocomplete")
+@WebServlet(value = "/autocomplete", asyncSupported = true)
 public class AutocompleteServlet extends HttpServlet {
-  private final Gson gson = new Gson();
-  private final static String LIMIT = "10";
-
-  private enum SearchType {
-    ARTIST, SONG;
-  };
-
-  public AutocompleteServlet() {
-    configJsonPathWithGson();
-  }
+  private final Gson gson = JsonHelper.getGson();
 
   /**
    * Making a POST request to this servlet with a search string and the type
-   * searched for as parameters will make a call to the Knowledge Graph Search API
-   * and it will return a list of possible search results.
+   * searched for as parameters will return a list of possible search results,
+   * from the suggestions we know or from the Knowledge Graph Search API.
    */
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    List<String> typeList;
+    AsyncRequestExecutor.execute(request, response, this::suggest);
+  }
+
+  private void suggest(HttpServletRequest request, HttpServletResponse response) throws IOException {
     try {
       AutocompleteSearchRequest searchRequest = gson.fromJson(request.getReader(), AutocompleteSearchRequest.class);
       String searchString = searchRequest.getSearchString();
-      SearchType type = SearchType.valueOf(searchRequest.getType());
-      switch (type) {
-        case ARTIST:
-          typeList = Arrays.asList("Person", "MusicGroup");
-          break;
-        case SONG:
-          typeList = Arrays.asList("MusicRecording");
-          break;
-        default:
-          typeList = new ArrayList<>();
-      }
+      AutocompleteService.SearchType type = AutocompleteService.SearchType.valueOf(searchRequest.getType());
+      String apiKey = ConfigHelper.getSensitiveData(this.getServletContext(), ConfigHelper.SENSITIVE_DATA.API_KEY);
 
-      HttpTransport httpTransport = new NetHttpTransport();
-      HttpRequestFactory requestFactory = httpTransport.createRequestFactory();
+      List<String> results = AutocompleteService.search(type, searchString, apiKey);
 
-      GenericUrl url = new GenericUrl("https://kgsearch.googleapis.com/v1/entities:search");
-      url.put("query", searchString);
-      url.put("limit", LIMIT);
-      url.put("types", typeList);
-      url.put("key", ConfigHelper.getSensitiveData(this.getServletContext(), ConfigHelper.SENSITIVE_DATA.API_KEY));
-
-      HttpRequest autocompleteRequest = requestFactory.buildGetRequest(url);
-      HttpResponse autocompleteResponse = autocompleteRequest.execute();
-      JsonObject responseObject = (JsonObject) JsonParser.parseString(autocompleteResponse.parseAsString());
-      JsonArray elements = (JsonArray) responseObject.get("itemListElement");
-
-      List<String> results = new ArrayList<>();
-      for (Object element : elements) {
-        results.add(JsonPath.read(element, "$.result.name").toString().replace("\"", ""));
-      }
-
-      String json = gson.toJson(results);
       response.setContentType("application/json");
-      response.getWriter().println(json);
+      JsonHelper.writeJson(response, results);
     } catch (JsonSyntaxException | JsonIOException | IOException autoException) {
       response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, autoException.getMessage());
     } catch (IllegalArgumentException enumException) {
       response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Type not supported.");
     }
   }
-
-  private static void configJsonPathWithGson() {
-    Configuration.setDefaults(new Configuration.Defaults() {
-      private final JsonProvider jsonProvider = new GsonJsonProvider();
-      private final MappingProvider mappingProvider = new GsonMappingProvider();
-        
-      @Override
-      public JsonProvider jsonProvider() {
-          return jsonProvider;
-      }
-  
-      @Override
-      public MappingProvider mappingProvider() {
-          return mappingProvider;
-      }
-      
-      @Override
-      public Set<Option> options() {
-          return EnumSet.noneOf(Option.class);
-      }
-    });
-  }
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+package com.google.alpollo.servlets;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A single byte range asked for in a Range header (RFC 7233), resolved against the size of the body.
+ *
+ * Only single ranges are supported. A header the server doesn't understand, including a list of
+ * several ranges, is ignored and the whole body is sent, as the RFC allows.
+ */
+final class ByteRange {
+  /** Range of a header that is valid but starts past the end of the body, answered with 416. */
+  static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+  /** "bytes=0-99", "bytes=100-" or "bytes=-100". */
+  private static final Pattern BYTE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+  private final int start;
+  private final int end;
+
+  private ByteRange(int start, int end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Parses the Range header of a request for a body of the given size.
+   * @return the range to send; {@link #UNSATISFIABLE} if no byte of it is in the body;
+   *     {@code null} if the header must be ignored and the whole body sent.
+   */
+  static ByteRange parse(String header, int size) {
+    if (header == null) {
+      return null;
+    }
+    Matcher matcher = BYTE_RANGE.matcher(header.trim());
+    if (!matcher.matches()) {
+      return null;
+    }
+    String first = matcher.group(1);
+    String last = matcher.group(2);
+    if (first.isEmpty() && last.isEmpty()) {
+      return null;
+    }
+
+    if (first.isEmpty()) {
+      // Suffix range, the last N bytes.
+      long suffixLength = parsePosition(last);
+      if (suffixLength == 0 || size == 0) {
+        return UNSATISFIABLE;
+      }
+      return new ByteRange((int) Math.max(0, size - suffixLength), size - 1);
+    }
+
+    long start = parsePosition(first);
+    long end = last.isEmpty() ? Long.MAX_VALUE : parsePosition(last);
+    if (end < start) {
+      // Not a valid range at all, rather than one outside of the body.
+      return null;
+    }
+    if (start >= size) {
+      return UNSATISFIABLE;
+    }
+    return new ByteRange((int) start, (int) Math.min(end, size - 1));
+  }
+
+  /** Positions too big for a long are past the end of any body anyway. */
+  private static long parsePosition(String position) {
+    try {
+      return Long.parseLong(position);
+    } catch (NumberFormatException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  boolean isSatisfiable() {
+    return this != UNSATISFIABLE;
+  }
+
+  /** Index of the first byte of the range. */
+  int getStart() {
+    return start;
+  }
+
+  /** Index of the last byte of the range, inclusive. */
+  int getEnd() {
+    return end;
+  }
+
+  int getLength() {
+    return end - start + 1;
+  }
+
+  /** Returns the value of the Content-Range header of the response. */
+  String toContentRange(int size) {
+    return isSatisfiable() ? "bytes " + start + "-" + end + "/" + size : "bytes */" + size;
+  }
+}
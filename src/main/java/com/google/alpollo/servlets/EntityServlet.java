@@ -8,7 +8,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.google.alpollo.helpers.AnalysisHelper;
+import com.google.alpollo.helpers.AsyncRequestExecutor;
 import com.google.alpollo.helpers.ConfigHelper;
+import com.google.alpollo.helpers.JsonHelper;
+import com.google.alpollo.helpers.LyricsService;
 import com.google.alpollo.model.Lyrics;
 import com.google.alpollo.model.SongEntity;
 import com.google.cloud.language.v1.Entity;
@@ -18,22 +21,29 @@ import com.google.gson.Gson;
  * Sending a POST request with the lyrics of the song as a parameter will return to the client
  * a list of the most important entities (people, places, things) found in that song.
  */
-@WebServlet("/entity")
+@WebServlet(value = "/entity", asyncSupported = true)
 public class EntityServlet extends HttpServlet {
-  private final Gson gson = new Gson();
+  private final Gson gson = JsonHelper.getGson();
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    AsyncRequestExecutor.execute(request, response, this::getEntities);
+  }
+
+  private void getEntities(HttpServletRequest request, HttpServletResponse response) throws IOException {
     try {
-      final String lyrics = gson.fromJson(request.getReader(), Lyrics.class).getLyrics();
+      final String lyrics = LyricsService.resolveLyrics(gson.fromJson(request.getReader(), Lyrics.class));
+      if (lyrics == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "No lyrics found.");
+        return;
+      }
       String projectID = ConfigHelper.getSensitiveData(this.getServletContext(), ConfigHelper.SENSITIVE_DATA.PROJECT_ID);
       // Get the Entity list from the API
       List<Entity> entityList = AnalysisHelper.getEntityList(projectID, lyrics);
       List<SongEntity> simplifiedEntityList = AnalysisHelper.getSimplifiedEntityList(entityList);
       List<SongEntity> topSalientEntities = AnalysisHelper.getFilteredTopEntities(simplifiedEntityList);
-      String json = gson.toJson(topSalientEntities);
       response.setContentType("application/json; charset=UTF-8");
-      response.getWriter().println(json);
+      JsonHelper.writeJson(response, topSalientEntities);
     } catch (IllegalStateException | IOException entityException) {
         response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
             entityException.getMessage());
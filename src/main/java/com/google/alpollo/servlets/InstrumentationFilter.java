@@ -0,0 +1,101 @@
+package com.google.alpollo.servlets;
+
+import com.google.alpollo.helpers.AppMetrics;
+import com.google.alpollo.helpers.AppTracing;
+import io.opencensus.common.Scope;
+import io.opencensus.trace.AttributeValue;
+import io.opencensus.trace.Span;
+import io.opencensus.trace.Status;
+import java.io.IOException;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records how long the servlets take to complete their responses, by servlet and status,
+ * and traces every request in a span named after its method and servlet, e.g. "POST /analyze".
+ * The span is current while the servlet runs, so the spans of the helpers are its children.
+ *
+ * For asynchronous servlets the time runs until the response is completed. The spec defers a
+ * completion that happens during this dispatch until the dispatch returns, so the listener added
+ * after the chain returns always sees it.
+ */
+@WebFilter(urlPatterns = {"/analysis-info", "/analyze", "/auth", "/autocomplete", "/entity", "/history",
+    "/lyrics", "/sentiment", "/song-analysis", "/text-to-speech", "/top", "/youtube", "/youtube-batch"},
+    asyncSupported = true)
+public class InstrumentationFilter implements Filter {
+  @Override
+  public void init(FilterConfig filterConfig) {}
+
+  @Override
+  public void destroy() {}
+
+  @Override
+  public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+      throws IOException, ServletException {
+    HttpServletRequest request = (HttpServletRequest) servletRequest;
+    HttpServletResponse response = (HttpServletResponse) servletResponse;
+    String servlet = request.getServletPath();
+    Span span = AppTracing.startSpan(request.getMethod() + " " + servlet);
+    long start = System.nanoTime();
+    boolean failed = true;
+    try (Scope scope = AppTracing.withSpan(span)) {
+      chain.doFilter(request, response);
+      failed = false;
+    } finally {
+      if (failed) {
+        complete(span, servlet, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, start);
+      } else if (request.isAsyncStarted()) {
+        request.getAsyncContext().addListener(new CompletionListener(span, servlet, start));
+      } else {
+        complete(span, servlet, response.getStatus(), start);
+      }
+    }
+  }
+
+  private static void complete(Span span, String servlet, int status, long start) {
+    AppMetrics.recordServlet(servlet, status, System.nanoTime() - start);
+    span.putAttribute("http.status_code", AttributeValue.longAttributeValue(status));
+    if (status >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR) {
+      span.setStatus(Status.UNKNOWN.withDescription("HTTP " + status));
+    }
+    span.end();
+  }
+
+  /** Records the request when its asynchronous response is completed. */
+  private static final class CompletionListener implements AsyncListener {
+    private final Span span;
+    private final String servlet;
+    private final long start;
+
+    private CompletionListener(Span span, String servlet, long start) {
+      this.span = span;
+      this.servlet = servlet;
+      this.start = start;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      // Also called after a timeout or an error, with the status that was sent.
+      HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
+      complete(span, servlet, response.getStatus(), start);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {}
+
+    @Override
+    public void onError(AsyncEvent event) {}
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+  }
+}
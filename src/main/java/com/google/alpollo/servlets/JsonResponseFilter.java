@@ -0,0 +1,329 @@
+package com.google.alpollo.servlets;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Compresses the responses of the JSON endpoints with GZIP when the client accepts it,
+ * and lets the client revalidate the responses of GET requests.
+ *
+ * The body is compressed while the servlet writes it. Successful GET responses get a strong ETag,
+ * the hash of the body computed while it is written, and a Cache-Control header for their endpoint;
+ * a request whose If-None-Match contains the ETag gets 304 without the body. Those responses are
+ * kept compressed until the servlet finishes them, the other responses are streamed.
+ * Asynchronous servlets finish the response with {@link HttpServletResponse#flushBuffer()},
+ * see {@code AsyncRequestExecutor}.
+ */
+@WebFilter(urlPatterns = {"/top", "/history", "/analysis-info", "/autocomplete"}, asyncSupported = true)
+public class JsonResponseFilter implements Filter {
+  /** Smaller bodies fit in one packet anyway, compressing them only costs time. */
+  static final int MIN_COMPRESSED_BYTES = 256;
+  /** Compressed bytes are written to the client in chunks of this size. */
+  private static final int GZIP_BUFFER_BYTES = 8192;
+  /** Cache-Control of the GET responses by endpoint. */
+  private static final Map<String, String> CACHE_CONTROL = ImmutableMap.of(
+      // The top is the same for everyone and changes with every few searches.
+      "/top", "public, max-age=30",
+      // The history is different for every user and changes with each of their searches.
+      "/history", "private, no-cache",
+      // A saved analysis is replaced when the song is analyzed again, so it's revalidated every time.
+      "/analysis-info", "public, no-cache");
+
+  @Override
+  public void init(FilterConfig filterConfig) {}
+
+  @Override
+  public void destroy() {}
+
+  @Override
+  public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+      throws IOException, ServletException {
+    HttpServletRequest request = (HttpServletRequest) servletRequest;
+    HttpServletResponse response = (HttpServletResponse) servletResponse;
+    CompressingResponse compressingResponse = new CompressingResponse(request, response);
+    try {
+      chain.doFilter(request, compressingResponse);
+    } finally {
+      if (!request.isAsyncStarted()) {
+        compressingResponse.flushBuffer();
+      }
+    }
+  }
+
+  /** Checks whether the client accepts GZIP encoded responses. */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.trim().split(";");
+      if (parts[0].trim().equalsIgnoreCase("gzip")) {
+        return parts.length < 2 || !parts[1].replace(" ", "").equals("q=0");
+      }
+    }
+    return false;
+  }
+
+  /** Checks whether the If-None-Match header contains the ETag. */
+  static boolean matchesETag(String ifNoneMatch, String eTag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String trimmed = candidate.trim();
+      if (trimmed.equals("*") || trimmed.equals(eTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compresses the body while the servlet writes it. A body that gets an ETag is kept, compressed,
+   * until {@link #flushBuffer()}, because the ETag is a header and is known only at the end;
+   * any other body is streamed to the client. Errors are sent at once, without buffering.
+   */
+  private static final class CompressingResponse extends HttpServletResponseWrapper {
+    private final HttpServletRequest request;
+    /** Start of the body, kept until it is long enough to be worth compressing. */
+    private final ByteArrayOutputStream head = new ByteArrayOutputStream(MIN_COMPRESSED_BYTES);
+    private final ServletOutputStream bodyStream = new ServletOutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        writeBody(new byte[] {(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] bytes, int offset, int length) throws IOException {
+        writeBody(bytes, offset, length);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        throw new UnsupportedOperationException("Compressed response doesn't support non-blocking writes.");
+      }
+    };
+    /** Where the rest of the body is written; {@code null} while the head is being filled. */
+    private OutputStream sink;
+    private GZIPOutputStream gzipStream;
+    /** Hashes the plain body of a response that gets an ETag. */
+    private HashingOutputStream hashingStream;
+    /** Body of a response that gets an ETag, as it will be sent. */
+    private ByteArrayOutputStream validatedBody;
+    private boolean usesOutputStream;
+    private PrintWriter writer;
+    private int status = SC_OK;
+    /** Set when the response was sent, or when an error was sent directly. */
+    private boolean finished;
+
+    private CompressingResponse(HttpServletRequest request, HttpServletResponse response) {
+      super(response);
+      this.request = request;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (finished) {
+        return super.getOutputStream();
+      }
+      if (writer != null) {
+        throw new IllegalStateException("getWriter() was already called.");
+      }
+      usesOutputStream = true;
+      return bodyStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      if (finished) {
+        return super.getWriter();
+      }
+      if (usesOutputStream) {
+        throw new IllegalStateException("getOutputStream() was already called.");
+      }
+      if (writer == null) {
+        writer = new PrintWriter(new OutputStreamWriter(bodyStream, getCharacterEncoding()));
+      }
+      return writer;
+    }
+
+    private void writeBody(byte[] bytes, int offset, int length) throws IOException {
+      if (sink == null) {
+        if (head.size() + length < MIN_COMPRESSED_BYTES) {
+          head.write(bytes, offset, length);
+          return;
+        }
+        startBody(acceptsGzip(request.getHeader("Accept-Encoding")));
+      }
+      sink.write(bytes, offset, length);
+    }
+
+    /** Checks whether the response is a successful GET of an endpoint that the client may revalidate. */
+    private boolean getsETag() {
+      return "GET".equals(request.getMethod()) && status == SC_OK
+          && CACHE_CONTROL.containsKey(request.getServletPath());
+    }
+
+    /** Decides where the body goes and writes the head there. */
+    private void startBody(boolean gzip) throws IOException {
+      HttpServletResponse response = (HttpServletResponse) getResponse();
+      response.addHeader("Vary", "Accept-Encoding");
+      OutputStream target;
+      if (getsETag()) {
+        validatedBody = new ByteArrayOutputStream();
+        target = validatedBody;
+      } else {
+        if (gzip) {
+          response.setHeader("Content-Encoding", "gzip");
+        }
+        target = response.getOutputStream();
+      }
+      if (gzip) {
+        target = gzipStream = new GZIPOutputStream(target, GZIP_BUFFER_BYTES);
+      }
+      if (validatedBody != null) {
+        target = hashingStream = new HashingOutputStream(Hashing.sha256(), target);
+      }
+      sink = target;
+      head.writeTo(sink);
+      head.reset();
+    }
+
+    @Override
+    public void setStatus(int status) {
+      this.status = status;
+      super.setStatus(status);
+    }
+
+    @Override
+    public void sendError(int status, String message) throws IOException {
+      finished = true;
+      super.sendError(status, message);
+    }
+
+    @Override
+    public void sendError(int status) throws IOException {
+      finished = true;
+      super.sendError(status);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+      finished = true;
+      super.sendRedirect(location);
+    }
+
+    /** The length is known only after compression. */
+    @Override
+    public void setContentLength(int length) {}
+
+    @Override
+    public void setContentLengthLong(long length) {}
+
+    @Override
+    public void reset() {
+      resetBuffer();
+      super.reset();
+      status = SC_OK;
+    }
+
+    /** @throws IllegalStateException if a part of the body was already streamed */
+    @Override
+    public void resetBuffer() {
+      if (finished) {
+        return;
+      }
+      if (isStreaming()) {
+        throw new IllegalStateException("Part of the body was already sent.");
+      }
+      if (writer != null) {
+        writer.flush();
+      }
+      head.reset();
+      sink = null;
+      gzipStream = null;
+      hashingStream = null;
+      validatedBody = null;
+    }
+
+    private boolean isStreaming() {
+      return sink != null && validatedBody == null;
+    }
+
+    @Override
+    public boolean isCommitted() {
+      return finished || isStreaming() || super.isCommitted();
+    }
+
+    /** Finishes the body and sends what is left of it. Later calls do nothing. */
+    @Override
+    public void flushBuffer() throws IOException {
+      if (finished) {
+        return;
+      }
+      if (writer != null) {
+        writer.flush();
+      }
+      finished = true;
+
+      HttpServletResponse response = (HttpServletResponse) getResponse();
+      if (sink == null) {
+        // The whole body is too short to be worth compressing.
+        if (!getsETag()) {
+          response.setContentLength(head.size());
+        }
+        startBody(false);
+      }
+      if (gzipStream != null) {
+        gzipStream.finish();
+      }
+      if (validatedBody == null) {
+        response.flushBuffer();
+        return;
+      }
+
+      boolean gzip = gzipStream != null;
+      if (getsETag()) {
+        // Compressed and plain bodies are different representations, so their strong ETags differ.
+        String eTag = "\"" + hashingStream.hash() + (gzip ? "-gzip" : "") + "\"";
+        response.setHeader("ETag", eTag);
+        response.setHeader("Cache-Control", CACHE_CONTROL.get(request.getServletPath()));
+        if (matchesETag(request.getHeader("If-None-Match"), eTag)) {
+          response.setStatus(SC_NOT_MODIFIED);
+          return;
+        }
+      }
+      if (gzip) {
+        response.setHeader("Content-Encoding", "gzip");
+      }
+      response.setContentLength(validatedBody.size());
+      validatedBody.writeTo(response.getOutputStream());
+      response.flushBuffer();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.google.alpollo.servlets;
+
+import com.google.alpollo.helpers.AsyncRequestExecutor;
+import com.google.alpollo.helpers.JsonHelper;
+import com.google.alpollo.helpers.LyricsService;
+import com.google.alpollo.model.Lyrics;
+import com.google.alpollo.model.Song;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Returns the lyrics of a song, fetched and stored on the server.
+ * The response has the same shape as the one of lyrics.ovh, which the client used before.
+ */
+@WebServlet(value = "/lyrics", asyncSupported = true)
+public class LyricsServlet extends HttpServlet {
+  /** Making a GET request with the artist and song parameters will return the lyrics of the song. */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    AsyncRequestExecutor.execute(request, response, this::getLyrics);
+  }
+
+  private void getLyrics(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType("application/json; charset=UTF-8");
+    String artist = request.getParameter("artist");
+    String songName = request.getParameter("song");
+    if (artist == null || artist.trim().isEmpty() || songName == null || songName.trim().isEmpty()) {
+      sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Empty artist or song.");
+      return;
+    }
+
+    String lyrics;
+    try {
+      lyrics = LyricsService.getLyrics(new Song(artist.trim(), songName.trim()));
+    } catch (IOException providerException) {
+      sendError(response, HttpServletResponse.SC_BAD_GATEWAY, "Lyrics are not available now.");
+      return;
+    }
+    if (lyrics == null) {
+      sendError(response, HttpServletResponse.SC_NOT_FOUND, "No lyrics found");
+      return;
+    }
+
+    JsonHelper.writeJson(response, new Lyrics(lyrics));
+  }
+
+  /** Sends the error as JSON, the client shows the message to the user. */
+  private void sendError(HttpServletResponse response, int status, String message) throws IOException {
+    JsonObject error = new JsonObject();
+    error.addProperty("error", message);
+    response.setStatus(status);
+    JsonHelper.writeJson(response, error);
+  }
+}
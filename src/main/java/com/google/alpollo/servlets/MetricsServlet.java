@@ -0,0 +1,23 @@
+package com.google.alpollo.servlets;
+
+import com.google.alpollo.helpers.AppMetrics;
+import com.google.alpollo.helpers.PrometheusWriter;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that returns the current metrics of the application in the Prometheus text format.
+ * Only administrators of the project may read them, see web.xml.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType(PrometheusWriter.CONTENT_TYPE);
+    response.setHeader("Cache-Control", "no-store");
+    PrometheusWriter.write(AppMetrics.getMetrics(), response.getWriter());
+  }
+}
@@ -0,0 +1,25 @@
+package com.google.alpollo.servlets;
+
+import com.google.alpollo.database.SearchCounterAggregator;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet called by cron to delete the markers of search batches whose tasks can't run anymore,
+ * see {@link SearchCounterAggregator}. Only administrators and cron can call it, see web.xml.
+ */
+@WebServlet(SearchCounterAggregator.EXPIRE_BATCHES_TASK_URL)
+public class SearchBatchExpirationTaskServlet extends HttpServlet {
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    try {
+      SearchCounterAggregator.deleteExpiredBatches();
+    } catch (RuntimeException databaseException) {
+      // The next run of cron tries again, old markers only take some space until then.
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Search batches weren't deleted.");
+    }
+  }
+}
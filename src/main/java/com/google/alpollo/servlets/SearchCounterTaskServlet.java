@@ -0,0 +1,27 @@
+package com.google.alpollo.servlets;
+
+import com.google.alpollo.database.SearchCounterAggregator;
+import com.google.common.io.CharStreams;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet called by the task queue to save the searches counted by {@link SearchCounterAggregator}.
+ * Only administrators and the task queue can call it, see web.xml.
+ */
+@WebServlet(SearchCounterAggregator.TASK_URL)
+public class SearchCounterTaskServlet extends HttpServlet {
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String payload = CharStreams.toString(request.getReader());
+    try {
+      SearchCounterAggregator.saveSearches(payload);
+    } catch (RuntimeException databaseException) {
+      // The task queue retries the task after an error.
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Searches weren't saved.");
+    }
+  }
+}
@@ -7,7 +7,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.google.alpollo.helpers.AnalysisHelper;
+import com.google.alpollo.helpers.AsyncRequestExecutor;
 import com.google.alpollo.helpers.ConfigHelper;
+import com.google.alpollo.helpers.JsonHelper;
+import com.google.alpollo.helpers.LyricsService;
 import com.google.alpollo.model.Lyrics;
 import com.google.alpollo.model.SongSentiment;
 import com.google.cloud.language.v1.Sentiment;
@@ -17,22 +20,29 @@ import com.google.gson.Gson;
  * Sending a POST request with the lyrics of the song as a parameter will give the Client
  * the overall positivity of the song and how strong the sentiment of the song is.
  */
-@WebServlet("/sentiment")
+@WebServlet(value = "/sentiment", asyncSupported = true)
 public class SentimentServlet extends HttpServlet {
-  private final Gson gson = new Gson();
+  private final Gson gson = JsonHelper.getGson();
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    AsyncRequestExecutor.execute(request, response, this::getSentiment);
+  }
+
+  private void getSentiment(HttpServletRequest request, HttpServletResponse response) throws IOException {
     try {
-      final String lyrics = gson.fromJson(request.getReader(), Lyrics.class).getLyrics();
+      final String lyrics = LyricsService.resolveLyrics(gson.fromJson(request.getReader(), Lyrics.class));
+      if (lyrics == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "No lyrics found.");
+        return;
+      }
       String projectID = ConfigHelper.getSensitiveData(this.getServletContext(), ConfigHelper.SENSITIVE_DATA.PROJECT_ID);
 
       Sentiment sentiment = AnalysisHelper.getSentiment(projectID, lyrics);
       SongSentiment songSentiment = new SongSentiment(sentiment.getScore(), sentiment.getMagnitude());
 
-      String json = gson.toJson(songSentiment);
       response.setContentType("application/json; charset=UTF-8");
-      response.getWriter().println(json);
+      JsonHelper.writeJson(response, songSentiment);
     } catch (IllegalStateException | IOException sentimentException) {
       response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
               sentimentException.getMessage());
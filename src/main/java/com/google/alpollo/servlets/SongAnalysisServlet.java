@@ -0,0 +1,66 @@
+package com.google.alpollo.servlets;
+
+import com.google.alpollo.database.SongDataBase;
+import com.google.alpollo.helpers.AnalysisPipeline;
+import com.google.alpollo.helpers.AsyncRequestExecutor;
+import com.google.alpollo.helpers.ConfigHelper;
+import com.google.alpollo.helpers.JsonHelper;
+import com.google.alpollo.model.AnalysisInfo;
+import com.google.alpollo.model.Lyrics;
+import com.google.alpollo.model.Song;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Sending a POST request with the artist and the name of the song will return the whole analysis
+ * of the song (the same object as {@link AnalysisInfoServlet} returns) and save it.
+ * The lyrics are fetched on the server, lyrics in the request are ignored.
+ */
+@WebServlet(value = "/song-analysis", asyncSupported = true)
+public class SongAnalysisServlet extends HttpServlet {
+  private final Gson gson = JsonHelper.getGson();
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // The user is read on the thread of the request, the analysis is saved on other threads.
+    String userId = SongDataBase.getCurrentUserId();
+    AsyncRequestExecutor.execute(request, response, (req, resp) -> analyzeSong(req, resp, userId));
+  }
+
+  private void analyzeSong(HttpServletRequest request, HttpServletResponse response, String userId)
+      throws IOException {
+    Lyrics body;
+    try {
+      body = gson.fromJson(request.getReader(), Lyrics.class);
+    } catch (JsonParseException parseException) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Incorrect request body.");
+      return;
+    }
+    if (body == null || body.getArtistName() == null || body.getArtistName().trim().isEmpty()
+        || body.getSongName() == null || body.getSongName().trim().isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Empty artist or song.");
+      return;
+    }
+
+    Song song = new Song(body.getArtistName().trim(), body.getSongName().trim());
+    String projectID = ConfigHelper.getSensitiveData(this.getServletContext(), ConfigHelper.SENSITIVE_DATA.PROJECT_ID);
+    String apiKey = ConfigHelper.getSensitiveData(this.getServletContext(), ConfigHelper.SENSITIVE_DATA.API_KEY);
+    try {
+      AnalysisInfo analysisInfo = AnalysisPipeline.analyzeAndSave(song, userId, projectID, apiKey);
+      if (analysisInfo == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "No lyrics found.");
+        return;
+      }
+
+      response.setContentType("application/json; charset=UTF-8");
+      JsonHelper.writeJson(response, analysisInfo);
+    } catch (IllegalStateException | IOException analysisException) {
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, analysisException.getMessage());
+    }
+  }
+}
@@ -1,6 +1,10 @@
 package com.google.alpollo.servlets;
 
+import com.google.alpollo.helpers.AsyncRequestExecutor;
 import com.google.alpollo.helpers.ConfigHelper;
+import com.google.alpollo.helpers.JsonHelper;
+import com.google.alpollo.helpers.LyricsService;
+import com.google.alpollo.helpers.TextHasher;
 import com.google.alpollo.helpers.TextToSpeechService;
 import com.google.alpollo.model.Lyrics;
 import com.google.gson.Gson;
@@ -11,27 +15,156 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-@WebServlet("/text-to-speech")
+/**
+ * Returns the lyrics read by a synthesized voice as an MP3 file.
+ * The audio is identified by the hash of the lyrics, which is used as its ETag,
+ * so the client can revalidate it with a GET request or download a part of it with a Range request.
+ */
+@WebServlet(value = "/text-to-speech", asyncSupported = true)
 public class TextToSpeechServlet extends HttpServlet {
-  private final Gson gson = new Gson();
+  private static final String AUDIO_CONTENT_TYPE = "audio/mpeg";
+  /** The audio of some lyrics never changes, but it is only useful to the user who asked for it. */
+  private static final String CACHE_CONTROL = "private, max-age=86400";
+  private static final String AUDIO_ID = "id";
+  private final Gson gson = JsonHelper.getGson();
 
+  /**
+   * Making a POST request with the artist and the name of a song, or with the lyrics, will
+   * synthesize the speech of the lyrics and return the audio. The audio can be requested again with a GET request
+   * to the URL from the Content-Location header while it is cached.
+   */
+  @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    AsyncRequestExecutor.execute(request, response, this::synthesizeSpeech);
+  }
+
+  private void synthesizeSpeech(HttpServletRequest request, HttpServletResponse response) throws IOException {
     try {
-      String lyrics = gson.fromJson(request.getReader(), Lyrics.class).getLyrics();
+      String lyrics = LyricsService.resolveLyrics(gson.fromJson(request.getReader(), Lyrics.class));
+      if (lyrics == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "No lyrics found.");
+        return;
+      }
+      // A POST can't be answered with 304 Not Modified, so If-None-Match is ignored.
+      String hash = TextHasher.hash(lyrics);
       String projectID = ConfigHelper.getSensitiveData(this.getServletContext(), ConfigHelper.SENSITIVE_DATA.PROJECT_ID);
-      ByteString audioContents = TextToSpeechService.convertTextToSpeech(lyrics, projectID);
+      response.setHeader("Content-Location", "/text-to-speech?" + AUDIO_ID + "=" + hash);
+      ByteString audioContents = TextToSpeechService.getCachedSpeech(hash);
+      if (audioContents == null && request.getHeader("Range") == null) {
+        // Stream the audio while it is being synthesized, its length isn't known yet.
+        setAudioHeaders(response, hash);
+        TextToSpeechService.streamTextToSpeech(lyrics, projectID, response.getOutputStream());
+        return;
+      }
 
+      if (audioContents == null) {
+        audioContents = TextToSpeechService.convertTextToSpeech(lyrics, projectID);
+      }
       if (audioContents == null) {
         response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
             "Couldn't generate audio from the text.");
         return;
       }
 
-      byte[] audio = audioContents.toByteArray();
-      response.setContentType("application/json;");
-      response.getWriter().println(gson.toJson(audio));
+      writeAudio(request, response, hash, audioContents);
     } catch (Exception e) {
+      if (response.isCommitted()) {
+        // Part of the audio was already sent, the client will see a truncated file.
+        return;
+      }
+      response.reset();
       response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
     }
   }
+
+  /**
+   * Making a GET request with the hash of the lyrics as the id parameter will return
+   * audio that was synthesized recently, without calling the API.
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String hash = request.getParameter(AUDIO_ID);
+    if (hash == null || hash.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Empty id.");
+      return;
+    }
+
+    if (isNotModified(request, hash)) {
+      sendNotModified(response, hash);
+      return;
+    }
+
+    ByteString audioContents = TextToSpeechService.getCachedSpeech(hash);
+    if (audioContents == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND,
+          "Audio is not available anymore, send the song again.");
+      return;
+    }
+
+    writeAudio(request, response, hash, audioContents);
+  }
+
+  /** Writes the audio, or the part of it that was asked for in the Range header, to the response. */
+  private static void writeAudio(HttpServletRequest request, HttpServletResponse response,
+      String hash, ByteString audio) throws IOException {
+    setAudioHeaders(response, hash);
+
+    int size = audio.size();
+    ByteRange range = ByteRange.parse(request.getHeader("Range"), size);
+    if (range == null) {
+      response.setContentLength(size);
+      audio.writeTo(response.getOutputStream());
+      return;
+    }
+
+    response.setHeader("Content-Range", range.toContentRange(size));
+    if (!range.isSatisfiable()) {
+      response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+      return;
+    }
+    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    response.setContentLength(range.getLength());
+    audio.substring(range.getStart(), range.getEnd() + 1).writeTo(response.getOutputStream());
+  }
+
+  private static void setAudioHeaders(HttpServletResponse response, String hash) {
+    response.setContentType(AUDIO_CONTENT_TYPE);
+    response.setHeader("ETag", eTag(hash));
+    response.setHeader("Cache-Control", CACHE_CONTROL);
+    response.setHeader("Accept-Ranges", "bytes");
+  }
+
+  /** Checks whether the client already has the audio for this text. */
+  private static boolean isNotModified(HttpServletRequest request, String hash) {
+    return matchesETag(request.getHeader("If-None-Match"), eTag(hash));
+  }
+
+  /** Checks whether the If-None-Match header names the ETag, or any ETag. */
+  static boolean matchesETag(String ifNoneMatch, String eTag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+
+    for (String candidate : ifNoneMatch.split(",")) {
+      String trimmed = candidate.trim();
+      // A weak comparison is enough for If-None-Match.
+      if (trimmed.startsWith("W/")) {
+        trimmed = trimmed.substring(2);
+      }
+      if (trimmed.equals("*") || trimmed.equals(eTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void sendNotModified(HttpServletResponse response, String hash) {
+    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    response.setHeader("ETag", eTag(hash));
+    response.setHeader("Cache-Control", CACHE_CONTROL);
+  }
+
+  static String eTag(String hash) {
+    return "\"" + hash + "\"";
+  }
 }
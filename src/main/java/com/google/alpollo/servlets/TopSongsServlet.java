@@ -9,18 +9,16 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.List;
-import com.google.gson.Gson;
+import com.google.alpollo.helpers.JsonHelper;
 
 /** Servlet that returns a list of the most requested songs. */
 @WebServlet("/top")
 public class TopSongsServlet extends HttpServlet {
-  private final Gson gson = new Gson();
-
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
     response.setContentType("application/json; charset=UTF-8");
 
     final List<SongCounter> songs = SongDataBase.topSongs();
-    response.getWriter().write(gson.toJson(songs));
+    JsonHelper.writeJson(response, songs);
   }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.google.alpollo.servlets;
+
+import com.google.alpollo.helpers.AutocompleteService;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that App Engine calls when it starts an instance, before sending it users' requests.
+ * Fills the in-memory data that needs the database, which isn't available at startup.
+ */
+@WebServlet("/_ah/warmup")
+public class WarmupServlet extends HttpServlet {
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) {
+    AutocompleteService.seed();
+  }
+}
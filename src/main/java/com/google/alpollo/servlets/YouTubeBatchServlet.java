@@ -0,0 +1,67 @@
+package com.google.alpollo.servlets;
+
+import com.google.alpollo.helpers.AsyncRequestExecutor;
+import com.google.alpollo.helpers.ConfigHelper;
+import com.google.alpollo.helpers.JsonHelper;
+import com.google.alpollo.helpers.YouTubeService;
+import com.google.alpollo.model.YouTubeQueries;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that returns the most popular videos for several queries at once,
+ * e.g. for all entities of a song.
+ */
+@WebServlet(value = "/youtube-batch", asyncSupported = true)
+public class YouTubeBatchServlet extends HttpServlet {
+  private final Gson gson = JsonHelper.getGson();
+
+  /**
+   * Making a POST request with a list of queries as a parameter will return
+   * a JSON object with the list of video ids for every query.
+   */
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    AsyncRequestExecutor.execute(request, response, this::searchVideos);
+  }
+
+  private void searchVideos(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    List<String> queries;
+    try {
+      YouTubeQueries youTubeQueries = gson.fromJson(request.getReader(), YouTubeQueries.class);
+      queries = youTubeQueries == null ? null : youTubeQueries.getQueries();
+    } catch (JsonSyntaxException | JsonIOException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Queries must be a list of strings.");
+      return;
+    }
+
+    if (queries == null || queries.isEmpty()
+        || queries.stream().anyMatch(query -> query == null || query.trim().isEmpty())) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Empty query.");
+      return;
+    }
+    if (queries.size() > YouTubeService.MAX_BATCH_QUERIES) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "At most " + YouTubeService.MAX_BATCH_QUERIES + " queries are allowed.");
+      return;
+    }
+
+    try {
+      String apiKey = ConfigHelper.getSensitiveData(this.getServletContext(), ConfigHelper.SENSITIVE_DATA.API_KEY);
+      Map<String, List<String>> videoIds = YouTubeService.searchVideoIds(queries, apiKey);
+
+      response.setContentType("application/json; charset=UTF-8");
+      JsonHelper.writeJson(response, videoIds);
+    } catch (IOException youTubeException) {
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, youTubeException.getMessage());
+    }
+  }
+}
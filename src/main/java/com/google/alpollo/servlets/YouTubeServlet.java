@@ -1,13 +1,11 @@
 package com.google.alpollo.servlets;
 
+import com.google.alpollo.helpers.AsyncRequestExecutor;
 import com.google.alpollo.helpers.ConfigHelper;
+import com.google.alpollo.helpers.JsonHelper;
 import com.google.alpollo.helpers.YouTubeService;
-import com.google.api.services.youtube.YouTube;
-import com.google.api.services.youtube.model.SearchListResponse;
-import com.google.gson.Gson;
 import java.io.IOException;
 import java.util.List;
-import java.util.stream.Collectors;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -17,11 +15,8 @@ import javax.servlet.http.HttpServletResponse;
 /**
  * Servlet that returns 5 the most popular videos for the query.
  */
-@WebServlet("/youtube")
+@WebServlet(value = "/youtube", asyncSupported = true)
 public class YouTubeServlet extends HttpServlet {
-  // This topic ID was found this file: https://gist.github.com/stpe/2951130dfc8f1d0d1a2ad736bef3b703
-  private static final String MUSIC_TOPIC_ID = "/m/04rlf";
-
   /**
    * Accesses YouTube and retrieves a collection of videos relating to the given query/words found
    * in the request. Returns only the snippet for each video and returns only videos, no playlists
@@ -29,7 +24,10 @@ public class YouTubeServlet extends HttpServlet {
    */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Gson gson = new Gson();
+    AsyncRequestExecutor.execute(request, response, this::searchVideos);
+  }
+
+  private void searchVideos(HttpServletRequest request, HttpServletResponse response) throws IOException {
     response.setContentType("application/json; charset=UTF-8");
     String query = request.getParameter("query");
     if (query.equals("")){
@@ -37,23 +35,9 @@ public class YouTubeServlet extends HttpServlet {
       return;
     }
 
-    YouTube youtubeService = null;
-    try {
-      youtubeService = YouTubeService.getService(ConfigHelper.getSensitiveData(this.getServletContext(), ConfigHelper.SENSITIVE_DATA.API_KEY));
-    } catch (Exception e) {
-      response.getWriter().println(gson.toJson(e));
-    }
-    if (youtubeService == null) {
-      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "YouTube service is null.");
-      return;
-    }
-
-    // Define and execute the API request
-    YouTube.Search.List vidRequest = youtubeService.search().list("snippet");
-    SearchListResponse vidResponse =
-        vidRequest.setMaxResults(5L).setQ(query).setTopicId(MUSIC_TOPIC_ID).setOrder("viewCount").setType("video").execute();
-    List<String> videoIds = vidResponse.getItems().stream().map(searchResult -> searchResult.getId().getVideoId()).collect(Collectors.toList());
+    String apiKey = ConfigHelper.getSensitiveData(this.getServletContext(), ConfigHelper.SENSITIVE_DATA.API_KEY);
+    List<String> videoIds = YouTubeService.searchVideoIds(query, apiKey);
 
-    response.getWriter().println(gson.toJson(videoIds));
+    JsonHelper.writeJson(response, videoIds);
   }
 }
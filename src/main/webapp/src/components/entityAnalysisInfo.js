@@ -49,7 +49,8 @@ class EntityAnalysisInfo extends React.Component {
 
       axios
         .post("/entity", {
-            lyrics: this.props.lyrics
+            artistName: this.props.artistName,
+            songName: this.props.songName,
         })
         .then((result) => result.data)
         .then((entityAnalysisInfo) =>
@@ -46,11 +46,13 @@ class Lyrics extends React.Component {
 
     axios
       .post("/text-to-speech", {
-        lyrics: this.props.lyrics
+        artistName: this.props.artistName,
+        songName: this.props.songName,
+      }, {
+        responseType: "blob"
       })
       .then((result) => result.data)
-      .then((json) => {
-        const blob = new Blob([new Uint8Array(json)], { type: "audio/mp3" });
+      .then((blob) => {
         const url = URL.createObjectURL(blob);
         this.setState({
           speechUrl: url,
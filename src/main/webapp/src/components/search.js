@@ -77,9 +77,12 @@ class Search extends React.Component {
     this.setState({ isLoading: true });
 
     axios
-      .get(
-        `https://api.lyrics.ovh/v1/${this.state.artistName}/${this.state.songName}`
-      )
+      .get('/lyrics', {
+        params: {
+          artist: this.state.artistName,
+          song: this.state.songName,
+        },
+      })
       .then((result) => result.data)
       .then((response) => {
         this.setState({
@@ -64,7 +64,8 @@ class SentimentAnalysisInfo extends React.Component {
 
       axios
         .post("/sentiment", {
-          lyrics: this.props.lyrics
+          artistName: this.props.artistName,
+          songName: this.props.songName,
         })
         .then((result) => result.data)
         .then((sentimentAnalysisInfo) =>
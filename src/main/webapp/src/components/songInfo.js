@@ -50,6 +50,8 @@ class SongInfo extends React.Component {
     this.isReady = this.isReady.bind(this);
     this.sendSongInfo = this.sendSongInfo.bind(this);
     this.getSongInfo = this.getSongInfo.bind(this);
+    this.analyzeSong = this.analyzeSong.bind(this);
+    this.showSongInfo = this.showSongInfo.bind(this);
 
     /** If we have Song id */
     if (props.match.params.id) {
@@ -64,10 +66,13 @@ class SongInfo extends React.Component {
     } /** If we have basic song information in the location state */ 
     else if (props.location.state) {
       this.state = {
-        wasSent: false,
+        /** The server saves the analysis it builds. */
+        wasSent: true,
         artistName: props.location.state.artistName,
         songName: props.location.state.songName,
         lyrics: props.location.state.lyrics,
+        isLoading: true,
+        error: null,
       };
       const json = JSON.stringify(this.state);
       localStorage.setItem("state", json);
@@ -158,13 +163,34 @@ class SongInfo extends React.Component {
   getSongInfo(id) {
     this.setState({ isLoading: true });
     
-    axios
+    this.showSongInfo(axios
       .get(`/analysis-info?id=${id}`, {
         headers: {
           'Content-Type': 'application/json'
         },
         transformResponse: data => JSONbig.parse(data),
-      })
+      }));
+  }
+
+  /** Let the server analyze the song in one request. */
+  analyzeSong() {
+    this.setState({ isLoading: true });
+
+    this.showSongInfo(axios
+      .post("/song-analysis", {
+        artistName: this.state.artistName,
+        songName: this.state.songName,
+      }, {
+        transformResponse: data => JSONbig.parse(data),
+      }));
+  }
+
+  /**
+   * Show song info from the response of the server.
+   * @param {Promise} request request that returns song info
+   */
+  showSongInfo(request) {
+    request
       .then((result) => result.data)
       .then((songInfo) => {
         this.handleSentimentChange({
@@ -209,8 +235,11 @@ class SongInfo extends React.Component {
 
   componentDidMount() {
     const json = localStorage.getItem("state");
-    /** If this song has id and wasn't loaded before. */
-    if (json == undefined && this.state.id !== undefined) {
+    /** If this song has no id and wasn't analyzed before. */
+    if (this.state.isLoading && this.state.id === undefined) {
+      this.analyzeSong();
+    } /** If this song has id and wasn't loaded before. */
+    else if (json == undefined && this.state.id !== undefined) {
       this.getSongInfo(this.state.id);
     } else {
       try {
@@ -278,21 +307,26 @@ class SongInfo extends React.Component {
         </Typography>
         <div className={classes.languageAnalysisSection}>
           <div className={classes.songLyrics}>
-            <Lyrics lyrics={this.state.lyrics} />
+            <Lyrics
+              lyrics={this.state.lyrics}
+              artistName={this.state.artistName}
+              songName={this.state.songName} />
           </div>
           <div>
             <div class="song-sentiment-analysis">
               <Typography variant="h4">Sentiment Analysis</Typography>
               <SentimentAnalysisInfo
                 sentInfo={sentInfo(this.state.sentimentState ? this.state.sentimentState.sentimentAnalysisInfo : undefined)}
-                lyrics={this.state.lyrics} 
+                artistName={this.state.artistName}
+                songName={this.state.songName}
                 onChangeState={this.handleSentimentChange} />
             </div>
             <div class="song-entity-analysis">
               <Typography variant="h4">Entity Analysis</Typography>
               <EntityAnalysisInfo 
                 sentInfo={sentInfo(this.state.entityState ? this.state.entityState.entityAnalysisInfo : undefined)} 
-                lyrics={this.state.lyrics} 
+                artistName={this.state.artistName}
+                songName={this.state.songName}
                 onChangeState={this.handleEntityChange} />
             </div>
           </div>
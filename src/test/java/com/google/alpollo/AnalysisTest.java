@@ -3,7 +3,9 @@ package com.google.alpollo;
 import com.google.alpollo.model.AutocompleteSearchRequest;
 import com.google.alpollo.helpers.AnalysisHelper;
 import com.google.alpollo.model.Lyrics;
+import com.google.alpollo.model.SongAnalysis;
 import com.google.alpollo.model.SongSentiment;
+import com.google.alpollo.servlets.AnalyzeServlet;
 import com.google.alpollo.servlets.AutocompleteServlet;
 import com.google.alpollo.servlets.EntityServlet;
 import com.google.alpollo.servlets.SentimentServlet;
@@ -59,6 +61,7 @@ public final class AnalysisTest {
   private SentimentServlet sentimentServletUnderTest;
   private EntityServlet entityServletUnderTest;
   private AutocompleteServlet autocompleteServletUnderTest;
+  private AnalyzeServlet analyzeServletUnderTest;
   private StringWriter responseWriter;
 
   private static final Lyrics LYRICS_WITH_METADATA = new Lyrics("Google has found me some nice results!");
@@ -104,6 +107,13 @@ public final class AnalysisTest {
       }
     };
 
+    analyzeServletUnderTest = new AnalyzeServlet() {
+      @Override
+      public ServletContext getServletContext() {
+        return mockServletContext;
+      }
+    };
+
     when(mockServletContext.getResourceAsStream(anyString())).thenAnswer(
         (Answer<InputStream>) invocation -> new FileInputStream(TEST_RESOURCE_PATH + invocation.getArgument(0)));
 
@@ -201,6 +211,23 @@ public final class AnalysisTest {
       Assert.assertThat(actual, CoreMatchers.is(expected));
   }
 
+  /** The combined analysis should find the same sentiment and entities as the separate servlets. */
+  @Test
+  public void analyzeReturnsSentimentAndEntities() throws IOException {
+    when(request.getReader()).thenReturn(
+        new BufferedReader(new StringReader(gson.toJson(LYRICS_WITH_METADATA))));
+    analyzeServletUnderTest.doPost(request, response);
+    String responseString = responseWriter.toString();
+
+    SongAnalysis actual = gson.fromJson(responseString, SongAnalysis.class);
+    List<SongEntity> expectedEntities = Arrays.asList(
+        new SongEntity("Google", 0.8838967680931091, Sets.newHashSet("ORGANIZATION"), WIKI_LINK_GOOGLE),
+        new SongEntity("results", 0.11610323935747147, Sets.newHashSet("OTHER"), EMPTY_STRING));
+
+    Assert.assertThat(actual.getTopSalientEntities(), CoreMatchers.is(expectedEntities));
+    Assert.assertNotNull(actual.getSongSentiment());
+  }
+
   @Test
   public void sentimentIsNeutral() {
     String actual = AnalysisHelper.getInterpretation(NEUTRAL_SCORE, NEUTRAL_MAGNITUDE);
@@ -0,0 +1,114 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.AsyncRequestExecutor;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
+import com.google.apphosting.api.ApiProxy;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.mockito.Mockito.*;
+
+@RunWith(JUnit4.class)
+public final class AsyncRequestTest {
+  /** Attribute of the environment where App Engine keeps the thread factory of the request. */
+  private static final String REQUEST_THREAD_FACTORY = "com.google.appengine.api.ThreadManager.REQUEST_THREAD_FACTORY";
+
+  private HttpServletRequest request = mock(HttpServletRequest.class);
+  private HttpServletResponse response = mock(HttpServletResponse.class);
+  private AsyncContext asyncContext = mock(AsyncContext.class);
+  private CountDownLatch completed;
+
+  @Before
+  public void setUp() {
+    completed = new CountDownLatch(1);
+    when(request.startAsync(request, response)).thenReturn(asyncContext);
+    doAnswer(invocation -> {
+      completed.countDown();
+      return null;
+    }).when(asyncContext).complete();
+  }
+
+  @Test
+  public void handlesRequestOnCurrentThreadWithoutAsyncSupport() throws Exception {
+    when(request.isAsyncSupported()).thenReturn(false);
+    Thread[] handlerThread = new Thread[1];
+    AsyncRequestExecutor.execute(request, response, (req, resp) -> handlerThread[0] = Thread.currentThread());
+
+    Assert.assertSame(Thread.currentThread(), handlerThread[0]);
+    verify(request, never()).startAsync(any(), any());
+  }
+
+  @Test
+  public void handlesRequestOnPoolAndCompletes() throws Exception {
+    when(request.isAsyncSupported()).thenReturn(true);
+    Thread[] handlerThread = new Thread[1];
+    AsyncRequestExecutor.execute(request, response, (req, resp) -> handlerThread[0] = Thread.currentThread());
+
+    Assert.assertTrue(completed.await(5, TimeUnit.SECONDS));
+    Assert.assertNotSame(Thread.currentThread(), handlerThread[0]);
+    verify(asyncContext).complete();
+  }
+
+  @Test
+  public void mapsHandlerErrorToServerError() throws Exception {
+    when(request.isAsyncSupported()).thenReturn(true);
+    AsyncRequestExecutor.execute(request, response, (req, resp) -> {
+      throw new IOException("API is not available.");
+    });
+
+    Assert.assertTrue(completed.await(5, TimeUnit.SECONDS));
+    verify(response).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "API is not available.");
+  }
+
+  /** App Engine creates the threads of a request with the environment of the request, like this factory. */
+  private static final ThreadFactory REQUEST_THREADS = runnable -> {
+    ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+    return new Thread(() -> {
+      ApiProxy.setEnvironmentForCurrentThread(environment);
+      runnable.run();
+    });
+  };
+
+  @Test
+  public void handlerUsesDatastoreAndUserOfRequest() throws Exception {
+    LocalServiceTestHelper helper = new LocalServiceTestHelper(
+        new LocalDatastoreServiceTestConfig(), new LocalUserServiceTestConfig())
+        .setEnvIsLoggedIn(true)
+        .setEnvEmail("user@example.com")
+        .setEnvAuthDomain("example.com")
+        .setEnvAttributes(ImmutableMap.of(REQUEST_THREAD_FACTORY, REQUEST_THREADS));
+    helper.setUp();
+    try {
+      when(request.isAsyncSupported()).thenReturn(true);
+      String[] email = new String[1];
+      AsyncRequestExecutor.execute(request, response, (req, resp) -> {
+        DatastoreServiceFactory.getDatastoreService().put(new Entity("Request"));
+        email[0] = UserServiceFactory.getUserService().getCurrentUser().getEmail();
+      });
+
+      Assert.assertTrue(completed.await(5, TimeUnit.SECONDS));
+      verify(response, never()).sendError(anyInt(), any());
+      Assert.assertEquals("user@example.com", email[0]);
+      Assert.assertEquals(1, DatastoreServiceFactory.getDatastoreService()
+          .prepare(new Query("Request")).countEntities());
+    } finally {
+      helper.tearDown();
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.AutocompleteIndex;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class AutocompleteIndexTest {
+  private static final int LIMIT = 2;
+
+  private AutocompleteIndex index;
+
+  @Before
+  public void setUp() {
+    index = new AutocompleteIndex(100);
+  }
+
+  @Test
+  public void answersLocallyWithBestRankedNames() {
+    index.add("Queens of the Stone Age", 2);
+    index.add("Queen", 0);
+    index.add("Queensryche", 5);
+    index.add("Radiohead", 1);
+
+    Assert.assertEquals(Arrays.asList("Queen", "Queens of the Stone Age"), index.lookup("  QUEEN", LIMIT));
+  }
+
+  @Test
+  public void nameAddedAgainKeepsBestRank() {
+    index.add("Queensryche", 5);
+    index.add("Queens of the Stone Age", 2);
+    index.add("Queensryche", 1);
+
+    Assert.assertEquals(Arrays.asList("Queensryche", "Queens of the Stone Age"), index.lookup("queens", LIMIT));
+  }
+
+  @Test
+  public void namesOverLimitAreIgnored() {
+    index = new AutocompleteIndex(2);
+    index.add("Queen", 0);
+    index.add("Queen", 1);
+    index.add("Queensryche", 2);
+    index.add("Queens of the Stone Age", 3);
+
+    Assert.assertEquals(Arrays.asList("Queen", "Queensryche"), index.lookup("queen", LIMIT));
+    Assert.assertNull(index.lookup("queens of", 1));
+  }
+
+  @Test
+  public void needsRemoteSearchWhenTooFewNamesMatch() {
+    index.add("Queen", 0);
+
+    Assert.assertNull(index.lookup("que", LIMIT));
+  }
+
+  @Test
+  public void remembersRemoteResultsInTheirOrder() {
+    List<String> remoteResults = Arrays.asList("Eminem Show", "Eminem");
+    index.addRemoteResults("emin", remoteResults);
+
+    Assert.assertEquals(remoteResults, index.lookup("Emin", LIMIT));
+  }
+
+  @Test
+  public void remoteResultsOnlyAnswerTheSameQuery() {
+    index.addRemoteResults("abb", Collections.singletonList("ABBA"));
+
+    Assert.assertNull(index.lookup("abba", LIMIT));
+    Assert.assertNull(index.lookup("abbey", LIMIT));
+  }
+}
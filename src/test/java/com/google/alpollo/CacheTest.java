@@ -0,0 +1,140 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.TextHasher;
+import com.google.alpollo.helpers.TextKeyedCache;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CacheTest {
+  private static final String LYRICS = "I'm the mountain\nRising high\n\nIt's the way that I survived";
+  private static final String LYRICS_WITH_OTHER_FORMATTING =
+      "  I'm the mountain \r\nRising   high\r\n\r\n\r\nIt's the way that I survived\n";
+  private static final String OTHER_LYRICS = "I'm the seaside\nI'm the waves";
+  private static final String RESULT = "result";
+
+  private TextKeyedCache<String> cache;
+  private AtomicInteger loadCount;
+
+  @Before
+  public void setUp() {
+    cache = new TextKeyedCache<>("test", 1024 * 1024, 60, String::length);
+    loadCount = new AtomicInteger();
+  }
+
+  private String load() {
+    loadCount.incrementAndGet();
+    return RESULT;
+  }
+
+  @Test
+  public void formattingDoesNotChangeHash() {
+    Assert.assertEquals(TextHasher.hash(LYRICS), TextHasher.hash(LYRICS_WITH_OTHER_FORMATTING));
+    Assert.assertNotEquals(TextHasher.hash(LYRICS), TextHasher.hash(OTHER_LYRICS));
+  }
+
+  @Test
+  public void sameLyricsAreLoadedOnce() throws IOException {
+    cache.get(LYRICS, this::load);
+    String actual = cache.get(LYRICS_WITH_OTHER_FORMATTING, this::load);
+
+    Assert.assertEquals(RESULT, actual);
+    Assert.assertEquals(1, loadCount.get());
+    Assert.assertEquals(1, cache.getHitCount());
+    Assert.assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void differentLyricsAreLoadedSeparately() throws IOException {
+    cache.get(LYRICS, this::load);
+    cache.get(OTHER_LYRICS, this::load);
+
+    Assert.assertEquals(2, loadCount.get());
+    Assert.assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void missLoadedSeparatelyIsCountedOnce() throws IOException {
+    String hash = TextHasher.hash(LYRICS);
+    Assert.assertNull(cache.getIfPresent(hash));
+
+    String actual = cache.loadMissing(hash, this::load);
+
+    Assert.assertEquals(RESULT, actual);
+    Assert.assertEquals(1, cache.getMissCount());
+    Assert.assertEquals(1, cache.getLoadCount());
+    Assert.assertEquals(RESULT, cache.getIfPresent(hash));
+  }
+
+  @Test
+  public void concurrentMissWaitsForLoad() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> get(() -> {
+      loading.countDown();
+      release.await();
+      return load();
+    }));
+    loading.await();
+    CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> get(this::load));
+    while (cache.getMissCount() < 2) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+
+    Assert.assertEquals(RESULT, first.get(5, TimeUnit.SECONDS));
+    Assert.assertEquals(RESULT, second.get(5, TimeUnit.SECONDS));
+    Assert.assertEquals(1, loadCount.get());
+    Assert.assertEquals(1, cache.getLoadCount());
+    Assert.assertEquals(1, cache.getCollapsedCount());
+  }
+
+  /** Same as {@link TextKeyedCache#get}, the loader may also wait. */
+  private String get(InterruptibleLoader loader) {
+    try {
+      return cache.get(LYRICS, () -> {
+        try {
+          return loader.load();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      });
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private interface InterruptibleLoader {
+    String load() throws InterruptedException;
+  }
+
+  @Test(expected = IOException.class)
+  public void loaderErrorIsRethrown() throws IOException {
+    cache.get(LYRICS, () -> {
+      throw new IOException("API is not available.");
+    });
+  }
+
+  @Test
+  public void failedLoadIsNotCached() throws IOException {
+    try {
+      cache.get(LYRICS, () -> {
+        throw new IOException("API is not available.");
+      });
+    } catch (IOException expected) {
+      // The next call should try again.
+    }
+    String actual = cache.get(LYRICS, this::load);
+
+    Assert.assertEquals(RESULT, actual);
+    Assert.assertEquals(1, loadCount.get());
+  }
+}
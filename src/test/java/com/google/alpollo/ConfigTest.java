@@ -0,0 +1,61 @@
+package com.google.alpollo;
+
+import com.google.alpollo.database.AnalysisInfoStore;
+import com.google.alpollo.helpers.AppConfig;
+import com.google.alpollo.helpers.AppTracing;
+import com.google.alpollo.helpers.AsyncRequestExecutor;
+import com.google.alpollo.helpers.ConfigHelper;
+import com.google.gson.Gson;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import javax.servlet.ServletContext;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.stubbing.Answer;
+import static org.mockito.Mockito.*;
+
+@RunWith(JUnit4.class)
+public final class ConfigTest {
+  private static final String TEST_RESOURCE_PATH = System.getProperty("user.dir") + "/src/main/webapp";
+  private final Gson gson = new Gson();
+
+  @Test
+  public void missingSettingsKeepDefaults() {
+    AppConfig config = gson.fromJson("{\"apiKey\": \"key\", \"asyncRequestQueueSize\": 8}", AppConfig.class);
+
+    Assert.assertEquals("key", config.getApiKey());
+    Assert.assertEquals(8, config.getAsyncRequestQueueSize());
+    Assert.assertEquals(AsyncRequestExecutor.DEFAULT_THREADS, config.getAsyncRequestThreads());
+  }
+
+  @Test
+  public void unknownEvictionPolicyFallsBackToLfu() {
+    AppConfig config = gson.fromJson("{\"analysisEvictionPolicy\": \"RANDOM\"}", AppConfig.class);
+
+    Assert.assertEquals(AnalysisInfoStore.EvictionPolicy.LFU, config.getAnalysisEvictionPolicy());
+  }
+
+  @Test
+  public void unknownTraceExporterFallsBackToNone() {
+    AppConfig config = gson.fromJson("{\"traceExporter\": \"ZIPKIN\"}", AppConfig.class);
+
+    Assert.assertEquals(AppTracing.Exporter.NONE, config.getTraceExporter());
+    Assert.assertEquals(AppTracing.DEFAULT_SAMPLING_PROBABILITY, config.getTraceSamplingProbability(), 0);
+  }
+
+  @Test
+  public void fileIsNotParsedOnEveryCall() {
+    ServletContext servletContext = mock(ServletContext.class);
+    when(servletContext.getResourceAsStream(anyString())).thenAnswer(
+        (Answer<InputStream>) invocation -> new FileInputStream(TEST_RESOURCE_PATH + invocation.getArgument(0)));
+
+    String projectID = ConfigHelper.getSensitiveData(servletContext, ConfigHelper.SENSITIVE_DATA.PROJECT_ID);
+    String sameProjectID = ConfigHelper.getSensitiveData(servletContext, ConfigHelper.SENSITIVE_DATA.PROJECT_ID);
+
+    Assert.assertNotNull(projectID);
+    Assert.assertEquals(projectID, sameProjectID);
+    verify(servletContext, atMost(1)).getResourceAsStream(anyString());
+  }
+}
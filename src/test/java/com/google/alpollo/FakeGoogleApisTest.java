@@ -0,0 +1,89 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.LyricsOvhProvider;
+import com.google.alpollo.loadtest.FakeGoogleApis;
+import com.google.alpollo.loadtest.LatencyModel;
+import com.google.alpollo.loadtest.LatencyRecorder;
+import com.google.alpollo.model.Song;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.cloud.language.v1.Document;
+import com.google.cloud.language.v1.LanguageServiceClient;
+import com.google.cloud.language.v1.LanguageServiceSettings;
+import com.google.cloud.language.v1.Sentiment;
+import java.io.IOException;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class FakeGoogleApisTest {
+  @Test
+  public void fakeLanguageApiAnswersTheClient() throws IOException {
+    try (FakeGoogleApis fakes = new FakeGoogleApis(Collections.emptyMap(), 0, 0)) {
+      LanguageServiceSettings settings = LanguageServiceSettings.newBuilder()
+          .setEndpoint(fakes.getGrpcEndpoint())
+          .setCredentialsProvider(NoCredentialsProvider.create())
+          .setTransportChannelProvider(LanguageServiceSettings.defaultGrpcTransportProviderBuilder()
+              .setEndpoint(fakes.getGrpcEndpoint())
+              .setChannelConfigurator(channelBuilder -> channelBuilder.usePlaintext())
+              .build())
+          .build();
+      Document doc = Document.newBuilder().setContent("Hello darkness").setType(Document.Type.PLAIN_TEXT).build();
+
+      try (LanguageServiceClient client = LanguageServiceClient.create(settings)) {
+        Sentiment sentiment = client.analyzeSentiment(doc).getDocumentSentiment();
+        Sentiment sameSentiment = client.analyzeSentiment(doc).getDocumentSentiment();
+
+        Assert.assertEquals(sentiment, sameSentiment);
+        Assert.assertTrue(sentiment.getScore() >= -1 && sentiment.getScore() <= 1);
+      }
+    }
+  }
+
+  @Test
+  public void fakeLyricsApiAnswersTheProvider() throws IOException {
+    try (FakeGoogleApis fakes = new FakeGoogleApis(Collections.emptyMap(), 0, 0)) {
+      LyricsOvhProvider provider = new LyricsOvhProvider(fakes.getHttpUrl() + "lyrics/v1/", new NetHttpTransport());
+
+      Assert.assertTrue(provider.fetchLyrics(new Song("Simon & Garfunkel", "The Boxer")).contains("The Boxer"));
+      Assert.assertNull(provider.fetchLyrics(new Song("Nobody", "unknown")));
+    }
+  }
+
+  @Test
+  public void failingFakeAnswersWithServerError() throws IOException {
+    try (FakeGoogleApis fakes = new FakeGoogleApis(
+        Collections.singletonMap("lyrics", LatencyModel.parse("fixed:0,1.0")), 0, 0)) {
+      LyricsOvhProvider provider = new LyricsOvhProvider(fakes.getHttpUrl() + "lyrics/v1/", new NetHttpTransport());
+
+      try {
+        provider.fetchLyrics(new Song("Queen", "Bohemian Rhapsody"));
+        Assert.fail("The injected failure wasn't thrown.");
+      } catch (IOException expected) {
+        // The provider only returns null for songs that aren't found.
+      }
+    }
+  }
+
+  @Test
+  public void percentilesUseTheNearestRank() {
+    LatencyRecorder recorder = new LatencyRecorder();
+    for (int latency = 1000; latency >= 1; latency--) {
+      recorder.record(latency, latency % 100 == 0);
+    }
+
+    Assert.assertEquals(1000, recorder.getCount());
+    Assert.assertEquals(10, recorder.getErrors());
+    Assert.assertEquals(500, recorder.percentile(0.5));
+    Assert.assertEquals(990, recorder.percentile(0.99));
+    Assert.assertEquals(999, recorder.percentile(0.999));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void latencyModelNeedsAllParameters() {
+    LatencyModel.parse("uniform:10");
+  }
+}
@@ -0,0 +1,45 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.HttpTransports;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class HttpTransportsTest {
+  private static final GenericUrl URL = new GenericUrl("http://localhost/");
+
+  @After
+  public void tearDown() {
+    HttpTransports.configureTimeouts(HttpTransports.DEFAULT_CONNECT_TIMEOUT_MILLIS,
+        HttpTransports.DEFAULT_READ_TIMEOUT_MILLIS);
+  }
+
+  @Test
+  public void requestFactorySetsConfiguredTimeouts() throws IOException {
+    HttpTransports.configureTimeouts(1_000, 2_000);
+
+    HttpRequest request = HttpTransports.getRequestFactory().buildGetRequest(URL);
+
+    Assert.assertEquals(1_000, request.getConnectTimeout());
+    Assert.assertEquals(2_000, request.getReadTimeout());
+  }
+
+  @Test
+  public void clientBuiltBeforeReloadUsesNewTimeouts() throws IOException {
+    HttpRequestFactory client = new MockHttpTransport().createRequestFactory(HttpTransports.getTimeoutInitializer());
+
+    HttpTransports.configureTimeouts(3_000, 4_000);
+    HttpRequest request = client.buildGetRequest(URL);
+
+    Assert.assertEquals(3_000, request.getConnectTimeout());
+    Assert.assertEquals(4_000, request.getReadTimeout());
+  }
+}
@@ -0,0 +1,66 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.JsonHelper;
+import com.google.alpollo.model.AnalysisInfo;
+import com.google.alpollo.model.Song;
+import com.google.alpollo.model.SongCounter;
+import com.google.alpollo.model.SongEntity;
+import com.google.alpollo.model.SongSentiment;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringWriter;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class JsonHelperTest {
+  private static final Song SONG = new Song("Queen", "Bohemian Rhapsody");
+  private static final AnalysisInfo INFO = new AnalysisInfo(SONG, new SongSentiment(0.3f, 1.2f),
+      ImmutableList.of(new SongEntity("Mama", 0.25, ImmutableSet.of("PERSON"), null),
+          new SongEntity("Galileo", 0.1, ImmutableSet.of("PERSON", "OTHER"), "https://en.wikipedia.org/wiki/Galileo")),
+      "Is this the real life?\nIs this just fantasy?", ImmutableList.of("fJ9rUzIMcZQ"));
+
+  /** Serializes the value the way the servlets did before the adapters. */
+  private final Gson reflectionGson = new Gson();
+
+  @Test
+  public void analysisInfoIsWrittenLikeReflection() throws Exception {
+    JsonObject expected = JsonParser.parseString(reflectionGson.toJson(INFO)).getAsJsonObject();
+    // Used only by the database.
+    expected.remove("searchCounter");
+    expected.remove("lastAccessed");
+
+    Assert.assertEquals(expected, JsonParser.parseString(write(INFO)));
+  }
+
+  @Test
+  public void songCounterIsWrittenLikeReflection() throws Exception {
+    SongCounter counter = new SongCounter(SONG, 42);
+    JsonObject expected = JsonParser.parseString(reflectionGson.toJson(counter)).getAsJsonObject();
+    expected.remove("sharded");
+
+    Assert.assertEquals(expected, JsonParser.parseString(write(ImmutableList.of(counter))).getAsJsonArray().get(0));
+  }
+
+  @Test
+  public void analysisInfoIsReadBack() throws Exception {
+    AnalysisInfo info = JsonHelper.getGson().fromJson(write(INFO), AnalysisInfo.class);
+
+    Assert.assertEquals(SONG.id(), info.getId());
+    Assert.assertEquals(INFO.getTopSalientEntities(), info.getTopSalientEntities());
+    Assert.assertEquals(INFO.getSongSentiment().getInterpretation(), info.getSongSentiment().getInterpretation());
+    Assert.assertEquals(INFO.getLyrics(), info.getLyrics());
+    Assert.assertEquals(INFO.getYouTubeIds(), info.getYouTubeIds());
+  }
+
+  private static String write(Object value) throws Exception {
+    StringWriter writer = new StringWriter();
+    JsonHelper.writeJson(writer, value);
+    return writer.toString();
+  }
+}
@@ -0,0 +1,140 @@
+package com.google.alpollo;
+
+import com.google.alpollo.servlets.JsonResponseFilter;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+@RunWith(JUnit4.class)
+public final class JsonResponseFilterTest {
+  private static final String BODY = "[" + Strings.repeat("{\"artist\":\"Queen\",\"name\":\"Bohemian Rhapsody\"},", 20) + "{}]";
+
+  private final JsonResponseFilter filter = new JsonResponseFilter();
+  private final HttpServletRequest request = mock(HttpServletRequest.class);
+  private final HttpServletResponse response = mock(HttpServletResponse.class);
+  private final ByteArrayOutputStream sentBytes = new ByteArrayOutputStream();
+  private final FilterChain chain = (req, resp) -> {
+    resp.setContentType("application/json; charset=UTF-8");
+    resp.getWriter().write(BODY);
+  };
+
+  @Before
+  public void setUp() throws Exception {
+    when(request.getMethod()).thenReturn("GET");
+    when(request.getServletPath()).thenReturn("/top");
+    when(response.getCharacterEncoding()).thenReturn("UTF-8");
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        sentBytes.write(b);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {}
+    });
+  }
+
+  @Test
+  public void compressesWhenClientAcceptsGzip() throws Exception {
+    when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+
+    filter.doFilter(request, response, chain);
+
+    verify(response).setHeader("Content-Encoding", "gzip");
+    byte[] body = ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(sentBytes.toByteArray())));
+    Assert.assertEquals(BODY, new String(body, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void sendsPlainBodyWithoutAcceptEncoding() throws Exception {
+    filter.doFilter(request, response, chain);
+
+    verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+    Assert.assertEquals(BODY, new String(sentBytes.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void answersMatchingETagWithNotModified() throws Exception {
+    filter.doFilter(request, response, chain);
+    ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+    verify(response).setHeader(eq("ETag"), eTag.capture());
+    sentBytes.reset();
+
+    when(request.getHeader("If-None-Match")).thenReturn(eTag.getValue());
+    filter.doFilter(request, response, chain);
+
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    Assert.assertEquals(0, sentBytes.size());
+  }
+
+  @Test
+  public void postResponsesHaveNoETag() throws Exception {
+    when(request.getMethod()).thenReturn("POST");
+    when(request.getServletPath()).thenReturn("/autocomplete");
+
+    filter.doFilter(request, response, chain);
+
+    verify(response, never()).setHeader(eq("ETag"), anyString());
+  }
+
+  @Test
+  public void streamsCompressedResponsesWithoutETag() throws Exception {
+    when(request.getMethod()).thenReturn("POST");
+    when(request.getServletPath()).thenReturn("/autocomplete");
+    when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+    int[] bytesSentByServlet = new int[1];
+
+    filter.doFilter(request, response, (req, resp) -> {
+      resp.getWriter().write(BODY);
+      resp.getWriter().flush();
+      bytesSentByServlet[0] = sentBytes.size();
+    });
+
+    Assert.assertTrue(bytesSentByServlet[0] > 0);
+    verify(response).setHeader("Content-Encoding", "gzip");
+    verify(response, never()).setHeader(eq("ETag"), anyString());
+    byte[] body = ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(sentBytes.toByteArray())));
+    Assert.assertEquals(BODY, new String(body, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void shortBodyIsSentPlainWithLength() throws Exception {
+    when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+    filter.doFilter(request, response, (req, resp) -> resp.getWriter().write("[]"));
+
+    verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+    verify(response).setContentLength(2);
+    Assert.assertEquals("[]", new String(sentBytes.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void analysisIsRevalidatedWithETag() throws Exception {
+    when(request.getServletPath()).thenReturn("/analysis-info");
+
+    filter.doFilter(request, response, chain);
+
+    verify(response).setHeader("Cache-Control", "public, no-cache");
+    verify(response).setHeader(eq("ETag"), anyString());
+  }
+}
@@ -0,0 +1,109 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.LanguageDetector;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class LanguageDetectorTest {
+  private static final double MIN_CONFIDENCE = 0.9;
+  private final LanguageDetector detector = LanguageDetector.getInstance();
+
+  @Test
+  public void detectsEnglish() {
+    LanguageDetector.Detection actual = detector.detect("Days go by, but I don't seem to notice them\n"
+        + "Just a roundabout of turns\nAll these nights I lie awake and on my own");
+
+    Assert.assertEquals("en", actual.getLanguageCode());
+    Assert.assertTrue(actual.getConfidence() >= MIN_CONFIDENCE);
+  }
+
+  @Test
+  public void detectsGerman() {
+    LanguageDetector.Detection actual = detector.detect("Du hast mich gefragt und ich hab nichts gesagt\n"
+        + "Willst du bis der Tod euch scheidet treu ihr sein");
+
+    Assert.assertEquals("de", actual.getLanguageCode());
+    Assert.assertTrue(actual.getConfidence() >= MIN_CONFIDENCE);
+  }
+
+  @Test
+  public void detectsRussian() {
+    LanguageDetector.Detection actual = detector.detect("Калинка, калинка, калинка моя! В саду ягода малинка");
+
+    Assert.assertEquals("ru", actual.getLanguageCode());
+    Assert.assertTrue(actual.getConfidence() >= MIN_CONFIDENCE);
+  }
+
+  @Test
+  public void detectsSwedish() {
+    LanguageDetector.Detection actual = detector.detect("Jag vill dansa hela natten med dig\n"
+        + "Du är det bästa som hänt mig\nOch när solen går upp är vi fortfarande här");
+
+    Assert.assertEquals("sv", actual.getLanguageCode());
+    Assert.assertTrue(actual.getConfidence() >= MIN_CONFIDENCE);
+  }
+
+  @Test
+  public void detectsTurkish() {
+    LanguageDetector.Detection actual = detector.detect("Seni seviyorum, gel bana yavaş yavaş\n"
+        + "Gece boyunca dans edelim\nKalbim senin için atıyor");
+
+    Assert.assertEquals("tr", actual.getLanguageCode());
+    Assert.assertTrue(actual.getConfidence() >= MIN_CONFIDENCE);
+  }
+
+  /** Danish and Norwegian are close, so the detection may be left to the remote API, but not wrong. */
+  @Test
+  public void danishIsNotConfidentlyWrong() {
+    LanguageDetector.Detection actual = detector.detect("Jeg vil danse hele natten med dig\n"
+        + "Du er det bedste der er sket for mig\nOg når solen står op er vi her stadig");
+
+    Assert.assertTrue("da".equals(actual.getLanguageCode()) || actual.getConfidence() < MIN_CONFIDENCE);
+  }
+
+  @Test
+  public void detectsSpanish() {
+    LanguageDetector.Detection actual = detector.detect("Despacito, quiero bailar contigo toda la noche\n"
+        + "Mi corazón late por ti en la playa\nVen conmigo, no me dejes solo");
+
+    Assert.assertEquals("es", actual.getLanguageCode());
+  }
+
+  /** Words that look Spanish but aren't a language should not be read with a Spanish voice. */
+  @Test
+  public void gibberishHasLowConfidence() {
+    LanguageDetector.Detection actual = detector.detect(
+        "Aserejé ja dejé dejebe tu dejebere seibiunouba majabi an de bugui an de buididipí");
+
+    Assert.assertTrue(actual.getConfidence() < MIN_CONFIDENCE);
+  }
+
+  /** Latin script languages without a profile look like one of the profiled languages. */
+  @Test
+  public void unprofiledLatinLanguagesHaveLowConfidence() {
+    String[] texts = {
+        "Aku cinta kamu, jangan pergi dariku malam ini\nHatiku hanya untukmu selamanya",
+        "Szeretlek téged, gyere velem táncolni egész éjjel",
+        "T'estimo tant, vine amb mi a ballar tota la nit a la platja"};
+
+    for (String text : texts) {
+      Assert.assertTrue(text, detector.detect(text).getConfidence() < MIN_CONFIDENCE);
+    }
+  }
+
+  /** Japanese has no profile, so the remote API should be asked instead. */
+  @Test
+  public void unknownLanguageHasLowConfidence() {
+    LanguageDetector.Detection actual = detector.detect("上を向いて歩こう 涙がこぼれないように");
+
+    Assert.assertTrue(actual.getConfidence() < MIN_CONFIDENCE);
+  }
+
+  @Test
+  public void textWithoutLettersIsNotDetected() {
+    Assert.assertNull(detector.detect("1, 2, 3... 4!"));
+  }
+}
@@ -0,0 +1,67 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.LyricsOvhProvider;
+import com.google.alpollo.helpers.LyricsProvider;
+import com.google.alpollo.model.Song;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import java.io.IOException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class LyricsTest {
+  private static final Song SONG = new Song("AC/DC", "Back in Black");
+
+  @Test
+  public void providerReturnsLyrics() throws IOException {
+    LyricsProvider provider = new LyricsOvhProvider("http://localhost/v1",
+        transport(HttpStatusCodes.STATUS_CODE_OK, "{\"lyrics\": \"Back in black\\r\\nI hit the sack\"}"));
+
+    Assert.assertEquals("Back in black\r\nI hit the sack", provider.fetchLyrics(SONG));
+  }
+
+  @Test
+  public void unknownSongHasNoLyrics() throws IOException {
+    LyricsProvider provider = new LyricsOvhProvider("http://localhost/v1",
+        transport(HttpStatusCodes.STATUS_CODE_NOT_FOUND, "{\"error\": \"No lyrics found\"}"));
+
+    Assert.assertNull(provider.fetchLyrics(SONG));
+  }
+
+  @Test(expected = IOException.class)
+  public void providerErrorIsThrown() throws IOException {
+    LyricsProvider provider = new LyricsOvhProvider("http://localhost/v1",
+        transport(HttpStatusCodes.STATUS_CODE_SERVER_ERROR, "Server error"));
+
+    provider.fetchLyrics(SONG);
+  }
+
+  @Test
+  public void slashInNameIsEscaped() throws IOException {
+    StringBuilder requestedUrl = new StringBuilder();
+    MockHttpTransport transport = new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) {
+        requestedUrl.append(url);
+        return new MockLowLevelHttpRequest().setResponse(
+            new MockLowLevelHttpResponse().setContent("{\"lyrics\": \"text\"}"));
+      }
+    };
+
+    new LyricsOvhProvider("http://localhost/v1/", transport).fetchLyrics(SONG);
+
+    Assert.assertEquals("http://localhost/v1/AC%2FDC/Back%20in%20Black", requestedUrl.toString());
+  }
+
+  private static MockHttpTransport transport(int status, String content) {
+    return new MockHttpTransport.Builder()
+        .setLowLevelHttpResponse(new MockLowLevelHttpResponse().setStatusCode(status).setContent(content))
+        .build();
+  }
+}
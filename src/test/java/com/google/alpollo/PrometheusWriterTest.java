@@ -0,0 +1,76 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.PrometheusWriter;
+import io.opencensus.common.Timestamp;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.export.Distribution;
+import io.opencensus.metrics.export.Metric;
+import io.opencensus.metrics.export.MetricDescriptor;
+import io.opencensus.metrics.export.Point;
+import io.opencensus.metrics.export.TimeSeries;
+import io.opencensus.metrics.export.Value;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class PrometheusWriterTest {
+  private static final Timestamp NOW = Timestamp.create(1_600_000_000, 0);
+
+  @Test
+  public void distributionIsWrittenAsCumulativeHistogram() throws IOException {
+    Distribution distribution = Distribution.create(6, 330.0, 0,
+        Distribution.BucketOptions.explicitOptions(Arrays.asList(10.0, 100.0)),
+        Arrays.asList(Distribution.Bucket.create(2), Distribution.Bucket.create(3), Distribution.Bucket.create(1)));
+    Metric metric = metric("alpollo/api_latency", MetricDescriptor.Type.CUMULATIVE_DISTRIBUTION,
+        "language.annotateText", Value.distributionValue(distribution));
+
+    String text = write(metric);
+
+    Assert.assertTrue(text.contains("# TYPE alpollo_api_latency histogram\n"));
+    Assert.assertTrue(text.contains("alpollo_api_latency_bucket{api=\"language.annotateText\",le=\"10\"} 2\n"));
+    Assert.assertTrue(text.contains("alpollo_api_latency_bucket{api=\"language.annotateText\",le=\"100\"} 5\n"));
+    Assert.assertTrue(text.contains("alpollo_api_latency_bucket{api=\"language.annotateText\",le=\"+Inf\"} 6\n"));
+    Assert.assertTrue(text.contains("alpollo_api_latency_sum{api=\"language.annotateText\"} 330\n"));
+    Assert.assertTrue(text.contains("alpollo_api_latency_count{api=\"language.annotateText\"} 6\n"));
+  }
+
+  @Test
+  public void cumulativeIsWrittenAsCounter() throws IOException {
+    Metric metric = metric("alpollo/cache_hits", MetricDescriptor.Type.CUMULATIVE_INT64,
+        "language.sentiment", Value.longValue(42));
+
+    String text = write(metric);
+
+    Assert.assertTrue(text.contains("# TYPE alpollo_cache_hits counter\n"));
+    Assert.assertTrue(text.contains("alpollo_cache_hits{api=\"language.sentiment\"} 42\n"));
+  }
+
+  @Test
+  public void labelValuesAreEscaped() throws IOException {
+    Metric metric = metric("alpollo/pool_active_threads", MetricDescriptor.Type.GAUGE_DOUBLE,
+        "say \"hi\"", Value.doubleValue(1.5));
+
+    Assert.assertTrue(write(metric).contains("alpollo_pool_active_threads{api=\"say \\\"hi\\\"\"} 1.5\n"));
+  }
+
+  private static Metric metric(String name, MetricDescriptor.Type type, String label, Value value) {
+    MetricDescriptor descriptor = MetricDescriptor.create(name, "Description", "ms", type,
+        Collections.singletonList(LabelKey.create("api", "API")));
+    TimeSeries timeSeries = TimeSeries.createWithOnePoint(
+        Collections.singletonList(LabelValue.create(label)), Point.create(value, NOW), NOW);
+    return Metric.createWithOneTimeSeries(descriptor, timeSeries);
+  }
+
+  private static String write(Metric metric) throws IOException {
+    StringWriter writer = new StringWriter();
+    PrometheusWriter.write(Collections.singletonList(metric), writer);
+    return writer.toString();
+  }
+}
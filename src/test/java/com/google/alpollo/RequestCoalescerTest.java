@@ -0,0 +1,89 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.RequestCoalescer;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class RequestCoalescerTest {
+  private static final String KEY = "dark";
+  private static final String RESULT = "result";
+
+  private RequestCoalescer<String, String> coalescer;
+  private ExecutorService executor;
+  private AtomicInteger callCount;
+
+  @Before
+  public void setUp() {
+    coalescer = new RequestCoalescer<>("test");
+    executor = Executors.newFixedThreadPool(2);
+    callCount = new AtomicInteger();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void concurrentCallsShareOneCall() throws Exception {
+    CountDownLatch callStarted = new CountDownLatch(1);
+    CountDownLatch releaseCall = new CountDownLatch(1);
+    Future<String> first = executor.submit(() -> coalescer.execute(KEY, () -> {
+      callCount.incrementAndGet();
+      callStarted.countDown();
+      await(releaseCall);
+      return RESULT;
+    }));
+    Assert.assertTrue(callStarted.await(5, TimeUnit.SECONDS));
+
+    Future<String> second = executor.submit(() -> coalescer.execute(KEY, () -> {
+      callCount.incrementAndGet();
+      return "other result";
+    }));
+    while (coalescer.getCollapsedCount() == 0) {
+      Thread.sleep(1);
+    }
+    releaseCall.countDown();
+
+    Assert.assertEquals(RESULT, first.get(5, TimeUnit.SECONDS));
+    Assert.assertEquals(RESULT, second.get(5, TimeUnit.SECONDS));
+    Assert.assertEquals(1, callCount.get());
+    Assert.assertEquals(2, coalescer.getCallCount());
+  }
+
+  @Test
+  public void sequentialCallsAreNotShared() throws Exception {
+    coalescer.execute(KEY, () -> RESULT + callCount.incrementAndGet());
+    String second = coalescer.execute(KEY, () -> RESULT + callCount.incrementAndGet());
+
+    Assert.assertEquals(RESULT + 2, second);
+    Assert.assertEquals(0, coalescer.getCollapsedCount());
+  }
+
+  @Test(expected = IOException.class)
+  public void failedCallIsThrown() throws Exception {
+    coalescer.execute(KEY, () -> {
+      throw new IOException("API is not available.");
+    });
+  }
+
+  private static void await(CountDownLatch latch) throws IOException {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.RequestThreadExecutor;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class RequestThreadExecutorTest {
+  private final CountDownLatch release = new CountDownLatch(1);
+  private RequestThreadExecutor executor;
+
+  @After
+  public void tearDown() throws InterruptedException {
+    release.countDown();
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+  }
+
+  private void block() {
+    try {
+      release.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  public void rejectsTasksOverThreadsAndQueue() throws Exception {
+    executor = new RequestThreadExecutor("test", 1, 1, false);
+    CountDownLatch started = new CountDownLatch(1);
+    executor.execute(() -> {
+      started.countDown();
+      block();
+    });
+    executor.execute(this::block);
+    Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    Assert.assertEquals(1, executor.getActiveCount());
+    Assert.assertEquals(1, executor.getQueuedCount());
+    try {
+      executor.execute(this::block);
+      Assert.fail("The third task doesn't fit.");
+    } catch (RejectedExecutionException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void callerRunsTaskThatDoesNotFit() throws Exception {
+    executor = new RequestThreadExecutor("test", 1, 0, true);
+    executor.execute(this::block);
+    Thread[] taskThread = new Thread[1];
+
+    executor.execute(() -> taskThread[0] = Thread.currentThread());
+
+    Assert.assertSame(Thread.currentThread(), taskThread[0]);
+  }
+
+  @Test
+  public void queuedTaskRunsWhenRunningOneFinishes() throws Exception {
+    executor = new RequestThreadExecutor("test", 1, 1, false);
+    CountDownLatch queuedTaskRan = new CountDownLatch(1);
+    executor.execute(this::block);
+    executor.execute(queuedTaskRan::countDown);
+    Assert.assertEquals(1, executor.getQueuedCount());
+
+    release.countDown();
+
+    Assert.assertTrue(queuedTaskRan.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void shutdownNowReturnsQueuedTasks() {
+    executor = new RequestThreadExecutor("test", 1, 1, false);
+    executor.execute(this::block);
+    Runnable queuedTask = () -> Assert.fail("Queued task shouldn't run.");
+    executor.execute(queuedTask);
+
+    List<Runnable> notRun = executor.shutdownNow();
+
+    Assert.assertEquals(1, notRun.size());
+    Assert.assertEquals(0, executor.getQueuedCount());
+  }
+}
@@ -0,0 +1,44 @@
+package com.google.alpollo;
+
+import com.google.alpollo.model.SearchHistory;
+import com.google.alpollo.model.Song;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SearchHistoryTest {
+  @Test
+  public void searchesOfTheSameSongAreCountedTogether() {
+    SearchHistory history = new SearchHistory("user");
+    history.addSearchRequest(new Song("Queen", "Bohemian Rhapsody"));
+    history.addSearchRequest(new Song("Adele", "Hello"));
+    history.addSearchRequest(new Song("Adele", "Hello"));
+
+    List<Song> topSongs = history.getHistory();
+
+    Assert.assertEquals(2, history.getSongCount());
+    Assert.assertEquals("Hello", topSongs.get(0).getName());
+    Assert.assertEquals("Bohemian Rhapsody", topSongs.get(1).getName());
+  }
+
+  @Test
+  public void oftenSearchedSongStaysAmongManyOthers() {
+    SearchHistory history = new SearchHistory("user");
+    Song favourite = new Song("Queen", "Bohemian Rhapsody");
+    for (int i = 0; i < 10 * SearchHistory.CAPACITY; i++) {
+      if (i % 5 == 0) {
+        history.addSearchRequest(favourite);
+      }
+      history.addSearchRequest(new Song("Artist", "Song " + i));
+    }
+
+    List<Song> topSongs = history.getHistory();
+
+    Assert.assertEquals(SearchHistory.CAPACITY, history.getSongCount());
+    Assert.assertEquals(10, topSongs.size());
+    Assert.assertEquals(favourite.getString(), topSongs.get(0).getString());
+  }
+}
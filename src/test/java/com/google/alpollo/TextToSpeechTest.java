@@ -0,0 +1,73 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.TextToSpeechService;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class TextToSpeechTest {
+  /** The API limit is 5000 bytes per request. */
+  private static final int API_MAX_BYTES = 5000;
+  private static final String LYRICS = "I'm the mountain\r\nRising high\r\n\r\n\r\n"
+      + "I'm the seaside\r\nI'm the waves\r\n\r\nI'm the valley\r\nI'm the hills";
+
+  @Test
+  public void firstStanzaIsAloneAndOthersArePacked() {
+    List<String> actual = TextToSpeechService.splitIntoChunks(LYRICS);
+    List<String> expected = Arrays.asList("I'm the mountain\nRising high",
+        "I'm the seaside\nI'm the waves\n\nI'm the valley\nI'm the hills");
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void stanzasArePackedUnderApiLimit() {
+    StringBuilder lyrics = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      lyrics.append("Mirror-mirror tell the truth\nOf the old ones and the youth\n\n");
+    }
+
+    List<String> chunks = TextToSpeechService.splitIntoChunks(lyrics.toString());
+
+    // About 6000 bytes of text: the first stanza, then as few parts as the limit allows.
+    Assert.assertEquals(3, chunks.size());
+    for (String chunk : chunks) {
+      Assert.assertTrue(chunk.getBytes(StandardCharsets.UTF_8).length < API_MAX_BYTES);
+    }
+    Assert.assertEquals(lyrics.toString().trim(), String.join("\n\n", chunks));
+  }
+
+  @Test
+  public void longStanzaIsSplitUnderApiLimit() {
+    StringBuilder stanza = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      stanza.append("Mirror-mirror tell the truth of the old ones and the youth\n");
+    }
+
+    List<String> chunks = TextToSpeechService.splitIntoChunks(stanza.toString());
+
+    Assert.assertTrue(chunks.size() > 1);
+    for (String chunk : chunks) {
+      Assert.assertTrue(chunk.getBytes(StandardCharsets.UTF_8).length < API_MAX_BYTES);
+    }
+    Assert.assertEquals(stanza.toString().trim(), String.join("\n", chunks));
+  }
+
+  @Test
+  public void veryLongWordIsCut() {
+    char[] word = new char[10000];
+    Arrays.fill(word, 'ă');
+
+    List<String> chunks = TextToSpeechService.splitIntoChunks(new String(word));
+
+    for (String chunk : chunks) {
+      Assert.assertTrue(chunk.getBytes(StandardCharsets.UTF_8).length < API_MAX_BYTES);
+    }
+    Assert.assertEquals(new String(word), String.join("", chunks));
+  }
+}
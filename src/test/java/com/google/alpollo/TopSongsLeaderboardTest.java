@@ -0,0 +1,115 @@
+package com.google.alpollo;
+
+import com.google.alpollo.database.TopSongsLeaderboard;
+import com.google.alpollo.model.Song;
+import com.google.alpollo.model.SongCounter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class TopSongsLeaderboardTest {
+  private static final Song FIRST_SONG = new Song("Queen", "Bohemian Rhapsody");
+  private static final Song SECOND_SONG = new Song("ABBA", "Dancing Queen");
+  private static final Song THIRD_SONG = new Song("Eminem", "Lose Yourself");
+
+  private TopSongsLeaderboard leaderboard;
+  private AtomicInteger loadCount;
+
+  @Before
+  public void setUp() {
+    loadCount = new AtomicInteger();
+    leaderboard = new TopSongsLeaderboard(2, () -> {
+      loadCount.incrementAndGet();
+      return Arrays.asList(new SongCounter(FIRST_SONG, 10), new SongCounter(SECOND_SONG, 5));
+    });
+  }
+
+  private static Song songAt(List<SongCounter> top, int position) {
+    return top.get(position).getSong();
+  }
+
+  @Test
+  public void topIsLoadedOnce() {
+    leaderboard.getTopSongs();
+    List<SongCounter> top = leaderboard.getTopSongs();
+
+    Assert.assertEquals(1, loadCount.get());
+    Assert.assertEquals(2, top.size());
+    Assert.assertSame(FIRST_SONG, songAt(top, 0));
+  }
+
+  @Test
+  public void songEntersTopAndPushesLastSongOut() {
+    leaderboard.getTopSongs();
+    leaderboard.update(new SongCounter(THIRD_SONG, 7));
+    List<SongCounter> top = leaderboard.getTopSongs();
+
+    Assert.assertEquals(2, top.size());
+    Assert.assertSame(FIRST_SONG, songAt(top, 0));
+    Assert.assertSame(THIRD_SONG, songAt(top, 1));
+  }
+
+  @Test
+  public void songMovesUpButNeverDown() {
+    leaderboard.getTopSongs();
+    leaderboard.update(new SongCounter(SECOND_SONG, 11));
+    Assert.assertSame(SECOND_SONG, songAt(leaderboard.getTopSongs(), 0));
+
+    leaderboard.update(new SongCounter(SECOND_SONG, 3));
+    Assert.assertSame(SECOND_SONG, songAt(leaderboard.getTopSongs(), 0));
+  }
+
+  @Test
+  public void snapshotDoesNotChangeAfterUpdate() {
+    List<SongCounter> snapshot = leaderboard.getTopSongs();
+    leaderboard.update(new SongCounter(THIRD_SONG, 100));
+
+    Assert.assertSame(FIRST_SONG, songAt(snapshot, 0));
+    Assert.assertSame(THIRD_SONG, songAt(leaderboard.getTopSongs(), 0));
+  }
+
+  @Test
+  public void reconcileReplacesTop() {
+    leaderboard.getTopSongs();
+    leaderboard.update(new SongCounter(THIRD_SONG, 100));
+    leaderboard.reconcile();
+
+    Assert.assertEquals(2, loadCount.get());
+    Assert.assertSame(FIRST_SONG, songAt(leaderboard.getTopSongs(), 0));
+  }
+
+  @Test
+  public void staleTopIsReloadedOnRead() {
+    leaderboard.setReconcileInterval(0);
+    leaderboard.getTopSongs();
+    leaderboard.update(new SongCounter(THIRD_SONG, 100));
+    List<SongCounter> top = leaderboard.getTopSongs();
+
+    Assert.assertEquals(2, loadCount.get());
+    Assert.assertSame(FIRST_SONG, songAt(top, 0));
+  }
+
+  @Test
+  public void topIsKeptWhenReloadFails() {
+    AtomicInteger loads = new AtomicInteger();
+    TopSongsLeaderboard failingLeaderboard = new TopSongsLeaderboard(2, () -> {
+      if (loads.incrementAndGet() > 1) {
+        throw new IllegalStateException("Database isn't available.");
+      }
+      return Arrays.asList(new SongCounter(FIRST_SONG, 10));
+    });
+    failingLeaderboard.setReconcileInterval(0);
+    failingLeaderboard.getTopSongs();
+
+    List<SongCounter> top = failingLeaderboard.getTopSongs();
+
+    Assert.assertEquals(2, loads.get());
+    Assert.assertSame(FIRST_SONG, songAt(top, 0));
+  }
+}
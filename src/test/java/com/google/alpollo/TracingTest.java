@@ -0,0 +1,74 @@
+package com.google.alpollo;
+
+import com.google.alpollo.helpers.ContextPropagatingThreadPool;
+import com.google.alpollo.helpers.InMemorySpanExporter;
+import io.grpc.Context;
+import io.opencensus.common.Timestamp;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.Status;
+import io.opencensus.trace.TraceId;
+import io.opencensus.trace.TraceOptions;
+import io.opencensus.trace.Tracestate;
+import io.opencensus.trace.export.SpanData;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class TracingTest {
+  private static final Context.Key<String> REQUEST = Context.key("request");
+  private static final Timestamp START = Timestamp.create(1_600_000_000, 0);
+
+  @Test
+  public void poolRunsTasksInTheContextOfTheCaller() throws Exception {
+    ExecutorService pool = new ContextPropagatingThreadPool(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>(),
+        Thread::new, new ThreadPoolExecutor.CallerRunsPolicy());
+    try {
+      Context previous = Context.current().withValue(REQUEST, "POST /analyze").attach();
+      try {
+        Assert.assertEquals("POST /analyze", pool.submit((Callable<String>) REQUEST::get).get());
+      } finally {
+        Context.current().detach(previous);
+      }
+      Assert.assertNull(pool.submit((Callable<String>) REQUEST::get).get());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void memoryExporterKeepsTheLatestSpans() {
+    InMemorySpanExporter exporter = new InMemorySpanExporter(2);
+    exporter.export(Arrays.asList(span(1, "GET /top"), span(2, "POST /analyze")));
+    exporter.export(Collections.singletonList(span(2, "api language.annotateText")));
+
+    Assert.assertEquals(2, exporter.getSpans().size());
+    Assert.assertEquals("POST /analyze", exporter.getSpans().get(0).getName());
+    Assert.assertEquals(2, exporter.getTrace(traceId(2).toLowerBase16()).size());
+    Assert.assertTrue(exporter.getTrace(traceId(1).toLowerBase16()).isEmpty());
+  }
+
+  private static SpanData span(int trace, String name) {
+    SpanContext context = SpanContext.create(traceId(trace),
+        SpanId.fromLowerBase16(String.format("%016x", name.hashCode() & 0xFFFFFFFFL)),
+        TraceOptions.builder().setIsSampled(true).build(), Tracestate.builder().build());
+    return SpanData.create(context, null, false, name, null, START,
+        SpanData.Attributes.create(Collections.emptyMap(), 0),
+        SpanData.TimedEvents.create(Collections.emptyList(), 0),
+        SpanData.TimedEvents.create(Collections.emptyList(), 0),
+        SpanData.Links.create(Collections.emptyList(), 0), 0, Status.OK, START.addNanos(5_000_000));
+  }
+
+  private static TraceId traceId(int trace) {
+    return TraceId.fromLowerBase16(String.format("%032x", trace));
+  }
+}
@@ -1,6 +1,8 @@
 package com.google.alpollo;
 
 import com.google.alpollo.helpers.YouTubeService;
+import com.google.alpollo.model.YouTubeQueries;
+import com.google.alpollo.servlets.YouTubeBatchServlet;
 import com.google.alpollo.servlets.YouTubeServlet;
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
@@ -10,6 +12,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import java.io.*;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -66,4 +69,21 @@ public final class YouTubeTest {
 
     verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "Empty query.");
   }
-}
\ No newline at end of file
+
+  @Test
+  public void batchRejectsEmptyQuery() throws Exception {
+    when(request.getReader()).thenReturn(new BufferedReader(new StringReader("{\"queries\": [\"dark\", \" \"]}")));
+    new YouTubeBatchServlet().doPost(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "Empty query.");
+  }
+
+  @Test
+  public void batchRejectsTooManyQueries() throws Exception {
+    List<String> queries = Collections.nCopies(YouTubeService.MAX_BATCH_QUERIES + 1, SEARCH_STRING);
+    when(request.getReader()).thenReturn(new BufferedReader(new StringReader(gson.toJson(new YouTubeQueries(queries)))));
+    new YouTubeBatchServlet().doPost(request, response);
+
+    verify(response).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+  }
+}
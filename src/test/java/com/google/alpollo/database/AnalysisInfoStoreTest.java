@@ -0,0 +1,156 @@
+package com.google.alpollo.database;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.alpollo.model.AnalysisInfo;
+import com.google.alpollo.model.Song;
+import com.google.alpollo.model.SongCounter;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.util.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+@RunWith(JUnit4.class)
+public final class AnalysisInfoStoreTest {
+  private static final Song FIRST_SONG = new Song("Queen", "Bohemian Rhapsody");
+  private static final Song SECOND_SONG = new Song("ABBA", "Dancing Queen");
+  private static final Song THIRD_SONG = new Song("Eminem", "Lose Yourself");
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(
+      new LocalDatastoreServiceTestConfig().setDefaultHighRepJobPolicyUnappliedJobPercentage(0));
+  private Closeable objectify;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    objectify = ObjectifyService.begin();
+  }
+
+  @After
+  public void tearDown() {
+    // Drop the reads a test left pending.
+    AnalysisInfoStore.flushAccesses(mock(Queue.class));
+    objectify.close();
+    helper.tearDown();
+  }
+
+  private static AnalysisInfo analysis(Song song) {
+    return new AnalysisInfo(song, null, null, "lyrics", null);
+  }
+
+  private static List<Long> savedIds() {
+    OfyService.ofy().clear();
+    return OfyService.ofy().load().type(AnalysisInfo.class).keys().list().stream()
+        .map(Key::getId).sorted().collect(Collectors.toList());
+  }
+
+  @Test
+  public void lfuEvictsLeastSearchedSong() {
+    AnalysisInfoStore.configure(60, 2, AnalysisInfoStore.EvictionPolicy.LFU);
+    AnalysisInfoStore.save(analysis(FIRST_SONG), 5);
+    AnalysisInfoStore.save(analysis(SECOND_SONG), 1);
+    AnalysisInfoStore.save(analysis(THIRD_SONG), 3);
+
+    AnalysisInfoStore.evict();
+
+    Assert.assertFalse(savedIds().contains(SECOND_SONG.id()));
+    Assert.assertEquals(2, savedIds().size());
+  }
+
+  @Test
+  public void lruEvictsLeastRecentlyReadSong() {
+    AnalysisInfoStore.configure(60, 2, AnalysisInfoStore.EvictionPolicy.LRU);
+    AnalysisInfoStore.save(analysis(FIRST_SONG), 1);
+    AnalysisInfoStore.save(analysis(SECOND_SONG), 1);
+    AnalysisInfoStore.save(analysis(THIRD_SONG), 1);
+    AnalysisInfoStore.saveAccesses(String.format("{\"%d\":3000,\"%d\":1000,\"%d\":2000}",
+        FIRST_SONG.id(), SECOND_SONG.id(), THIRD_SONG.id()));
+
+    AnalysisInfoStore.evict();
+
+    Assert.assertFalse(savedIds().contains(SECOND_SONG.id()));
+    Assert.assertEquals(2, savedIds().size());
+  }
+
+  @Test
+  public void storeUnderCapacityIsKept() {
+    AnalysisInfoStore.configure(60, 5, AnalysisInfoStore.EvictionPolicy.LFU);
+    AnalysisInfoStore.save(analysis(FIRST_SONG), 1);
+    AnalysisInfoStore.save(analysis(SECOND_SONG), 1);
+
+    AnalysisInfoStore.evict();
+
+    Assert.assertEquals(2, savedIds().size());
+  }
+
+  @Test
+  public void catalogueHasSongsOfSavedAnalyses() {
+    AnalysisInfoStore.save(analysis(FIRST_SONG), 1);
+    AnalysisInfoStore.save(analysis(SECOND_SONG), 1);
+
+    List<String> songs = SongDataBase.catalogueSongs().stream().map(Song::getString).collect(Collectors.toList());
+
+    Assert.assertEquals(2, songs.size());
+    Assert.assertTrue(songs.contains(FIRST_SONG.getString()));
+    Assert.assertTrue(songs.contains(SECOND_SONG.getString()));
+  }
+
+  @Test
+  public void readsAreBatchedIntoOneTask() {
+    AnalysisInfoStore.save(analysis(FIRST_SONG), 1);
+    AnalysisInfoStore.save(analysis(SECOND_SONG), 1);
+    OfyService.ofy().save().entity(new SongCounter(FIRST_SONG, 9)).now();
+    AnalysisInfoStore.load(FIRST_SONG.id());
+    AnalysisInfoStore.load(SECOND_SONG.id());
+    AnalysisInfoStore.load(FIRST_SONG.id());
+
+    Queue queue = mock(Queue.class);
+    AnalysisInfoStore.flushAccesses(queue);
+    ArgumentCaptor<TaskOptions> task = ArgumentCaptor.forClass(TaskOptions.class);
+    verify(queue).add(task.capture());
+    AnalysisInfoStore.saveAccesses(new String(task.getValue().getPayload(), StandardCharsets.UTF_8));
+
+    OfyService.ofy().clear();
+    AnalysisInfo info = OfyService.ofy().load().type(AnalysisInfo.class).id(FIRST_SONG.id()).now();
+    Assert.assertEquals(AnalysisInfoStore.ACCESSES_TASK_URL, task.getValue().getUrl());
+    // The search counter saved with the read is the current one, used by LFU.
+    Assert.assertEquals(1, OfyService.ofy().load().type(AnalysisInfo.class)
+        .filter("searchCounter", 9).count());
+    Assert.assertNotNull(info);
+
+    Queue nextQueue = mock(Queue.class);
+    AnalysisInfoStore.flushAccesses(nextQueue);
+    verify(nextQueue, never()).add(any(TaskOptions.class));
+  }
+
+  @Test
+  public void readsArePendingUntilEnqueued() {
+    AnalysisInfoStore.save(analysis(FIRST_SONG), 1);
+    AnalysisInfoStore.load(FIRST_SONG.id());
+    Queue failingQueue = mock(Queue.class);
+    when(failingQueue.add(any(TaskOptions.class))).thenThrow(new IllegalStateException("Queue isn't available."));
+
+    AnalysisInfoStore.flushAccesses(failingQueue);
+
+    Queue queue = mock(Queue.class);
+    AnalysisInfoStore.flushAccesses(queue);
+    verify(queue).add(any(TaskOptions.class));
+  }
+}
@@ -0,0 +1,173 @@
+package com.google.alpollo.database;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.alpollo.model.Song;
+import com.google.alpollo.model.SongCounter;
+import com.google.alpollo.model.SongCounterShard;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.util.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+@RunWith(JUnit4.class)
+public final class SearchCounterAggregatorTest {
+  private static final Song SONG = new Song("Lady Gaga", "Bad Romance");
+  private static final Song OTHER_SONG = new Song("Queen", "Bohemian Rhapsody");
+  /** Song whose total no test saves through this instance. */
+  private static final Song UNKNOWN_SONG = new Song("Nina Simone", "Feeling Good");
+
+  /** High replication with no applied writes visible to queries, so the totals must not depend on them. */
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(
+      new LocalDatastoreServiceTestConfig().setDefaultHighRepJobPolicyUnappliedJobPercentage(100));
+  private Closeable objectify;
+  private Queue queue;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    objectify = ObjectifyService.begin();
+    queue = mock(Queue.class);
+  }
+
+  @After
+  public void tearDown() {
+    // Drop the searches a test left pending.
+    SearchCounterAggregator.flush(mock(Queue.class));
+    objectify.close();
+    helper.tearDown();
+  }
+
+  @Test
+  public void searchesOfASongAreMerged() {
+    SearchCounterAggregator.increment(SONG);
+    SearchCounterAggregator.increment(SONG);
+    SearchCounterAggregator.increment(OTHER_SONG);
+
+    Assert.assertEquals(2, SearchCounterAggregator.getPendingCount(SONG.id()));
+    Assert.assertEquals(1, SearchCounterAggregator.getPendingCount(OTHER_SONG.id()));
+  }
+
+  @Test
+  public void flushedSearchesAreSaved() {
+    SearchCounterAggregator.increment(SONG);
+    SearchCounterAggregator.increment(SONG);
+    SearchCounterAggregator.increment(OTHER_SONG);
+
+    List<String> payloads = flush();
+    Assert.assertEquals(1, payloads.size());
+    Assert.assertEquals(0, SearchCounterAggregator.getPendingCount(SONG.id()));
+    SearchCounterAggregator.saveSearches(payloads.get(0));
+
+    Assert.assertEquals(2, loadCounter(SONG).getSearchCounter());
+    Assert.assertEquals(1, loadCounter(OTHER_SONG).getSearchCounter());
+    Assert.assertTrue(loadCounter(SONG).isSharded());
+    Assert.assertEquals(2, SearchCounterAggregator.sumShards(SONG.id()));
+    Assert.assertEquals(1, SearchCounterAggregator.getSavedCount(OTHER_SONG.id()));
+  }
+
+  @Test
+  public void totalsAddUpAcrossFlushes() {
+    for (int flush = 0; flush < 5; flush++) {
+      SearchCounterAggregator.increment(SONG);
+      SearchCounterAggregator.saveSearches(flush().get(0));
+    }
+
+    Assert.assertEquals(5, loadCounter(SONG).getSearchCounter());
+  }
+
+  @Test
+  public void retriedTaskCountsSearchesOnce() {
+    SearchCounterAggregator.increment(SONG);
+    SearchCounterAggregator.increment(SONG);
+    String payload = flush().get(0);
+
+    SearchCounterAggregator.saveSearches(payload);
+    SearchCounterAggregator.saveSearches(payload);
+
+    Assert.assertEquals(2, SearchCounterAggregator.sumShards(SONG.id()));
+    Assert.assertEquals(2, loadCounter(SONG).getSearchCounter());
+  }
+
+  @Test
+  public void unknownTotalIsLoadedOnce() {
+    OfyService.ofy().save().entity(new SongCounter(UNKNOWN_SONG, 7)).now();
+
+    Assert.assertEquals(7, SearchCounterAggregator.getSavedCount(UNKNOWN_SONG.id()));
+    OfyService.ofy().delete().entity(loadCounter(UNKNOWN_SONG)).now();
+
+    Assert.assertEquals(7, SearchCounterAggregator.getSavedCount(UNKNOWN_SONG.id()));
+  }
+
+  @Test
+  public void searchesAreKeptWhenTheyCantBeEnqueued() {
+    when(queue.add(any(TaskOptions.class))).thenThrow(new IllegalStateException("Queue isn't available."));
+    SearchCounterAggregator.increment(SONG);
+
+    SearchCounterAggregator.flush(queue);
+    SearchCounterAggregator.increment(SONG);
+
+    Assert.assertEquals(2, SearchCounterAggregator.getPendingCount(SONG.id()));
+  }
+
+  @Test
+  public void legacyCounterIsMovedToItsShard() {
+    SongCounter legacyCounter = new SongCounter(SONG, 7);
+    OfyService.ofy().save().entity(legacyCounter).now();
+    SearchCounterAggregator.increment(SONG);
+
+    SearchCounterAggregator.saveSearches(flush().get(0));
+
+    SongCounter counter = loadCounter(SONG);
+    Assert.assertEquals(8, counter.getSearchCounter());
+    Assert.assertTrue(counter.isSharded());
+    Assert.assertEquals(7, OfyService.ofy().load().type(SongCounterShard.class)
+        .id(SongCounterShard.createId(SONG.id(), SongCounterShard.LEGACY_SHARD)).now().getSearchCounter());
+  }
+
+  @Test
+  public void totalNeverDecreases() {
+    SongCounter counter = new SongCounter(SONG);
+    counter.updateShardedTotal(10);
+
+    counter.updateShardedTotal(4);
+
+    Assert.assertEquals(10, counter.getSearchCounter());
+    Assert.assertTrue(counter.isSharded());
+  }
+
+  /** Flushes the pending searches and returns the payloads of the tasks. */
+  private List<String> flush() {
+    Queue flushQueue = mock(Queue.class);
+    SearchCounterAggregator.flush(flushQueue);
+    ArgumentCaptor<TaskOptions> tasks = ArgumentCaptor.forClass(TaskOptions.class);
+    verify(flushQueue, times(1)).add(tasks.capture());
+    List<String> payloads = new ArrayList<>();
+    for (TaskOptions task : tasks.getAllValues()) {
+      Assert.assertEquals(SearchCounterAggregator.TASK_URL, task.getUrl());
+      payloads.add(new String(task.getPayload(), StandardCharsets.UTF_8));
+    }
+    return payloads;
+  }
+
+  private static SongCounter loadCounter(Song song) {
+    OfyService.ofy().clear();
+    return OfyService.ofy().load().type(SongCounter.class).id(song.id()).now();
+  }
+}
@@ -0,0 +1,114 @@
+package com.google.alpollo.helpers;
+
+import com.google.alpollo.database.SongDataBase;
+import com.google.alpollo.loadtest.FakeGoogleApis;
+import com.google.alpollo.model.AnalysisInfo;
+import com.google.alpollo.model.Song;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.dev.QueueStateInfo.TaskStateInfo;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+import com.google.apphosting.api.ApiProxy;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.util.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class AnalysisPipelineTest {
+  /** Attribute of the environment where App Engine keeps the thread factory of the request. */
+  private static final String REQUEST_THREAD_FACTORY = "com.google.appengine.api.ThreadManager.REQUEST_THREAD_FACTORY";
+  private static final String PROJECT_ID = "project";
+  private static final String API_KEY = "key";
+  private static final String USER_ID = "user";
+  private static final Song SONG = new Song("Simon & Garfunkel", "The Boxer");
+
+  /** App Engine creates the threads of a request with the environment of the request, like this factory. */
+  private static final ThreadFactory REQUEST_THREADS = runnable -> {
+    ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+    return new Thread(() -> {
+      ApiProxy.setEnvironmentForCurrentThread(environment);
+      runnable.run();
+    });
+  };
+
+  private final Gson gson = new Gson();
+  // Nobody is logged in, the user of the analysis comes from the servlet.
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+      new LocalTaskQueueTestConfig().setDisableAutoTaskExecution(true))
+      .setEnvAttributes(ImmutableMap.of(REQUEST_THREAD_FACTORY, REQUEST_THREADS));
+  private FakeGoogleApis fakes;
+  private Closeable objectify;
+
+  @Before
+  public void setUp() throws IOException {
+    helper.setUp();
+    objectify = ObjectifyService.begin();
+    fakes = new FakeGoogleApis(Collections.emptyMap(), 0, 0);
+    ApiEndpoints.configure(gson.fromJson(gson.toJson(fakes.getConfigSettings()), AppConfig.class));
+    LyricsService.setProvider(new LyricsOvhProvider(fakes.getHttpUrl() + "lyrics/v1/", new NetHttpTransport()));
+    // Clients created by other tests point at other endpoints.
+    SharedClient.closeAll();
+  }
+
+  @After
+  public void tearDown() {
+    SharedClient.closeAll();
+    ApiEndpoints.configure(new AppConfig());
+    LyricsService.setProvider(new LyricsOvhProvider(LyricsOvhProvider.DEFAULT_URL));
+    fakes.close();
+    objectify.close();
+    helper.tearDown();
+  }
+
+  @Test
+  public void analyzesSongWithFetchedLyrics() throws Exception {
+    AnalysisInfo info = AnalysisPipeline.analyze(SONG, PROJECT_ID, API_KEY, AnalysisPipeline.getExecutor())
+        .get(10, TimeUnit.SECONDS);
+
+    Assert.assertEquals(SONG.getString(), info.getSong().getString());
+    Assert.assertTrue(info.getLyrics().contains("The Boxer"));
+    Assert.assertNotNull(info.getSongSentiment());
+    Assert.assertFalse(info.getTopSalientEntities().isEmpty());
+    Assert.assertEquals(3, info.getYouTubeIds().size());
+  }
+
+  @Test
+  public void songWithoutLyricsHasNoAnalysis() throws Exception {
+    AnalysisInfo info = AnalysisPipeline.analyze(new Song("Nobody", "unknown"), PROJECT_ID, API_KEY,
+        AnalysisPipeline.getExecutor()).get(10, TimeUnit.SECONDS);
+
+    Assert.assertNull(info);
+  }
+
+  @Test
+  public void analysisIsSavedByTaskWithHistoryOfGivenUser() throws Exception {
+    AnalysisInfo info = AnalysisPipeline.analyzeAndSave(SONG, USER_ID, PROJECT_ID, API_KEY);
+
+    Assert.assertNull(SongDataBase.getAnanlysisInfo(SONG.id()));
+    List<TaskStateInfo> tasks = LocalTaskQueueTestConfig.getLocalTaskQueue().getQueueStateInfo()
+        .get(QueueFactory.getDefaultQueue().getQueueName()).getTaskInfo();
+    Assert.assertEquals(1, tasks.size());
+    Assert.assertEquals(SongDataBase.SAVE_ANALYSIS_TASK_URL, tasks.get(0).getUrl());
+
+    SongDataBase.saveAnalysisTask(tasks.get(0).getBody());
+
+    List<Song> history = SongDataBase.searchHistory(USER_ID);
+    Assert.assertEquals(1, history.size());
+    Assert.assertEquals(SONG.getString(), history.get(0).getString());
+    Assert.assertEquals(info.getLyrics(), SongDataBase.getAnanlysisInfo(SONG.id()).getLyrics());
+  }
+}
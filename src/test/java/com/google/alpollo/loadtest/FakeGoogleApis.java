@@ -0,0 +1,349 @@
+package com.google.alpollo.loadtest;
+
+import com.google.cloud.language.v1.AnalyzeEntitiesRequest;
+import com.google.cloud.language.v1.AnalyzeEntitiesResponse;
+import com.google.cloud.language.v1.AnalyzeSentimentRequest;
+import com.google.cloud.language.v1.AnalyzeSentimentResponse;
+import com.google.cloud.language.v1.AnnotateTextRequest;
+import com.google.cloud.language.v1.AnnotateTextResponse;
+import com.google.cloud.language.v1.Entity;
+import com.google.cloud.language.v1.Sentiment;
+import com.google.cloud.texttospeech.v1.SynthesizeSpeechRequest;
+import com.google.cloud.texttospeech.v1.SynthesizeSpeechResponse;
+import com.google.cloud.translate.v3.DetectLanguageRequest;
+import com.google.cloud.translate.v3.DetectLanguageResponse;
+import com.google.cloud.translate.v3.DetectedLanguage;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-ins for the APIs the application calls, so the servlets can be load tested
+ * offline and without quota. One gRPC server answers the Natural Language, Text-to-Speech
+ * and Translation calls, one HTTP server answers the YouTube, Knowledge Graph and lyrics calls.
+ *
+ * The answers are made up from the request, the same request always gets the same answer.
+ * Every API waits and fails according to its {@link LatencyModel}.
+ *
+ * Run it with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.google.alpollo.loadtest.FakeGoogleApis \
+ *     -Dfakes.latency.language=lognormal:80:0.4,0.01
+ * </pre>
+ * and point the application at it with the settings it prints.
+ */
+public final class FakeGoogleApis implements AutoCloseable {
+  public static final int DEFAULT_GRPC_PORT = 8091;
+  public static final int DEFAULT_HTTP_PORT = 8092;
+  /** Latency models by API, overridden by the "fakes.latency.<api>" system properties. */
+  private static final Map<String, String> DEFAULT_LATENCIES = new LinkedHashMap<>();
+  private static final Pattern LYRICS_PATH = Pattern.compile("^/lyrics/v1/([^/]+)/([^/]+)$");
+  private static final String[] WORDS = {"love", "night", "heart", "road", "fire", "rain", "dance", "light"};
+  private static final String[] PLACES = {"London", "Paris", "California", "Texas", "Detroit", "Berlin"};
+
+  static {
+    DEFAULT_LATENCIES.put("language", "lognormal:80:0.4,0.0");
+    DEFAULT_LATENCIES.put("textToSpeech", "lognormal:300:0.3,0.0");
+    DEFAULT_LATENCIES.put("translate", "lognormal:40:0.3,0.0");
+    DEFAULT_LATENCIES.put("youTube", "lognormal:120:0.5,0.0");
+    DEFAULT_LATENCIES.put("knowledgeGraph", "lognormal:60:0.4,0.0");
+    DEFAULT_LATENCIES.put("lyrics", "lognormal:200:0.6,0.0");
+  }
+
+  private final Server grpcServer;
+  private final HttpServer httpServer;
+  private final ExecutorService httpExecutor;
+
+  /**
+   * Starts the fakes.
+   * @param latencies latency models by API; APIs missing from the map answer at once
+   * @param grpcPort port of the gRPC server, 0 for any free port
+   * @param httpPort port of the HTTP server, 0 for any free port
+   */
+  public FakeGoogleApis(Map<String, LatencyModel> latencies, int grpcPort, int httpPort) throws IOException {
+    LatencyModel language = latencies.getOrDefault("language", LatencyModel.NONE);
+    LatencyModel textToSpeech = latencies.getOrDefault("textToSpeech", LatencyModel.NONE);
+    LatencyModel translate = latencies.getOrDefault("translate", LatencyModel.NONE);
+
+    grpcServer = NettyServerBuilder.forAddress(new InetSocketAddress("localhost", grpcPort))
+        .addService(ServerServiceDefinition.builder("google.cloud.language.v1.LanguageService")
+            .addMethod(unaryMethod("google.cloud.language.v1.LanguageService/AnalyzeSentiment",
+                AnalyzeSentimentRequest.getDefaultInstance(), AnalyzeSentimentResponse.getDefaultInstance()),
+                unaryHandler(language, FakeGoogleApis::analyzeSentiment))
+            .addMethod(unaryMethod("google.cloud.language.v1.LanguageService/AnalyzeEntities",
+                AnalyzeEntitiesRequest.getDefaultInstance(), AnalyzeEntitiesResponse.getDefaultInstance()),
+                unaryHandler(language, FakeGoogleApis::analyzeEntities))
+            .addMethod(unaryMethod("google.cloud.language.v1.LanguageService/AnnotateText",
+                AnnotateTextRequest.getDefaultInstance(), AnnotateTextResponse.getDefaultInstance()),
+                unaryHandler(language, FakeGoogleApis::annotateText))
+            .build())
+        .addService(ServerServiceDefinition.builder("google.cloud.texttospeech.v1.TextToSpeech")
+            .addMethod(unaryMethod("google.cloud.texttospeech.v1.TextToSpeech/SynthesizeSpeech",
+                SynthesizeSpeechRequest.getDefaultInstance(), SynthesizeSpeechResponse.getDefaultInstance()),
+                unaryHandler(textToSpeech, FakeGoogleApis::synthesizeSpeech))
+            .build())
+        .addService(ServerServiceDefinition.builder("google.cloud.translation.v3.TranslationService")
+            .addMethod(unaryMethod("google.cloud.translation.v3.TranslationService/DetectLanguage",
+                DetectLanguageRequest.getDefaultInstance(), DetectLanguageResponse.getDefaultInstance()),
+                unaryHandler(translate, FakeGoogleApis::detectLanguage))
+            .build())
+        .build()
+        .start();
+
+    httpServer = HttpServer.create(new InetSocketAddress("localhost", httpPort), 0);
+    httpServer.createContext("/youtube/v3/search",
+        httpHandler(latencies.getOrDefault("youTube", LatencyModel.NONE), FakeGoogleApis::searchVideos));
+    httpServer.createContext("/v1/entities:search",
+        httpHandler(latencies.getOrDefault("knowledgeGraph", LatencyModel.NONE), FakeGoogleApis::searchEntities));
+    httpServer.createContext("/lyrics/v1/",
+        httpHandler(latencies.getOrDefault("lyrics", LatencyModel.NONE), FakeGoogleApis::findLyrics));
+    httpExecutor = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("fake-http-%d").setDaemon(true).build());
+    httpServer.setExecutor(httpExecutor);
+    httpServer.start();
+  }
+
+  /** Returns the "host:port" of the gRPC APIs. */
+  public String getGrpcEndpoint() {
+    return "localhost:" + grpcServer.getPort();
+  }
+
+  /** Returns the URL of the HTTP APIs, ending with a slash. */
+  public String getHttpUrl() {
+    return "http://localhost:" + httpServer.getAddress().getPort() + "/";
+  }
+
+  /** Returns the settings of the configuration file that point the application at the fakes. */
+  public Map<String, Object> getConfigSettings() {
+    Map<String, Object> settings = new LinkedHashMap<>();
+    settings.put("languageEndpoint", getGrpcEndpoint());
+    settings.put("textToSpeechEndpoint", getGrpcEndpoint());
+    settings.put("translateEndpoint", getGrpcEndpoint());
+    settings.put("apiEndpointsPlaintext", true);
+    settings.put("youTubeRootUrl", getHttpUrl());
+    settings.put("knowledgeGraphUrl", getHttpUrl() + "v1/entities:search");
+    settings.put("lyricsProviderUrl", getHttpUrl() + "lyrics/v1/");
+    return settings;
+  }
+
+  @Override
+  public void close() {
+    grpcServer.shutdownNow();
+    httpServer.stop(0);
+    httpExecutor.shutdownNow();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, LatencyModel> latencies = new LinkedHashMap<>();
+    for (Map.Entry<String, String> api : DEFAULT_LATENCIES.entrySet()) {
+      latencies.put(api.getKey(), LatencyModel.parse(System.getProperty("fakes.latency." + api.getKey(), api.getValue())));
+    }
+    int grpcPort = Integer.getInteger("fakes.grpcPort", DEFAULT_GRPC_PORT);
+    int httpPort = Integer.getInteger("fakes.httpPort", DEFAULT_HTTP_PORT);
+
+    FakeGoogleApis fakes = new FakeGoogleApis(latencies, grpcPort, httpPort);
+    Runtime.getRuntime().addShutdownHook(new Thread(fakes::close));
+    System.out.println("Latency models: " + latencies);
+    System.out.println("Set in WEB-INF/config.json:");
+    for (Map.Entry<String, Object> setting : fakes.getConfigSettings().entrySet()) {
+      Object value = setting.getValue();
+      System.out.println("  \"" + setting.getKey() + "\": " + (value instanceof String ? "\"" + value + "\"" : value) + ",");
+    }
+    fakes.grpcServer.awaitTermination();
+  }
+
+  private static <Req extends Message, Resp extends Message> MethodDescriptor<Req, Resp> unaryMethod(
+      String fullMethodName, Req requestPrototype, Resp responsePrototype) {
+    return MethodDescriptor.<Req, Resp>newBuilder()
+        .setType(MethodDescriptor.MethodType.UNARY)
+        .setFullMethodName(fullMethodName)
+        .setRequestMarshaller(ProtoUtils.marshaller(requestPrototype))
+        .setResponseMarshaller(ProtoUtils.marshaller(responsePrototype))
+        .build();
+  }
+
+  private static <Req, Resp> ServerCallHandler<Req, Resp> unaryHandler(
+      LatencyModel latency, Function<Req, Resp> answer) {
+    return ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+      try {
+        latency.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        responseObserver.onError(Status.CANCELLED.asRuntimeException());
+        return;
+      }
+      if (latency.fails()) {
+        responseObserver.onError(Status.UNAVAILABLE.withDescription("Injected failure.").asRuntimeException());
+        return;
+      }
+      responseObserver.onNext(answer.apply(request));
+      responseObserver.onCompleted();
+    });
+  }
+
+  private static HttpHandler httpHandler(LatencyModel latency, Function<HttpExchange, String> answer) {
+    return exchange -> {
+      try {
+        latency.await();
+        boolean failed = latency.fails();
+        String body = failed ? null : answer.apply(exchange);
+        int status = failed ? 503 : body == null ? 404 : 200;
+        byte[] bytes = (body == null ? "{\"error\": \"Not available.\"}" : body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+          responseBody.write(bytes);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        exchange.close();
+      }
+    };
+  }
+
+  private static AnalyzeSentimentResponse analyzeSentiment(AnalyzeSentimentRequest request) {
+    return AnalyzeSentimentResponse.newBuilder()
+        .setDocumentSentiment(sentiment(request.getDocument().getContent()))
+        .build();
+  }
+
+  private static AnalyzeEntitiesResponse analyzeEntities(AnalyzeEntitiesRequest request) {
+    return AnalyzeEntitiesResponse.newBuilder()
+        .addAllEntities(entities(request.getDocument().getContent()))
+        .build();
+  }
+
+  private static AnnotateTextResponse annotateText(AnnotateTextRequest request) {
+    String text = request.getDocument().getContent();
+    AnnotateTextResponse.Builder response = AnnotateTextResponse.newBuilder();
+    if (request.getFeatures().getExtractDocumentSentiment()) {
+      response.setDocumentSentiment(sentiment(text));
+    }
+    if (request.getFeatures().getExtractEntities()) {
+      response.addAllEntities(entities(text));
+    }
+    return response.build();
+  }
+
+  /** Answers with one byte of "audio" per character, so bigger lyrics cost more to send. */
+  private static SynthesizeSpeechResponse synthesizeSpeech(SynthesizeSpeechRequest request) {
+    byte[] audio = request.getInput().getText().getBytes(StandardCharsets.UTF_8);
+    return SynthesizeSpeechResponse.newBuilder().setAudioContent(ByteString.copyFrom(audio)).build();
+  }
+
+  private static DetectLanguageResponse detectLanguage(DetectLanguageRequest request) {
+    return DetectLanguageResponse.newBuilder()
+        .addLanguages(DetectedLanguage.newBuilder().setLanguageCode("en").setConfidence(0.95f))
+        .build();
+  }
+
+  private static Sentiment sentiment(String text) {
+    int hash = text.hashCode();
+    float score = ((hash & 0xFF) - 128) / 128f;
+    float magnitude = ((hash >>> 8) & 0xFF) / 32f;
+    return Sentiment.newBuilder().setScore(score).setMagnitude(magnitude).build();
+  }
+
+  /** Picks a few words and places from the text's hash, so the same text gets the same entities. */
+  private static List<Entity> entities(String text) {
+    int hash = Math.abs(text.hashCode());
+    List<Entity> entities = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      String word = WORDS[(hash + i) % WORDS.length];
+      entities.add(Entity.newBuilder().setName(word).setType(Entity.Type.OTHER)
+          .setSalience(0.4f / (i + 1)).build());
+    }
+    String place = PLACES[hash % PLACES.length];
+    entities.add(Entity.newBuilder().setName(place).setType(Entity.Type.LOCATION).setSalience(0.3f)
+        .putMetadata("wikipedia_url", "https://en.wikipedia.org/wiki/" + place).build());
+    return entities;
+  }
+
+  private static String searchVideos(HttpExchange exchange) {
+    String query = String.valueOf(queryParameter(exchange, "q"));
+    StringBuilder body = new StringBuilder("{\"kind\": \"youtube#searchListResponse\", \"items\": [");
+    for (int i = 0; i < 3; i++) {
+      String videoId = Integer.toHexString((query + i).hashCode());
+      body.append(i == 0 ? "" : ", ")
+          .append("{\"kind\": \"youtube#searchResult\", \"id\": {\"kind\": \"youtube#video\", \"videoId\": \"")
+          .append(videoId).append("\"}}");
+    }
+    return body.append("]}").toString();
+  }
+
+  private static String searchEntities(HttpExchange exchange) {
+    String query = String.valueOf(queryParameter(exchange, "query")).replaceAll("[\"\\\\]", "");
+    StringBuilder body = new StringBuilder("{\"itemListElement\": [");
+    for (int i = 0; i < 5; i++) {
+      body.append(i == 0 ? "" : ", ")
+          .append("{\"result\": {\"name\": \"").append(query).append(" ").append(WORDS[i]).append("\"}}");
+    }
+    return body.append("]}").toString();
+  }
+
+  /** Knows the lyrics of every song, except the songs named "unknown". */
+  private static String findLyrics(HttpExchange exchange) {
+    Matcher matcher = LYRICS_PATH.matcher(exchange.getRequestURI().getRawPath());
+    if (!matcher.matches() || decode(matcher.group(2)).equalsIgnoreCase("unknown")) {
+      return null;
+    }
+    String song = decode(matcher.group(2)).replaceAll("[\"\\\\]", "");
+    StringBuilder lyrics = new StringBuilder();
+    int hash = Math.abs(song.hashCode());
+    for (int line = 0; line < 40; line++) {
+      lyrics.append(song).append(", ").append(WORDS[(hash + line) % WORDS.length]).append(" in ")
+          .append(PLACES[(hash + line) % PLACES.length]).append("\\n");
+    }
+    return "{\"lyrics\": \"" + lyrics + "\"}";
+  }
+
+  private static String queryParameter(HttpExchange exchange, String name) {
+    String query = exchange.getRequestURI().getRawQuery();
+    if (query == null) {
+      return null;
+    }
+    for (String parameter : query.split("&")) {
+      int separator = parameter.indexOf('=');
+      if (separator > 0 && parameter.substring(0, separator).equals(name)) {
+        return decode(parameter.substring(separator + 1));
+      }
+    }
+    return null;
+  }
+
+  private static String decode(String value) {
+    try {
+      return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.google.alpollo.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How long a fake API takes to answer and how often it fails.
+ *
+ * A model is written as "distribution:parameters[,errorRate]", with the times in milliseconds:
+ * "fixed:20", "uniform:10:50" or "lognormal:40:0.5" (median and sigma), e.g. "lognormal:40:0.5,0.01"
+ * for a lognormal latency and 1% of failed calls.
+ */
+public final class LatencyModel {
+  public static final LatencyModel NONE = new LatencyModel(Distribution.FIXED, 0, 0, 0);
+
+  enum Distribution { FIXED, UNIFORM, LOGNORMAL }
+
+  private final Distribution distribution;
+  private final double first;
+  private final double second;
+  private final double errorRate;
+
+  LatencyModel(Distribution distribution, double first, double second, double errorRate) {
+    this.distribution = distribution;
+    this.first = first;
+    this.second = second;
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * Parses a model.
+   * @throws IllegalArgumentException if the model isn't written as described above
+   */
+  public static LatencyModel parse(String model) {
+    String[] latencyAndErrors = model.trim().split(",");
+    String[] parts = latencyAndErrors[0].split(":");
+    double errorRate = latencyAndErrors.length > 1 ? Double.parseDouble(latencyAndErrors[1]) : 0;
+    if (errorRate < 0 || errorRate > 1) {
+      throw new IllegalArgumentException("Error rate must be from 0.0 to 1.0.");
+    }
+
+    Distribution distribution = Distribution.valueOf(parts[0].toUpperCase());
+    int expectedParts = distribution == Distribution.FIXED ? 2 : 3;
+    if (parts.length != expectedParts) {
+      throw new IllegalArgumentException("Wrong number of parameters in latency model: " + model);
+    }
+    double first = Double.parseDouble(parts[1]);
+    double second = expectedParts == 3 ? Double.parseDouble(parts[2]) : 0;
+    return new LatencyModel(distribution, first, second, errorRate);
+  }
+
+  /** Returns the latency of one call in milliseconds. */
+  long nextLatencyMillis(Random random) {
+    switch (distribution) {
+      case UNIFORM:
+        return Math.round(first + random.nextDouble() * (second - first));
+      case LOGNORMAL:
+        return Math.round(first * Math.exp(second * random.nextGaussian()));
+      default:
+        return Math.round(first);
+    }
+  }
+
+  /** Waits as long as one call takes. */
+  void await() throws InterruptedException {
+    long latency = nextLatencyMillis(ThreadLocalRandom.current());
+    if (latency > 0) {
+      Thread.sleep(latency);
+    }
+  }
+
+  /** Returns whether a call should fail. */
+  boolean fails() {
+    return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+  }
+
+  @Override
+  public String toString() {
+    return distribution.name().toLowerCase() + ":" + first + (distribution == Distribution.FIXED ? "" : ":" + second)
+        + "," + errorRate;
+  }
+}
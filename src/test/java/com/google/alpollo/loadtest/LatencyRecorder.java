@@ -0,0 +1,47 @@
+package com.google.alpollo.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Records the latencies of the calls to one endpoint. Every latency is kept,
+ * so the percentiles are exact rather than estimated from buckets.
+ */
+public final class LatencyRecorder {
+  private long[] latencies = new long[1024];
+  private int count;
+  private int errors;
+
+  /** Records a call that took the given number of nanoseconds. */
+  public synchronized void record(long latencyNanos, boolean failed) {
+    if (count == latencies.length) {
+      latencies = Arrays.copyOf(latencies, count * 2);
+    }
+    latencies[count++] = latencyNanos;
+    if (failed) {
+      errors++;
+    }
+  }
+
+  public synchronized int getCount() {
+    return count;
+  }
+
+  public synchronized int getErrors() {
+    return errors;
+  }
+
+  /**
+   * Returns the latency under which the given fraction of calls finished, by the nearest-rank method.
+   * @param percentile from 0.0 to 1.0, e.g. 0.99 for p99
+   * @return the latency in nanoseconds; 0 if no call was recorded
+   */
+  public synchronized long percentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(latencies, count);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile * count);
+    return sorted[Math.max(0, Math.min(count, rank) - 1)];
+  }
+}
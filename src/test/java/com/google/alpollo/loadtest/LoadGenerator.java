@@ -0,0 +1,235 @@
+package com.google.alpollo.loadtest;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Sends requests to every endpoint of a running application for a while and reports the throughput
+ * and the p50, p99 and p999 latencies of every endpoint. Together with {@link FakeGoogleApis}
+ * it measures the servlets without calling any Google API.
+ *
+ * The requests are made for songs picked from a pool, so the caches of the application
+ * are hit as often as the pool size allows. Run it with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.google.alpollo.loadtest.LoadGenerator \
+ *     -Dload.baseUrl=http://localhost:8080 -Dload.durationSeconds=60 -Dload.concurrency=32
+ * </pre>
+ * Other settings: "load.warmupSeconds", "load.songs" (the pool size) and "load.endpoints"
+ * (comma separated names, all by default).
+ */
+public final class LoadGenerator {
+  private static final int TIMEOUT_MILLIS = 30_000;
+
+  /** One kind of request: how to build it for a song picked from the pool. */
+  private static final class Endpoint {
+    private final String name;
+    private final String method;
+    private final Function<String[], String> path;
+    private final Function<String[], String> body;
+
+    private Endpoint(String name, String method, Function<String[], String> path, Function<String[], String> body) {
+      this.name = name;
+      this.method = method;
+      this.path = path;
+      this.body = body;
+    }
+  }
+
+  private final String baseUrl;
+  private final List<Endpoint> endpoints;
+  private final String[][] songs;
+  private final Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+
+  LoadGenerator(String baseUrl, List<String> endpointNames, int songCount) throws IOException {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    this.songs = new String[songCount][];
+    for (int i = 0; i < songCount; i++) {
+      songs[i] = new String[] {"Artist " + (i % 37), "Song " + i};
+    }
+
+    List<Endpoint> allEndpoints = allEndpoints(findSongIds());
+    this.endpoints = new ArrayList<>();
+    for (Endpoint endpoint : allEndpoints) {
+      if (endpointNames.isEmpty() || endpointNames.contains(endpoint.name)) {
+        endpoints.add(endpoint);
+        recorders.put(endpoint.name, new LatencyRecorder());
+      }
+    }
+    if (endpoints.isEmpty()) {
+      throw new IllegalArgumentException("No known endpoint in " + endpointNames);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String baseUrl = System.getProperty("load.baseUrl", "http://localhost:8080");
+    int durationSeconds = Integer.getInteger("load.durationSeconds", 30);
+    int warmupSeconds = Integer.getInteger("load.warmupSeconds", 5);
+    int concurrency = Integer.getInteger("load.concurrency", 16);
+    int songCount = Integer.getInteger("load.songs", 100);
+    String endpointNames = System.getProperty("load.endpoints", "");
+    List<String> names = endpointNames.isEmpty() ? new ArrayList<>() : Arrays.asList(endpointNames.split(","));
+
+    if (warmupSeconds > 0) {
+      System.out.println("Warming up for " + warmupSeconds + " s...");
+      new LoadGenerator(baseUrl, names, songCount).run(concurrency, warmupSeconds);
+    }
+    System.out.println("Running for " + durationSeconds + " s with " + concurrency + " clients...");
+    LoadGenerator generator = new LoadGenerator(baseUrl, names, songCount);
+    generator.run(concurrency, durationSeconds);
+    System.out.print(generator.report(durationSeconds));
+  }
+
+  /** Sends requests from the given number of clients until the time is up. */
+  void run(int concurrency, int durationSeconds) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+    ExecutorService clients = Executors.newFixedThreadPool(concurrency,
+        new ThreadFactoryBuilder().setNameFormat("load-client-%d").setDaemon(true).build());
+    for (int client = 0; client < concurrency; client++) {
+      int firstEndpoint = client;
+      clients.execute(() -> {
+        Random random = ThreadLocalRandom.current();
+        for (int i = firstEndpoint; System.nanoTime() < deadline; i++) {
+          Endpoint endpoint = endpoints.get(i % endpoints.size());
+          send(endpoint, songs[random.nextInt(songs.length)]);
+        }
+      });
+    }
+    clients.shutdown();
+    clients.awaitTermination(durationSeconds + TIMEOUT_MILLIS / 1000 + 1, TimeUnit.SECONDS);
+  }
+
+  /** Returns a table of the requests, errors, throughput and latencies of every endpoint. */
+  String report(int durationSeconds) {
+    StringBuilder report = new StringBuilder(String.format(Locale.ROOT, "%-16s %9s %7s %9s %9s %9s %9s%n",
+        "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms"));
+    for (Map.Entry<String, LatencyRecorder> endpoint : recorders.entrySet()) {
+      LatencyRecorder recorder = endpoint.getValue();
+      report.append(String.format(Locale.ROOT, "%-16s %9d %7d %9.1f %9.1f %9.1f %9.1f%n",
+          endpoint.getKey(), recorder.getCount(), recorder.getErrors(),
+          recorder.getCount() / (double) durationSeconds, millis(recorder.percentile(0.5)),
+          millis(recorder.percentile(0.99)), millis(recorder.percentile(0.999))));
+    }
+    return report.toString();
+  }
+
+  private void send(Endpoint endpoint, String[] song) {
+    long start = System.nanoTime();
+    boolean failed;
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + endpoint.path.apply(song)).openConnection();
+      connection.setConnectTimeout(TIMEOUT_MILLIS);
+      connection.setReadTimeout(TIMEOUT_MILLIS);
+      connection.setRequestMethod(endpoint.method);
+      connection.setRequestProperty("Accept-Encoding", "gzip");
+      if (endpoint.body != null) {
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+        try (OutputStream requestBody = connection.getOutputStream()) {
+          requestBody.write(endpoint.body.apply(song).getBytes(StandardCharsets.UTF_8));
+        }
+      }
+      int status = connection.getResponseCode();
+      // Read the whole response, so the time includes sending it and the connection is reused.
+      try (InputStream responseBody = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+        if (responseBody != null) {
+          ByteStreams.exhaust(responseBody);
+        }
+      }
+      failed = status >= 400;
+    } catch (IOException e) {
+      failed = true;
+    }
+    recorders.get(endpoint.name).record(System.nanoTime() - start, failed);
+  }
+
+  /** Returns the ids of the most searched songs, for the requests of saved analyses. */
+  private List<Long> findSongIds() {
+    List<Long> ids = new ArrayList<>();
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/top").openConnection();
+      try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+        JsonElement top = JsonParser.parseReader(reader);
+        if (top.isJsonArray()) {
+          for (JsonElement counter : (JsonArray) top) {
+            JsonObject counterObject = counter.getAsJsonObject();
+            if (counterObject.has("id")) {
+              ids.add(counterObject.get("id").getAsLong());
+            }
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // Without saved songs the analyses can't be requested.
+    }
+    return ids;
+  }
+
+  private static List<Endpoint> allEndpoints(List<Long> songIds) {
+    List<Endpoint> endpoints = new ArrayList<>();
+    endpoints.add(new Endpoint("lyrics", "GET",
+        song -> "/lyrics?artist=" + encode(song[0]) + "&song=" + encode(song[1]), null));
+    endpoints.add(new Endpoint("sentiment", "POST", song -> "/sentiment", LoadGenerator::lyricsBody));
+    endpoints.add(new Endpoint("entity", "POST", song -> "/entity", LoadGenerator::lyricsBody));
+    endpoints.add(new Endpoint("analyze", "POST", song -> "/analyze", LoadGenerator::lyricsBody));
+    endpoints.add(new Endpoint("song-analysis", "POST", song -> "/song-analysis", LoadGenerator::lyricsBody));
+    endpoints.add(new Endpoint("text-to-speech", "POST", song -> "/text-to-speech", LoadGenerator::lyricsBody));
+    endpoints.add(new Endpoint("youtube", "GET", song -> "/youtube?query=" + encode(song[0]), null));
+    endpoints.add(new Endpoint("youtube-batch", "POST", song -> "/youtube-batch",
+        song -> "{\"queries\": [" + quote(song[0]) + ", " + quote(song[1]) + "]}"));
+    endpoints.add(new Endpoint("autocomplete", "POST", song -> "/autocomplete",
+        song -> "{\"searchString\": " + quote(song[1].substring(0, 3)) + ", \"type\": \"SONG\"}"));
+    endpoints.add(new Endpoint("top", "GET", song -> "/top", null));
+    endpoints.add(new Endpoint("history", "GET", song -> "/history", null));
+    if (!songIds.isEmpty()) {
+      endpoints.add(new Endpoint("analysis-info", "GET",
+          song -> "/analysis-info?id=" + songIds.get(Math.abs(song[1].hashCode()) % songIds.size()), null));
+    }
+    return endpoints;
+  }
+
+  private static String lyricsBody(String[] song) {
+    return "{\"artistName\": " + quote(song[0]) + ", \"songName\": " + quote(song[1]) + "}";
+  }
+
+  private static String quote(String value) {
+    return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  private static String encode(String value) {
+    try {
+      return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
@@ -0,0 +1,58 @@
+package com.google.alpollo.servlets;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ByteRangeTest {
+  private static final int SIZE = 1000;
+
+  private static void assertRange(int start, int end, ByteRange range) {
+    Assert.assertTrue(range.isSatisfiable());
+    Assert.assertEquals(start, range.getStart());
+    Assert.assertEquals(end, range.getEnd());
+  }
+
+  @Test
+  public void singleRangesAreResolvedAgainstSize() {
+    assertRange(0, 99, ByteRange.parse("bytes=0-99", SIZE));
+    assertRange(500, 999, ByteRange.parse("bytes=500-", SIZE));
+    assertRange(900, 999, ByteRange.parse("bytes=-100", SIZE));
+    assertRange(0, 999, ByteRange.parse("bytes=-5000", SIZE));
+    assertRange(990, 999, ByteRange.parse("bytes=990-5000", SIZE));
+    Assert.assertEquals("bytes 0-99/1000", ByteRange.parse("bytes=0-99", SIZE).toContentRange(SIZE));
+  }
+
+  @Test
+  public void invalidOrMultipleRangesAreIgnored() {
+    Assert.assertNull(ByteRange.parse(null, SIZE));
+    Assert.assertNull(ByteRange.parse("bytes=", SIZE));
+    Assert.assertNull(ByteRange.parse("bytes=-", SIZE));
+    Assert.assertNull(ByteRange.parse("bytes=abc", SIZE));
+    Assert.assertNull(ByteRange.parse("bytes=100-50", SIZE));
+    Assert.assertNull(ByteRange.parse("bytes=0-1,5-6", SIZE));
+    Assert.assertNull(ByteRange.parse("items=0-1", SIZE));
+  }
+
+  @Test
+  public void rangesOutsideOfBodyAreUnsatisfiable() {
+    Assert.assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-", SIZE));
+    Assert.assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=99999999999999999999-", SIZE));
+    Assert.assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", SIZE));
+    Assert.assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-10", 0));
+    Assert.assertEquals("bytes */1000", ByteRange.UNSATISFIABLE.toContentRange(SIZE));
+  }
+
+  @Test
+  public void ifNoneMatchComparesETags() {
+    String eTag = TextToSpeechServlet.eTag("abc");
+
+    Assert.assertTrue(TextToSpeechServlet.matchesETag("\"abc\"", eTag));
+    Assert.assertTrue(TextToSpeechServlet.matchesETag("\"xyz\", W/\"abc\"", eTag));
+    Assert.assertTrue(TextToSpeechServlet.matchesETag("*", eTag));
+    Assert.assertFalse(TextToSpeechServlet.matchesETag("\"xyz\"", eTag));
+    Assert.assertFalse(TextToSpeechServlet.matchesETag(null, eTag));
+  }
+}